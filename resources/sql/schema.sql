@@ -0,0 +1,85 @@
+-- ExpenseFlow schema for the expense_intelligence database.
+-- Run this on every shard configured in db.properties.
+
+CREATE TABLE IF NOT EXISTS categories (
+    id            INT         NOT NULL AUTO_INCREMENT,
+    user_id       INT         NOT NULL,
+    name          VARCHAR(100) NOT NULL,
+    monthly_limit DECIMAL(15,2) NOT NULL DEFAULT 0,
+    -- ISO 4217 code of the limit's currency
+    currency      CHAR(3)     NOT NULL DEFAULT 'INR',
+    priority      CHAR(1)     NOT NULL DEFAULT 'M',
+    is_active     BOOLEAN     NOT NULL DEFAULT TRUE,
+    -- Cluster rows by user so each user's categories are stored together
+    PRIMARY KEY (user_id, id),
+    UNIQUE KEY uk_categories_id (id),
+    KEY idx_categories_user_priority (user_id, priority),
+    KEY idx_categories_user_active (user_id, is_active)
+);
+
+CREATE TABLE IF NOT EXISTS expenses (
+    id            INT         NOT NULL AUTO_INCREMENT,
+    user_id       INT         NOT NULL,
+    title         VARCHAR(255) NOT NULL,
+    amount        DECIMAL(15,2) NOT NULL,
+    -- ISO 4217 code of the amount's currency
+    currency      CHAR(3)     NOT NULL DEFAULT 'INR',
+    mode          CHAR(1)     NOT NULL,
+    is_recurring  BOOLEAN     NOT NULL DEFAULT FALSE,
+    category_id   INT         NOT NULL,
+    spent_at      DATETIME(3) NOT NULL DEFAULT CURRENT_TIMESTAMP(3),
+    -- Recurring expense this row was generated from; at most one row per occurrence
+    recurrence_of INT         NULL,
+    -- Cluster rows by user so each user's expenses are stored together
+    PRIMARY KEY (user_id, id),
+    UNIQUE KEY uk_expenses_id (id),
+    KEY idx_expenses_user_category (user_id, category_id),
+    KEY idx_expenses_user_mode (user_id, mode),
+    KEY idx_expenses_user_recurring (user_id, is_recurring),
+    KEY idx_expenses_user_spent_at (user_id, spent_at),
+    UNIQUE KEY uk_expenses_occurrence (user_id, recurrence_of, spent_at),
+    FOREIGN KEY (user_id, category_id) REFERENCES categories (user_id, id)
+);
+
+-- Upgrading a single-user database: existing rows are assigned to user 1.
+--
+-- ALTER TABLE expenses DROP FOREIGN KEY <existing category foreign key>;
+-- ALTER TABLE categories
+--     ADD COLUMN user_id INT NOT NULL DEFAULT 1 AFTER id,
+--     DROP PRIMARY KEY, ADD PRIMARY KEY (user_id, id), ADD UNIQUE KEY uk_categories_id (id),
+--     ADD KEY idx_categories_user_priority (user_id, priority),
+--     ADD KEY idx_categories_user_active (user_id, is_active);
+-- ALTER TABLE expenses
+--     ADD COLUMN user_id INT NOT NULL DEFAULT 1 AFTER id,
+--     DROP PRIMARY KEY, ADD PRIMARY KEY (user_id, id), ADD UNIQUE KEY uk_expenses_id (id),
+--     ADD KEY idx_expenses_user_category (user_id, category_id),
+--     ADD KEY idx_expenses_user_mode (user_id, mode),
+--     ADD KEY idx_expenses_user_recurring (user_id, is_recurring),
+--     ADD FOREIGN KEY (user_id, category_id) REFERENCES categories (user_id, id);
+
+-- Upgrading a database with FLOAT amounts to exact DECIMAL amounts.
+--
+-- ALTER TABLE categories MODIFY monthly_limit DECIMAL(15,2) NOT NULL DEFAULT 0;
+-- ALTER TABLE expenses MODIFY amount DECIMAL(15,2) NOT NULL;
+
+-- Upgrading a database without expense timestamps: existing rows get the time of the upgrade.
+--
+-- ALTER TABLE expenses
+--     ADD COLUMN spent_at DATETIME(3) NOT NULL DEFAULT CURRENT_TIMESTAMP(3) AFTER category_id,
+--     ADD KEY idx_expenses_user_spent_at (user_id, spent_at);
+
+-- Upgrading a database without generated occurrences of recurring expenses.
+--
+-- ALTER TABLE expenses
+--     ADD COLUMN recurrence_of INT NULL AFTER spent_at,
+--     ADD UNIQUE KEY uk_expenses_occurrence (user_id, recurrence_of, spent_at);
+
+-- Upgrading a database without expense currencies: existing rows are in rupees.
+--
+-- ALTER TABLE expenses
+--     ADD COLUMN currency CHAR(3) NOT NULL DEFAULT 'INR' AFTER amount;
+
+-- Upgrading a database without category limit currencies: existing limits are in rupees.
+--
+-- ALTER TABLE categories
+--     ADD COLUMN currency CHAR(3) NOT NULL DEFAULT 'INR' AFTER monthly_limit;
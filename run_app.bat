@@ -2,7 +2,10 @@
 echo Compiling Java files...
 "c:\Program Files\Java\jdk-21\bin\javac.exe" -d build -cp "lib\mysql-connector-j-8.0.33.jar;." src\model\*.java src\dao\*.java src\utils\*.java src\logic\*.java src\ui\*.java
 
+echo Compiling optional vector analytics backend...
+"c:\Program Files\Java\jdk-21\bin\javac.exe" --add-modules jdk.incubator.vector -d build -cp "build;lib\mysql-connector-j-8.0.33.jar" src\logic\vector\*.java
+
 echo Running application...
-"c:\Program Files\Java\jdk-21\bin\java.exe" -cp "build;lib\mysql-connector-j-8.0.33.jar" ui.MainApp
+"c:\Program Files\Java\jdk-21\bin\java.exe" --add-modules jdk.incubator.vector -cp "build;lib\mysql-connector-j-8.0.33.jar" ui.MainApp
 
 pause 
\ No newline at end of file
@@ -0,0 +1,379 @@
+package dao;
+
+import model.Money;
+
+import java.io.*;
+import java.math.BigDecimal;
+import java.sql.*;
+import java.util.zip.CRC32;
+
+/**
+ * Data Access Object for backing up and restoring all of a user's data.
+ * Both tables are streamed through a compact binary format instead of SQL text.
+ * <p>
+ * Format: a magic number and version, then one section per table. Each section
+ * starts with a table tag and holds blocks of rows, each written as
+ * row count, payload length, payload and CRC32 of the payload. A row count of
+ * 0 ends the section. Strings are length-prefixed modified UTF-8 and amounts
+ * are longs in minor units; version 1 backups, which stored amounts as floats,
+ * can still be restored. Expense timestamps are longs in epoch milliseconds;
+ * expenses from backups older than version 3, which had no timestamps, are
+ * restored with the time of the restore. Version 4 adds the ID of the
+ * recurring expense each expense was generated from, or 0. Version 5 adds
+ * each expense's currency and version 6 the currency of each category's
+ * limit; older backups are restored in the default currency.
+ */
+public class BackupDAO {
+    
+    // "EFBK" in ASCII
+    private static final int MAGIC = 0x4546424B;
+    private static final short FORMAT_VERSION = 6;
+    
+    // Last format version that stored amounts as float
+    private static final short FLOAT_AMOUNTS_VERSION = 1;
+    
+    // First format version that stores expense timestamps
+    private static final short TIMESTAMPS_VERSION = 3;
+    
+    // First format version that stores the recurring expense each expense was generated from
+    private static final short RECURRENCE_VERSION = 4;
+    
+    // First format version that stores the currency of each expense
+    private static final short CURRENCY_VERSION = 5;
+    
+    // First format version that stores the currency of each category's limit
+    private static final short LIMIT_CURRENCY_VERSION = 6;
+    
+    private static final byte TABLE_CATEGORIES = 'C';
+    private static final byte TABLE_EXPENSES = 'E';
+    
+    // Payload size at which a block is flushed
+    private static final int BLOCK_BYTES = 64 * 1024;
+    
+    // Largest row either table can write: two modified UTF-8 strings and the fixed fields
+    private static final int MAX_ROW_BYTES = 2 * (2 + 65535) + 64;
+    
+    // Largest payload a block can hold: a full block plus the row that overflowed it
+    private static final int MAX_BLOCK_BYTES = BLOCK_BYTES + MAX_ROW_BYTES;
+    
+    private final int userId;
+    
+    /**
+     * Create a DAO for the default user.
+     */
+    public BackupDAO() {
+        this(DBConnection.DEFAULT_USER_ID);
+    }
+    
+    /**
+     * Create a DAO scoped to a user.
+     * 
+     * @param userId The ID of the user whose data is backed up or restored
+     */
+    public BackupDAO(int userId) {
+        this.userId = userId;
+    }
+    
+    /**
+     * Write all of the user's categories and expenses to a stream.
+     * The stream is flushed but not closed.
+     * 
+     * @param out The stream to write the backup to
+     * @return true if the backup was written successfully, false otherwise
+     */
+    public boolean backup(OutputStream out) {
+        DataOutputStream data = new DataOutputStream(new BufferedOutputStream(out, BLOCK_BYTES));
+        
+        synchronized (DBConnection.lock(userId)) {
+            try {
+                data.writeInt(MAGIC);
+                data.writeShort(FORMAT_VERSION);
+                
+                String categorySql = "SELECT id, name, monthly_limit, priority, is_active, currency FROM categories WHERE user_id = ? ORDER BY id";
+                data.writeByte(TABLE_CATEGORIES);
+                try (ResultSet rs = queryForUser(categorySql)) {
+                    BlockWriter block = new BlockWriter(data);
+                    while (rs.next()) {
+                        DataOutputStream row = block.row();
+                        row.writeInt(rs.getInt("id"));
+                        row.writeUTF(rs.getString("name"));
+                        row.writeLong(Money.fromBigDecimal(rs.getBigDecimal("monthly_limit")));
+                        row.writeByte(rs.getString("priority").charAt(0));
+                        row.writeBoolean(rs.getBoolean("is_active"));
+                        row.writeUTF(rs.getString("currency"));
+                    }
+                    block.finish();
+                }
+                
+                String expenseSql = "SELECT id, title, amount, mode, is_recurring, category_id, spent_at, recurrence_of, currency FROM expenses WHERE user_id = ? ORDER BY id";
+                data.writeByte(TABLE_EXPENSES);
+                try (ResultSet rs = queryForUser(expenseSql)) {
+                    BlockWriter block = new BlockWriter(data);
+                    while (rs.next()) {
+                        DataOutputStream row = block.row();
+                        row.writeInt(rs.getInt("id"));
+                        row.writeUTF(rs.getString("title"));
+                        row.writeLong(Money.fromBigDecimal(rs.getBigDecimal("amount")));
+                        row.writeByte(rs.getString("mode").charAt(0));
+                        row.writeBoolean(rs.getBoolean("is_recurring"));
+                        row.writeInt(rs.getInt("category_id"));
+                        row.writeLong(rs.getTimestamp("spent_at").getTime());
+                        row.writeInt(rs.getInt("recurrence_of"));
+                        row.writeUTF(rs.getString("currency"));
+                    }
+                    block.finish();
+                }
+                
+                data.flush();
+                return true;
+                
+            } catch (SQLException | IOException e) {
+                System.err.println("Error writing backup: " + e.getMessage());
+                return false;
+            }
+        }
+    }
+    
+    /**
+     * Replace all of the user's categories and expenses with the contents of a backup.
+     * Rows are inserted in batches inside a single transaction with unique and
+     * foreign key checks switched off; nothing is changed if any block fails
+     * its checksum or the load fails.
+     * The stream is not closed.
+     * 
+     * @param in The stream to read the backup from
+     * @return true if the backup was restored successfully, false otherwise
+     */
+    public boolean restore(InputStream in) {
+        DataInputStream data = new DataInputStream(new BufferedInputStream(in, BLOCK_BYTES));
+        
+        synchronized (DBConnection.lock(userId)) {
+            Connection conn;
+            try {
+                conn = DBConnection.getConnection(userId);
+            } catch (SQLException e) {
+                System.err.println("Error restoring backup: " + e.getMessage());
+                return false;
+            }
+            
+            try {
+                if (data.readInt() != MAGIC) {
+                    throw new IOException("Not an ExpenseFlow backup");
+                }
+                short version = data.readShort();
+                if (version < FLOAT_AMOUNTS_VERSION || version > FORMAT_VERSION) {
+                    throw new IOException("Unsupported backup version: " + version);
+                }
+                
+                conn.setAutoCommit(false);
+                setLoadChecks(conn, false);
+                
+                deleteForUser("DELETE FROM expenses WHERE user_id = ?");
+                deleteForUser("DELETE FROM categories WHERE user_id = ?");
+                
+                expectTable(data, TABLE_CATEGORIES);
+                PreparedStatement categoryStmt = DBConnection.prepareStatement(userId,
+                    "INSERT INTO categories (id, user_id, name, monthly_limit, priority, is_active, currency) VALUES (?, ?, ?, ?, ?, ?, ?)");
+                int categoryCount = 0;
+                int rows;
+                while ((rows = data.readInt()) != 0) {
+                    DataInputStream block = readBlock(data, rows);
+                    for (int i = 0; i < rows; i++) {
+                        categoryStmt.setInt(1, block.readInt());
+                        categoryStmt.setInt(2, userId);
+                        categoryStmt.setString(3, block.readUTF());
+                        categoryStmt.setBigDecimal(4, Money.toBigDecimal(readAmount(block, version)));
+                        categoryStmt.setString(5, String.valueOf((char) block.readByte()));
+                        categoryStmt.setBoolean(6, block.readBoolean());
+                        categoryStmt.setString(7, (version >= LIMIT_CURRENCY_VERSION) ? block.readUTF() : Money.DEFAULT_CURRENCY);
+                        categoryStmt.addBatch();
+                    }
+                    expectConsumed(block);
+                    categoryStmt.executeBatch();
+                    categoryCount += rows;
+                }
+                
+                expectTable(data, TABLE_EXPENSES);
+                PreparedStatement expenseStmt = DBConnection.prepareStatement(userId,
+                    "INSERT INTO expenses (id, user_id, title, amount, mode, is_recurring, category_id, spent_at, recurrence_of, currency) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?)");
+                Timestamp restoredAt = new Timestamp(System.currentTimeMillis());
+                int expenseCount = 0;
+                while ((rows = data.readInt()) != 0) {
+                    DataInputStream block = readBlock(data, rows);
+                    for (int i = 0; i < rows; i++) {
+                        expenseStmt.setInt(1, block.readInt());
+                        expenseStmt.setInt(2, userId);
+                        expenseStmt.setString(3, block.readUTF());
+                        expenseStmt.setBigDecimal(4, Money.toBigDecimal(readAmount(block, version)));
+                        expenseStmt.setString(5, String.valueOf((char) block.readByte()));
+                        expenseStmt.setBoolean(6, block.readBoolean());
+                        expenseStmt.setInt(7, block.readInt());
+                        expenseStmt.setTimestamp(8, (version >= TIMESTAMPS_VERSION) ? new Timestamp(block.readLong()) : restoredAt);
+                        ExpenseDAO.setRecurrenceOf(expenseStmt, 9, (version >= RECURRENCE_VERSION) ? block.readInt() : 0);
+                        expenseStmt.setString(10, (version >= CURRENCY_VERSION) ? block.readUTF() : Money.DEFAULT_CURRENCY);
+                        expenseStmt.addBatch();
+                    }
+                    expectConsumed(block);
+                    expenseStmt.executeBatch();
+                    expenseCount += rows;
+                }
+                
+                conn.commit();
+                System.out.println("Restored " + categoryCount + " categories and " + expenseCount + " expenses");
+                return true;
+                
+            } catch (SQLException | IOException e) {
+                System.err.println("Error restoring backup: " + e.getMessage());
+                try {
+                    conn.rollback();
+                } catch (SQLException rollbackError) {
+                    System.err.println("Error rolling back restore: " + rollbackError.getMessage());
+                }
+                return false;
+                
+            } finally {
+                try {
+                    setLoadChecks(conn, true);
+                    conn.setAutoCommit(true);
+                } catch (SQLException e) {
+                    System.err.println("Error resetting connection after restore: " + e.getMessage());
+                }
+            }
+        }
+    }
+    
+    /**
+     * Helper method to run a query whose only parameter is the user ID.
+     */
+    private ResultSet queryForUser(String sql) throws SQLException {
+        PreparedStatement stmt = DBConnection.prepareStatement(userId, sql);
+        stmt.setInt(1, userId);
+        return stmt.executeQuery();
+    }
+    
+    /**
+     * Helper method to run a delete whose only parameter is the user ID.
+     */
+    private void deleteForUser(String sql) throws SQLException {
+        PreparedStatement stmt = DBConnection.prepareStatement(userId, sql);
+        stmt.setInt(1, userId);
+        stmt.executeUpdate();
+    }
+    
+    /**
+     * Switch the per-row unique and foreign key checks of the session on or off.
+     * InnoDB cannot disable secondary indexes, so this is how bulk loads skip
+     * the index lookups that cost the most.
+     */
+    private static void setLoadChecks(Connection conn, boolean enabled) throws SQLException {
+        try (Statement stmt = conn.createStatement()) {
+            int value = enabled ? 1 : 0;
+            stmt.execute("SET unique_checks = " + value + ", foreign_key_checks = " + value);
+        }
+    }
+    
+    private static void expectTable(DataInputStream data, byte tag) throws IOException {
+        byte actual = data.readByte();
+        if (actual != tag) {
+            throw new IOException("Corrupt backup: expected table '" + (char) tag + "' but found '" + (char) actual + "'");
+        }
+    }
+    
+    /**
+     * Read an amount in minor units, converting it from a float in old backups.
+     */
+    private static long readAmount(DataInputStream block, short version) throws IOException {
+        if (version == FLOAT_AMOUNTS_VERSION) {
+            // Float.toString gives the shortest decimal that reads back as the same float
+            return Money.fromBigDecimal(new BigDecimal(Float.toString(block.readFloat())));
+        }
+        return block.readLong();
+    }
+    
+    /**
+     * Read and verify the body of a block whose row count has already been read.
+     * The length is checked against the largest block a backup can hold before
+     * any memory is allocated for it.
+     * 
+     * @return A stream over the rows of the block
+     */
+    private static DataInputStream readBlock(DataInputStream data, int rows) throws IOException {
+        int length = data.readInt();
+        if (rows < 0 || length < 0 || length > MAX_BLOCK_BYTES || rows > length) {
+            throw new IOException("Corrupt backup: invalid block header");
+        }
+        byte[] payload = new byte[length];
+        data.readFully(payload);
+        
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+        if (crc.getValue() != data.readLong()) {
+            throw new IOException("Corrupt backup: block checksum mismatch");
+        }
+        
+        return new DataInputStream(new ByteArrayInputStream(payload));
+    }
+    
+    /**
+     * Check that the rows of a block used up its whole payload.
+     */
+    private static void expectConsumed(DataInputStream block) throws IOException {
+        if (block.available() != 0) {
+            throw new IOException("Corrupt backup: " + block.available() + " bytes left over in block");
+        }
+    }
+    
+    /**
+     * Buffers rows and writes them out as checksummed blocks.
+     */
+    private static class BlockWriter {
+        private final DataOutputStream out;
+        private final ByteArrayOutputStream buffer = new ByteArrayOutputStream(BLOCK_BYTES + 1024);
+        private final DataOutputStream rowData = new DataOutputStream(buffer);
+        private final CRC32 crc = new CRC32();
+        private int rows = 0;
+        
+        BlockWriter(DataOutputStream out) {
+            this.out = out;
+        }
+        
+        /**
+         * Start a new row, flushing the current block first if it is full.
+         * 
+         * @return The stream to write the row's fields to
+         */
+        DataOutputStream row() throws IOException {
+            if (buffer.size() >= BLOCK_BYTES) {
+                flushBlock();
+            }
+            rows++;
+            return rowData;
+        }
+        
+        /**
+         * Write any buffered rows and the end-of-section marker.
+         */
+        void finish() throws IOException {
+            flushBlock();
+            out.writeInt(0);
+        }
+        
+        private void flushBlock() throws IOException {
+            if (rows == 0) {
+                return;
+            }
+            rowData.flush();
+            byte[] payload = buffer.toByteArray();
+            crc.reset();
+            crc.update(payload);
+            
+            out.writeInt(rows);
+            out.writeInt(payload.length);
+            out.write(payload);
+            out.writeLong(crc.getValue());
+            
+            buffer.reset();
+            rows = 0;
+        }
+    }
+}
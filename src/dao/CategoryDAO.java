@@ -1,6 +1,8 @@
 package dao;
 
 import model.Category;
+import model.Money;
+import utils.StringPool;
 
 import java.sql.*;
 import java.util.ArrayList;
@@ -9,9 +11,37 @@ import java.util.List;
 /**
  * Data Access Object for Category entities.
  * Handles all database operations related to categories.
+ * Every operation is scoped to the user (tenant) the DAO was created for.
  */
 public class CategoryDAO {
     
+    private final int userId;
+    
+    /**
+     * Create a DAO for the default user.
+     */
+    public CategoryDAO() {
+        this(DBConnection.DEFAULT_USER_ID);
+    }
+    
+    /**
+     * Create a DAO scoped to a user.
+     * 
+     * @param userId The ID of the user whose categories are accessed
+     */
+    public CategoryDAO(int userId) {
+        this.userId = userId;
+    }
+    
+    /**
+     * Get the ID of the user this DAO is scoped to.
+     * 
+     * @return The user ID
+     */
+    public int getUserId() {
+        return userId;
+    }
+    
     /**
      * Insert a new category into the database.
      * 
@@ -19,34 +49,39 @@ public class CategoryDAO {
      * @return The generated ID of the new category or -1 if the operation failed
      */
     public int insertCategory(Category category) {
-        String sql = "INSERT INTO categories (name, monthly_limit, priority, is_active) VALUES (?, ?, ?, ?)";
+        String sql = "INSERT INTO categories (user_id, name, monthly_limit, currency, priority, is_active) VALUES (?, ?, ?, ?, ?, ?)";
         
-        try (Connection conn = DBConnection.getConnection();
-             PreparedStatement stmt = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
-            
-            stmt.setString(1, category.getName());
-            stmt.setFloat(2, category.getMonthlyLimit());
-            stmt.setString(3, String.valueOf(category.getPriority()));
-            stmt.setBoolean(4, category.isActive());
-            
-            int affectedRows = stmt.executeUpdate();
-            
-            if (affectedRows == 0) {
-                throw new SQLException("Creating category failed, no rows affected.");
-            }
-            
-            try (ResultSet generatedKeys = stmt.getGeneratedKeys()) {
-                if (generatedKeys.next()) {
-                    category.setId(generatedKeys.getInt(1));
-                    return category.getId();
-                } else {
-                    throw new SQLException("Creating category failed, no ID obtained.");
+        synchronized (DBConnection.lock(userId)) {
+            try {
+                PreparedStatement stmt = DBConnection.prepareStatement(userId, sql, true);
+                
+                stmt.setInt(1, userId);
+                stmt.setString(2, category.getName());
+                stmt.setBigDecimal(3, Money.toBigDecimal(category.getMonthlyLimit()));
+                stmt.setString(4, category.getCurrency());
+                stmt.setString(5, String.valueOf(category.getPriority()));
+                stmt.setBoolean(6, category.isActive());
+                
+                int affectedRows = stmt.executeUpdate();
+                
+                if (affectedRows == 0) {
+                    throw new SQLException("Creating category failed, no rows affected.");
+                }
+                
+                try (ResultSet generatedKeys = stmt.getGeneratedKeys()) {
+                    if (generatedKeys.next()) {
+                        category.setId(generatedKeys.getInt(1));
+                        category.setUserId(userId);
+                        return category.getId();
+                    } else {
+                        throw new SQLException("Creating category failed, no ID obtained.");
+                    }
                 }
+                
+            } catch (SQLException e) {
+                System.err.println("Error inserting category: " + e.getMessage());
+                return -1;
             }
-            
-        } catch (SQLException e) {
-            System.err.println("Error inserting category: " + e.getMessage());
-            return -1;
         }
     }
     
@@ -57,23 +92,27 @@ public class CategoryDAO {
      * @return true if successful, false otherwise
      */
     public boolean updateCategory(Category category) {
-        String sql = "UPDATE categories SET name = ?, monthly_limit = ?, priority = ?, is_active = ? WHERE id = ?";
+        String sql = "UPDATE categories SET name = ?, monthly_limit = ?, currency = ?, priority = ?, is_active = ? WHERE user_id = ? AND id = ?";
         
-        try (Connection conn = DBConnection.getConnection();
-             PreparedStatement stmt = conn.prepareStatement(sql)) {
-            
-            stmt.setString(1, category.getName());
-            stmt.setFloat(2, category.getMonthlyLimit());
-            stmt.setString(3, String.valueOf(category.getPriority()));
-            stmt.setBoolean(4, category.isActive());
-            stmt.setInt(5, category.getId());
-            
-            int affectedRows = stmt.executeUpdate();
-            return affectedRows > 0;
-            
-        } catch (SQLException e) {
-            System.err.println("Error updating category: " + e.getMessage());
-            return false;
+        synchronized (DBConnection.lock(userId)) {
+            try {
+                PreparedStatement stmt = DBConnection.prepareStatement(userId, sql);
+                
+                stmt.setString(1, category.getName());
+                stmt.setBigDecimal(2, Money.toBigDecimal(category.getMonthlyLimit()));
+                stmt.setString(3, category.getCurrency());
+                stmt.setString(4, String.valueOf(category.getPriority()));
+                stmt.setBoolean(5, category.isActive());
+                stmt.setInt(6, userId);
+                stmt.setInt(7, category.getId());
+                
+                int affectedRows = stmt.executeUpdate();
+                return affectedRows > 0;
+                
+            } catch (SQLException e) {
+                System.err.println("Error updating category: " + e.getMessage());
+                return false;
+            }
         }
     }
     
@@ -84,19 +123,22 @@ public class CategoryDAO {
      * @return true if successful, false otherwise
      */
     public boolean deleteCategory(int id) {
-        String sql = "DELETE FROM categories WHERE id = ?";
+        String sql = "DELETE FROM categories WHERE user_id = ? AND id = ?";
         
-        try (Connection conn = DBConnection.getConnection();
-             PreparedStatement stmt = conn.prepareStatement(sql)) {
-            
-            stmt.setInt(1, id);
-            int affectedRows = stmt.executeUpdate();
-            
-            return affectedRows > 0;
-            
-        } catch (SQLException e) {
-            System.err.println("Error deleting category: " + e.getMessage());
-            return false;
+        synchronized (DBConnection.lock(userId)) {
+            try {
+                PreparedStatement stmt = DBConnection.prepareStatement(userId, sql);
+                
+                stmt.setInt(1, userId);
+                stmt.setInt(2, id);
+                int affectedRows = stmt.executeUpdate();
+                
+                return affectedRows > 0;
+                
+            } catch (SQLException e) {
+                System.err.println("Error deleting category: " + e.getMessage());
+                return false;
+            }
         }
     }
     
@@ -107,21 +149,24 @@ public class CategoryDAO {
      * @return The category object or null if not found
      */
     public Category getCategoryById(int id) {
-        String sql = "SELECT * FROM categories WHERE id = ?";
+        String sql = "SELECT * FROM categories WHERE user_id = ? AND id = ?";
         
-        try (Connection conn = DBConnection.getConnection();
-             PreparedStatement stmt = conn.prepareStatement(sql)) {
-            
-            stmt.setInt(1, id);
-            
-            try (ResultSet rs = stmt.executeQuery()) {
-                if (rs.next()) {
-                    return mapResultSetToCategory(rs);
+        synchronized (DBConnection.lock(userId)) {
+            try {
+                PreparedStatement stmt = DBConnection.prepareStatement(userId, sql);
+                
+                stmt.setInt(1, userId);
+                stmt.setInt(2, id);
+                
+                try (ResultSet rs = stmt.executeQuery()) {
+                    if (rs.next()) {
+                        return mapResultSetToCategory(rs);
+                    }
                 }
+                
+            } catch (SQLException e) {
+                System.err.println("Error retrieving category: " + e.getMessage());
             }
-            
-        } catch (SQLException e) {
-            System.err.println("Error retrieving category: " + e.getMessage());
         }
         
         return null;
@@ -133,22 +178,8 @@ public class CategoryDAO {
      * @return A list of all categories
      */
     public List<Category> getAllCategories() {
-        List<Category> categories = new ArrayList<>();
-        String sql = "SELECT * FROM categories";
-        
-        try (Connection conn = DBConnection.getConnection();
-             Statement stmt = conn.createStatement();
-             ResultSet rs = stmt.executeQuery(sql)) {
-            
-            while (rs.next()) {
-                categories.add(mapResultSetToCategory(rs));
-            }
-            
-        } catch (SQLException e) {
-            System.err.println("Error retrieving categories: " + e.getMessage());
-        }
-        
-        return categories;
+        String sql = "SELECT * FROM categories WHERE user_id = ?";
+        return queryCategories(sql, "Error retrieving categories: ");
     }
     
     /**
@@ -157,22 +188,8 @@ public class CategoryDAO {
      * @return A list of active categories
      */
     public List<Category> getActiveCategories() {
-        List<Category> categories = new ArrayList<>();
-        String sql = "SELECT * FROM categories WHERE is_active = TRUE";
-        
-        try (Connection conn = DBConnection.getConnection();
-             Statement stmt = conn.createStatement();
-             ResultSet rs = stmt.executeQuery(sql)) {
-            
-            while (rs.next()) {
-                categories.add(mapResultSetToCategory(rs));
-            }
-            
-        } catch (SQLException e) {
-            System.err.println("Error retrieving active categories: " + e.getMessage());
-        }
-        
-        return categories;
+        String sql = "SELECT * FROM categories WHERE user_id = ? AND is_active = TRUE";
+        return queryCategories(sql, "Error retrieving active categories: ");
     }
     
     /**
@@ -183,50 +200,72 @@ public class CategoryDAO {
      */
     public List<Category> getCategoriesByPriority(char priority) {
         List<Category> categories = new ArrayList<>();
-        String sql = "SELECT * FROM categories WHERE priority = ?";
+        String sql = "SELECT * FROM categories WHERE user_id = ? AND priority = ?";
         
-        try (Connection conn = DBConnection.getConnection();
-             PreparedStatement stmt = conn.prepareStatement(sql)) {
-            
-            stmt.setString(1, String.valueOf(priority));
-            
-            try (ResultSet rs = stmt.executeQuery()) {
-                while (rs.next()) {
-                    categories.add(mapResultSetToCategory(rs));
+        synchronized (DBConnection.lock(userId)) {
+            try {
+                PreparedStatement stmt = DBConnection.prepareStatement(userId, sql);
+                
+                stmt.setInt(1, userId);
+                stmt.setString(2, String.valueOf(priority));
+                
+                try (ResultSet rs = stmt.executeQuery()) {
+                    while (rs.next()) {
+                        categories.add(mapResultSetToCategory(rs));
+                    }
                 }
+                
+            } catch (SQLException e) {
+                System.err.println("Error retrieving categories by priority: " + e.getMessage());
             }
-            
-        } catch (SQLException e) {
-            System.err.println("Error retrieving categories by priority: " + e.getMessage());
         }
         
         return categories;
     }
     
     /**
-     * Get categories that are over budget based on expenses.
+     * Get categories that are over budget based on expenses. Only expenses in
+     * the currency of a category's limit are counted against it, since the
+     * database has no exchange rates.
      * 
      * @return A list of categories where total expenses exceed monthly limit
      */
     public List<Category> getOverBudgetCategories() {
-        List<Category> categories = new ArrayList<>();
-        String sql = 
+        String sql =
             "SELECT c.*, SUM(e.amount) as total_spent " +
             "FROM categories c " +
-            "JOIN expenses e ON c.id = e.category_id " +
+            "JOIN expenses e ON e.user_id = c.user_id AND e.category_id = c.id AND e.currency = c.currency " +
+            "WHERE c.user_id = ? " +
             "GROUP BY c.id " +
             "HAVING total_spent > c.monthly_limit";
+        return queryCategories(sql, "Error retrieving over budget categories: ");
+    }
+    
+    /**
+     * Helper method to run a query whose only parameter is the user ID.
+     * 
+     * @param sql The SQL text, with the user ID as its first parameter
+     * @param errorMessage The prefix for the error message if the query fails
+     * @return A list of the categories returned by the query
+     */
+    private List<Category> queryCategories(String sql, String errorMessage) {
+        List<Category> categories = new ArrayList<>();
         
-        try (Connection conn = DBConnection.getConnection();
-             Statement stmt = conn.createStatement();
-             ResultSet rs = stmt.executeQuery(sql)) {
-            
-            while (rs.next()) {
-                categories.add(mapResultSetToCategory(rs));
+        synchronized (DBConnection.lock(userId)) {
+            try {
+                PreparedStatement stmt = DBConnection.prepareStatement(userId, sql);
+                
+                stmt.setInt(1, userId);
+                
+                try (ResultSet rs = stmt.executeQuery()) {
+                    while (rs.next()) {
+                        categories.add(mapResultSetToCategory(rs));
+                    }
+                }
+                
+            } catch (SQLException e) {
+                System.err.println(errorMessage + e.getMessage());
             }
-            
-        } catch (SQLException e) {
-            System.err.println("Error retrieving over budget categories: " + e.getMessage());
         }
         
         return categories;
@@ -242,10 +281,12 @@ public class CategoryDAO {
     private Category mapResultSetToCategory(ResultSet rs) throws SQLException {
         Category category = new Category();
         category.setId(rs.getInt("id"));
-        category.setName(rs.getString("name"));
-        category.setMonthlyLimit(rs.getFloat("monthly_limit"));
+        category.setUserId(rs.getInt("user_id"));
+        category.setName(StringPool.SHARED.intern(rs.getString("name")));
+        category.setMonthlyLimit(Money.fromBigDecimal(rs.getBigDecimal("monthly_limit")));
+        category.setCurrency(StringPool.SHARED.intern(rs.getString("currency")));
         category.setPriority(rs.getString("priority").charAt(0));
         category.setActive(rs.getBoolean("is_active"));
         return category;
     }
-} 
\ No newline at end of file
+}
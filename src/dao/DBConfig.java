@@ -0,0 +1,214 @@
+package dao;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Properties;
+
+/**
+ * Connection settings for the application's data source.
+ * Settings are resolved in three layers, each overriding the previous one:
+ * built-in defaults, an optional properties file, and system properties
+ * prefixed with {@code expenseflow.db.}.
+ * <p>
+ * Tenant data can be spread across several databases. {@code shards} sets the
+ * number of data sources, {@code shard.<n>.<key>} overrides any setting for
+ * shard n, and {@code tenant.<id>.shard} pins a tenant to a shard. Tenants
+ * without a pin are placed by hashing their ID, so changing the shard count
+ * moves them unless they are pinned.
+ */
+public class DBConfig {
+    // System property naming the configuration file to read
+    public static final String CONFIG_FILE_PROPERTY = "expenseflow.db.config";
+    
+    // Configuration file looked up in the working directory when none is given
+    public static final String DEFAULT_CONFIG_FILE = "db.properties";
+    
+    // Prefix for system properties that override file settings
+    public static final String SYSTEM_PROPERTY_PREFIX = "expenseflow.db.";
+    
+    // Keys consumed by the application itself; everything else goes to the driver
+    private static final String KEY_URL = "url";
+    private static final String KEY_USER = "user";
+    private static final String KEY_PASSWORD = "password";
+    private static final String KEY_STATEMENT_CACHE_SIZE = "statementCacheSize";
+    private static final String KEY_SHARDS = "shards";
+    private static final String SHARD_PREFIX = "shard.";
+    private static final String TENANT_PREFIX = "tenant.";
+    
+    private static final int DEFAULT_STATEMENT_CACHE_SIZE = 64;
+    
+    private final Properties settings;
+    
+    /**
+     * Create a configuration from an explicit set of settings layered over the defaults.
+     * 
+     * @param overrides The settings to apply on top of the defaults
+     */
+    public DBConfig(Properties overrides) {
+        this.settings = createDefaults();
+        this.settings.putAll(overrides);
+    }
+    
+    /**
+     * Load the configuration from the configured file and system properties.
+     * A missing configuration file is not an error; the defaults are used instead.
+     * 
+     * @return The resolved configuration
+     */
+    public static DBConfig load() {
+        Properties overrides = new Properties();
+        
+        String configFile = System.getProperty(CONFIG_FILE_PROPERTY, DEFAULT_CONFIG_FILE);
+        try (InputStream in = new FileInputStream(configFile)) {
+            overrides.load(in);
+            System.out.println("Loaded database configuration from: " + configFile);
+        } catch (IOException e) {
+            if (System.getProperty(CONFIG_FILE_PROPERTY) != null) {
+                System.err.println("Could not read database configuration " + configFile + ": " + e.getMessage());
+            }
+        }
+        
+        for (String name : System.getProperties().stringPropertyNames()) {
+            if (name.startsWith(SYSTEM_PROPERTY_PREFIX) && !name.equals(CONFIG_FILE_PROPERTY)) {
+                overrides.setProperty(name.substring(SYSTEM_PROPERTY_PREFIX.length()), System.getProperty(name));
+            }
+        }
+        
+        return new DBConfig(overrides);
+    }
+    
+    /**
+     * Built-in defaults, including the Connector/J tuning properties.
+     * 
+     * @return A new Properties object holding the defaults
+     */
+    private static Properties createDefaults() {
+        Properties defaults = new Properties();
+        defaults.setProperty(KEY_URL, "jdbc:mysql://localhost:3306/expense_intelligence");
+        defaults.setProperty(KEY_USER, "root");
+        defaults.setProperty(KEY_PASSWORD, "root");
+        defaults.setProperty(KEY_STATEMENT_CACHE_SIZE, String.valueOf(DEFAULT_STATEMENT_CACHE_SIZE));
+        
+        // Prepare once on the server and keep the handles in the driver's cache
+        defaults.setProperty("useServerPrepStmts", "true");
+        defaults.setProperty("cachePrepStmts", "true");
+        defaults.setProperty("prepStmtCacheSize", "250");
+        defaults.setProperty("prepStmtCacheSqlLimit", "2048");
+        
+        // Collapse JDBC batches into multi-row INSERT statements
+        defaults.setProperty("rewriteBatchedStatements", "true");
+        
+        // Stream large result sets in chunks instead of buffering them whole
+        defaults.setProperty("useCursorFetch", "true");
+        defaults.setProperty("defaultFetchSize", "1000");
+        
+        defaults.setProperty("useCompression", "true");
+        return defaults;
+    }
+    
+    /**
+     * Get the number of data sources tenants are spread across.
+     * 
+     * @return The shard count, at least 1
+     */
+    public int getShardCount() {
+        try {
+            return Math.max(1, Integer.parseInt(settings.getProperty(KEY_SHARDS, "1").trim()));
+        } catch (NumberFormatException e) {
+            System.err.println("Invalid shard count, using a single shard: " + e.getMessage());
+            return 1;
+        }
+    }
+    
+    /**
+     * Get the shard holding a tenant's data.
+     * 
+     * @param tenantId The ID of the tenant
+     * @return The shard index, from 0 to getShardCount() - 1
+     */
+    public int getShardForTenant(int tenantId) {
+        int shardCount = getShardCount();
+        String pinned = settings.getProperty(TENANT_PREFIX + tenantId + ".shard");
+        if (pinned != null) {
+            try {
+                int shard = Integer.parseInt(pinned.trim());
+                if (shard >= 0 && shard < shardCount) {
+                    return shard;
+                }
+            } catch (NumberFormatException e) {
+                // Fall through to hash placement
+            }
+            System.err.println("Invalid shard pin for tenant " + tenantId + ": " + pinned);
+        }
+        
+        int h = tenantId * 0x9E3779B9;
+        return Math.floorMod(h ^ (h >>> 16), shardCount);
+    }
+    
+    /**
+     * Get the configuration of a single shard, with its shard-specific overrides applied.
+     * 
+     * @param shard The shard index
+     * @return The configuration for that shard
+     */
+    public DBConfig forShard(int shard) {
+        Properties shardSettings = new Properties();
+        String prefix = SHARD_PREFIX + shard + ".";
+        for (String name : settings.stringPropertyNames()) {
+            if (isRoutingKey(name)) {
+                if (name.startsWith(prefix)) {
+                    shardSettings.setProperty(name.substring(prefix.length()), settings.getProperty(name));
+                }
+            } else {
+                shardSettings.setProperty(name, settings.getProperty(name));
+            }
+        }
+        return new DBConfig(shardSettings);
+    }
+    
+    public String getUrl() {
+        return settings.getProperty(KEY_URL);
+    }
+    
+    public String getUser() {
+        return settings.getProperty(KEY_USER);
+    }
+    
+    public String getPassword() {
+        return settings.getProperty(KEY_PASSWORD);
+    }
+    
+    /**
+     * Get the maximum number of prepared statements kept open per connection.
+     * 
+     * @return The statement cache size, at least 1
+     */
+    public int getStatementCacheSize() {
+        try {
+            return Math.max(1, Integer.parseInt(settings.getProperty(KEY_STATEMENT_CACHE_SIZE).trim()));
+        } catch (NumberFormatException e) {
+            System.err.println("Invalid statement cache size, using default: " + e.getMessage());
+            return DEFAULT_STATEMENT_CACHE_SIZE;
+        }
+    }
+    
+    /**
+     * Get the properties to hand to the JDBC driver, including the credentials.
+     * 
+     * @return A new Properties object for DriverManager.getConnection
+     */
+    public Properties getDriverProperties() {
+        Properties driverProperties = new Properties();
+        for (String name : settings.stringPropertyNames()) {
+            if (!name.equals(KEY_URL) && !name.equals(KEY_STATEMENT_CACHE_SIZE) && !isRoutingKey(name)) {
+                driverProperties.setProperty(name, settings.getProperty(name));
+            }
+        }
+        return driverProperties;
+    }
+    
+    private static boolean isRoutingKey(String name) {
+        return name.equals(KEY_SHARDS) || name.startsWith(SHARD_PREFIX) || name.startsWith(TENANT_PREFIX);
+    }
+}
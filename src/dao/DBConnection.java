@@ -2,61 +2,216 @@ package dao;
 
 import java.sql.Connection;
 import java.sql.DriverManager;
+import java.sql.PreparedStatement;
 import java.sql.SQLException;
+import java.util.Arrays;
 
 /**
  * Singleton class that manages database connections for the application.
+ * Connection settings come from {@link DBConfig}; hot statements are kept
+ * prepared in a per-connection {@link StatementCache}.
+ * <p>
+ * Each tenant (user) is routed to one of the configured shards, and one
+ * connection is kept open per shard. A shard's connection and its cached
+ * statements are shared by every thread, so callers hold the shard's
+ * {@link #lock(int)} from binding a statement until its results are read.
  */
 public class DBConnection {
-    // JDBC URL, username and password of MySQL server
-    private static final String URL = "jdbc:mysql://localhost:3306/expense_intelligence";
-    private static final String USER = "root";
-    private static final String PASSWORD = "root"; // Using the password you specified
+    // Tenant used when the application does not name one
+    public static final int DEFAULT_USER_ID = 1;
     
-    // Connection object
-    private static Connection connection = null;
+    // Resolved data source configuration
+    private static DBConfig config = null;
+    
+    // Connection objects, one per shard
+    private static Connection[] connections = null;
+    
+    // Prepared statements bound to each shard's connection
+    private static StatementCache[] statementCaches = null;
+    
+    // Lock guarding each shard's connection; entries are never replaced
+    private static Object[] shardLocks = new Object[0];
     
     // Private constructor to prevent instantiation
     private DBConnection() {}
     
     /**
-     * Get a connection to the database.
+     * Get the active data source configuration, loading it on first use.
+     * @return The database configuration
+     */
+    public static synchronized DBConfig getConfig() {
+        if (config == null) {
+            config = DBConfig.load();
+        }
+        return config;
+    }
+    
+    /**
+     * Replace the data source configuration. All open connections are closed
+     * so that subsequent calls use the new settings.
+     * @param newConfig The configuration to use
+     */
+    public static void setConfig(DBConfig newConfig) {
+        closeConnection();
+        synchronized (DBConnection.class) {
+            config = newConfig;
+        }
+    }
+    
+    /**
+     * Get the shard that stores a tenant's data.
+     * @param userId The ID of the tenant
+     * @return The shard index
+     */
+    public static int getShardIndex(int userId) {
+        return getConfig().getShardForTenant(userId);
+    }
+    
+    /**
+     * Get the lock guarding the connection of a tenant's shard. A caller must
+     * hold it from preparing a statement until it has executed the statement
+     * and consumed its results, and for the whole of a transaction.
+     * @param userId The ID of the tenant
+     * @return The lock object of the tenant's shard
+     */
+    public static synchronized Object lock(int userId) {
+        return shardLock(getShardIndex(userId));
+    }
+    
+    private static synchronized Object shardLock(int shard) {
+        if (shard >= shardLocks.length) {
+            Object[] grown = Arrays.copyOf(shardLocks, shard + 1);
+            for (int i = shardLocks.length; i < grown.length; i++) {
+                grown[i] = new Object();
+            }
+            shardLocks = grown;
+        }
+        return shardLocks[shard];
+    }
+    
+    /**
+     * Get a connection to the default tenant's database.
+     * The connection is shared; callers must not close it.
      * @return Connection object
      * @throws SQLException if a database access error occurs
      */
     public static Connection getConnection() throws SQLException {
+        return getConnection(DEFAULT_USER_ID);
+    }
+    
+    /**
+     * Get a connection to the database holding a tenant's data.
+     * The connection is shared; callers must not close it.
+     * @param userId The ID of the tenant
+     * @return Connection object
+     * @throws SQLException if a database access error occurs
+     */
+    public static synchronized Connection getConnection(int userId) throws SQLException {
+        return getShardConnection(getShardIndex(userId));
+    }
+    
+    /**
+     * Get the connection to a shard, opening it if needed.
+     * The connection is shared; callers must not close it.
+     * @param shard The shard index, from 0 to the configured shard count - 1
+     * @return Connection object
+     * @throws SQLException if a database access error occurs
+     * @throws IllegalArgumentException if the shard is not configured
+     */
+    public static synchronized Connection getShardConnection(int shard) throws SQLException {
+        DBConfig dbConfig = getConfig();
+        if (connections == null) {
+            connections = new Connection[dbConfig.getShardCount()];
+            statementCaches = new StatementCache[connections.length];
+        }
+        if (shard < 0 || shard >= connections.length) {
+            throw new IllegalArgumentException("No such shard: " + shard + " (" + connections.length + " configured)");
+        }
+        
         try {
-            if (connection == null || connection.isClosed()) {
+            if (connections[shard] == null || connections[shard].isClosed()) {
                 // Load MySQL JDBC driver
                 Class.forName("com.mysql.cj.jdbc.Driver");
                 
                 // Create connection
-                connection = DriverManager.getConnection(URL, USER, PASSWORD);
-                System.out.println("Database connection established successfully!");
+                DBConfig shardConfig = dbConfig.forShard(shard);
+                connections[shard] = DriverManager.getConnection(shardConfig.getUrl(), shardConfig.getDriverProperties());
+                statementCaches[shard] = new StatementCache(connections[shard], shardConfig.getStatementCacheSize());
+                System.out.println("Database connection established successfully! (shard " + shard + ")");
             }
         } catch (ClassNotFoundException e) {
             throw new SQLException("MySQL JDBC Driver not found", e);
         } catch (SQLException e) {
-            System.err.println("Failed to connect to database: " + e.getMessage());
+            System.err.println("Failed to connect to database shard " + shard + ": " + e.getMessage());
             throw e;
         }
         
-        return connection;
+        return connections[shard];
+    }
+    
+    /**
+     * Get a prepared statement from the statement cache of a tenant's shard.
+     * The statement stays owned by the cache; callers must not close it.
+     * @param userId The ID of the tenant
+     * @param sql The SQL text to prepare
+     * @return An open prepared statement
+     * @throws SQLException if a database access error occurs
+     */
+    public static PreparedStatement prepareStatement(int userId, String sql) throws SQLException {
+        return prepareStatement(userId, sql, false);
+    }
+    
+    /**
+     * Get a prepared statement from the statement cache of a tenant's shard.
+     * The statement stays owned by the cache; callers must not close it, and
+     * must hold {@link #lock(int)} for the tenant while using it.
+     * @param userId The ID of the tenant
+     * @param sql The SQL text to prepare
+     * @param returnGeneratedKeys true if the statement must return generated keys
+     * @return An open prepared statement
+     * @throws SQLException if a database access error occurs
+     */
+    public static synchronized PreparedStatement prepareStatement(int userId, String sql, boolean returnGeneratedKeys)
+            throws SQLException {
+        int shard = getShardIndex(userId);
+        if (!Thread.holdsLock(shardLock(shard))) {
+            throw new IllegalStateException("Shard lock not held for user " + userId);
+        }
+        getShardConnection(shard);
+        return statementCaches[shard].prepare(sql, returnGeneratedKeys);
     }
     
     /**
-     * Close the database connection.
+     * Close all database connections. Each shard is closed once the thread
+     * using it, if any, has released the shard's lock.
      */
     public static void closeConnection() {
-        try {
-            if (connection != null && !connection.isClosed()) {
-                connection.close();
-                System.out.println("Database connection closed successfully!");
+        Connection[] closing;
+        StatementCache[] caches;
+        synchronized (DBConnection.class) {
+            if (connections == null) {
+                return;
+            }
+            closing = connections;
+            caches = statementCaches;
+            connections = null;
+            statementCaches = null;
+        }
+        
+        for (int shard = 0; shard < closing.length; shard++) {
+            synchronized (shardLock(shard)) {
+                try {
+                    if (caches[shard] != null) {
+                        caches[shard].close();
+                    }
+                    if (closing[shard] != null && !closing[shard].isClosed()) {
+                        closing[shard].close();
+                        System.out.println("Database connection closed successfully! (shard " + shard + ")");
+                    }
+                } catch (SQLException e) {
+                    System.err.println("Failed to close database connection: " + e.getMessage());
+                }
             }
-        } catch (SQLException e) {
-            System.err.println("Failed to close database connection: " + e.getMessage());
-        } finally {
-            connection = null;
         }
     }
-} 
\ No newline at end of file
+}
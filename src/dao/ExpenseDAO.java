@@ -1,6 +1,9 @@
 package dao;
 
 import model.Expense;
+import model.Money;
+import utils.IntLongMap;
+import utils.StringPool;
 
 import java.sql.*;
 import java.util.ArrayList;
@@ -9,9 +12,54 @@ import java.util.List;
 /**
  * Data Access Object for Expense entities.
  * Handles all database operations related to expenses.
+ * Every operation is scoped to the user (tenant) the DAO was created for.
  */
 public class ExpenseDAO {
     
+    /**
+     * Receives expense rows one at a time as they are streamed from the database.
+     */
+    @FunctionalInterface
+    public interface ExpenseRowHandler {
+        void handleRow(int id, String title, long amount, String currency, char mode, boolean isRecurring, int categoryId);
+    }
+    
+    private static final String INSERT_SQL =
+        "INSERT INTO expenses (user_id, title, amount, currency, mode, is_recurring, category_id, spent_at, recurrence_of) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)";
+    
+    // Rows sent to the server per batch by insertExpenses
+    private static final int INSERT_BATCH_SIZE = 500;
+    
+    // MySQL error code for a duplicate value of a unique key
+    private static final int ER_DUP_ENTRY = 1062;
+    
+    private final int userId;
+    
+    /**
+     * Create a DAO for the default user.
+     */
+    public ExpenseDAO() {
+        this(DBConnection.DEFAULT_USER_ID);
+    }
+    
+    /**
+     * Create a DAO scoped to a user.
+     * 
+     * @param userId The ID of the user whose expenses are accessed
+     */
+    public ExpenseDAO(int userId) {
+        this.userId = userId;
+    }
+    
+    /**
+     * Get the ID of the user this DAO is scoped to.
+     * 
+     * @return The user ID
+     */
+    public int getUserId() {
+        return userId;
+    }
+    
     /**
      * Insert a new expense into the database.
      * 
@@ -19,35 +67,193 @@ public class ExpenseDAO {
      * @return The generated ID of the new expense or -1 if the operation failed
      */
     public int insertExpense(Expense expense) {
-        String sql = "INSERT INTO expenses (title, amount, mode, is_recurring, category_id) VALUES (?, ?, ?, ?, ?)";
+        synchronized (DBConnection.lock(userId)) {
+            try {
+                PreparedStatement stmt = DBConnection.prepareStatement(userId, INSERT_SQL, true);
+                
+                setInsertParameters(stmt, expense);
+                
+                int affectedRows = stmt.executeUpdate();
+                
+                if (affectedRows == 0) {
+                    throw new SQLException("Creating expense failed, no rows affected.");
+                }
+                
+                try (ResultSet generatedKeys = stmt.getGeneratedKeys()) {
+                    if (generatedKeys.next()) {
+                        expense.setId(generatedKeys.getInt(1));
+                        expense.setUserId(userId);
+                        return expense.getId();
+                    } else {
+                        throw new SQLException("Creating expense failed, no ID obtained.");
+                    }
+                }
+                
+            } catch (SQLException e) {
+                System.err.println("Error inserting expense: " + e.getMessage());
+                return -1;
+            }
+        }
+    }
+    
+    /**
+     * Insert a new expense unless it is an occurrence of a recurring expense
+     * that is already stored, as identified by the occurrence's unique key.
+     * 
+     * @param expense The expense to insert
+     * @return The generated ID of the new expense, 0 if the occurrence already
+     *         exists, or -1 if the operation failed
+     */
+    public int insertExpenseIfAbsent(Expense expense) {
+        synchronized (DBConnection.lock(userId)) {
+            try {
+                // Look the occurrence up first: with the driver's default of
+                // reporting found rows, an upsert cannot tell a duplicate apart
+                if (expense.getRecurrenceOf() != 0 && occurrenceExists(expense)) {
+                    return 0;
+                }
+                
+                PreparedStatement stmt = DBConnection.prepareStatement(userId, INSERT_SQL, true);
+                
+                setInsertParameters(stmt, expense);
+                
+                if (stmt.executeUpdate() == 0) {
+                    throw new SQLException("Creating expense failed, no rows affected.");
+                }
+                
+                try (ResultSet generatedKeys = stmt.getGeneratedKeys()) {
+                    if (generatedKeys.next()) {
+                        expense.setId(generatedKeys.getInt(1));
+                        expense.setUserId(userId);
+                        return expense.getId();
+                    } else {
+                        throw new SQLException("Creating expense failed, no ID obtained.");
+                    }
+                }
+                
+            } catch (SQLIntegrityConstraintViolationException e) {
+                // Another process stored the same occurrence since it was looked up
+                if (e.getErrorCode() == ER_DUP_ENTRY && expense.getRecurrenceOf() != 0) {
+                    return 0;
+                }
+                System.err.println("Error inserting expense: " + e.getMessage());
+                return -1;
+            } catch (SQLException e) {
+                System.err.println("Error inserting expense: " + e.getMessage());
+                return -1;
+            }
+        }
+    }
+    
+    /**
+     * Helper method to check whether an occurrence of a recurring expense is
+     * already stored. Must be called while holding the user's shard lock.
+     */
+    private boolean occurrenceExists(Expense expense) throws SQLException {
+        String sql = "SELECT 1 FROM expenses WHERE user_id = ? AND recurrence_of = ? AND spent_at = ?";
+        PreparedStatement stmt = DBConnection.prepareStatement(userId, sql);
+        stmt.setInt(1, userId);
+        stmt.setInt(2, expense.getRecurrenceOf());
+        stmt.setTimestamp(3, new Timestamp(expense.getSpentAt()));
+        try (ResultSet rs = stmt.executeQuery()) {
+            return rs.next();
+        }
+    }
+    
+    /**
+     * Insert several new expenses in batches inside a single transaction.
+     * Either all of the expenses are inserted and given their generated IDs,
+     * or none are.
+     * 
+     * @param expenses The expenses to insert
+     * @return true if all expenses were inserted, false otherwise
+     */
+    public boolean insertExpenses(List<Expense> expenses) {
+        if (expenses.isEmpty()) {
+            return true;
+        }
         
-        try (Connection conn = DBConnection.getConnection();
-             PreparedStatement stmt = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
-            
-            stmt.setString(1, expense.getTitle());
-            stmt.setFloat(2, expense.getAmount());
-            stmt.setString(3, String.valueOf(expense.getMode()));
-            stmt.setBoolean(4, expense.isRecurring());
-            stmt.setInt(5, expense.getCategoryId());
-            
-            int affectedRows = stmt.executeUpdate();
-            
-            if (affectedRows == 0) {
-                throw new SQLException("Creating expense failed, no rows affected.");
+        synchronized (DBConnection.lock(userId)) {
+            Connection conn;
+            try {
+                conn = DBConnection.getConnection(userId);
+            } catch (SQLException e) {
+                System.err.println("Error inserting expenses: " + e.getMessage());
+                return false;
             }
             
-            try (ResultSet generatedKeys = stmt.getGeneratedKeys()) {
-                if (generatedKeys.next()) {
-                    expense.setId(generatedKeys.getInt(1));
-                    return expense.getId();
-                } else {
-                    throw new SQLException("Creating expense failed, no ID obtained.");
+            try {
+                conn.setAutoCommit(false);
+                PreparedStatement stmt = DBConnection.prepareStatement(userId, INSERT_SQL, true);
+                
+                for (int start = 0; start < expenses.size(); start += INSERT_BATCH_SIZE) {
+                    List<Expense> batch = expenses.subList(start, Math.min(start + INSERT_BATCH_SIZE, expenses.size()));
+                    for (Expense expense : batch) {
+                        setInsertParameters(stmt, expense);
+                        stmt.addBatch();
+                    }
+                    stmt.executeBatch();
+                    
+                    // Keys come back in the order the rows were added
+                    try (ResultSet generatedKeys = stmt.getGeneratedKeys()) {
+                        for (Expense expense : batch) {
+                            if (!generatedKeys.next()) {
+                                throw new SQLException("Creating expenses failed, no ID obtained.");
+                            }
+                            expense.setId(generatedKeys.getInt(1));
+                            expense.setUserId(userId);
+                        }
+                    }
+                }
+                
+                conn.commit();
+                return true;
+                
+            } catch (SQLException e) {
+                System.err.println("Error inserting expenses: " + e.getMessage());
+                try {
+                    conn.rollback();
+                } catch (SQLException rollbackError) {
+                    System.err.println("Error rolling back expense inserts: " + rollbackError.getMessage());
+                }
+                for (Expense expense : expenses) {
+                    expense.setId(0);
+                }
+                return false;
+                
+            } finally {
+                try {
+                    conn.setAutoCommit(true);
+                } catch (SQLException e) {
+                    System.err.println("Error resetting connection after expense inserts: " + e.getMessage());
                 }
             }
-            
-        } catch (SQLException e) {
-            System.err.println("Error inserting expense: " + e.getMessage());
-            return -1;
+        }
+    }
+    
+    /**
+     * Helper method to set the parameters of INSERT_SQL from an expense.
+     */
+    private void setInsertParameters(PreparedStatement stmt, Expense expense) throws SQLException {
+        stmt.setInt(1, userId);
+        stmt.setString(2, expense.getTitle());
+        stmt.setBigDecimal(3, Money.toBigDecimal(expense.getAmount()));
+        stmt.setString(4, expense.getCurrency());
+        stmt.setString(5, String.valueOf(expense.getMode()));
+        stmt.setBoolean(6, expense.isRecurring());
+        stmt.setInt(7, expense.getCategoryId());
+        stmt.setTimestamp(8, new Timestamp(expense.getSpentAt()));
+        setRecurrenceOf(stmt, 9, expense.getRecurrenceOf());
+    }
+    
+    /**
+     * Helper method to set a recurrence_of parameter, where 0 means none.
+     */
+    static void setRecurrenceOf(PreparedStatement stmt, int index, int recurrenceOf) throws SQLException {
+        if (recurrenceOf == 0) {
+            stmt.setNull(index, Types.INTEGER);
+        } else {
+            stmt.setInt(index, recurrenceOf);
         }
     }
     
@@ -58,24 +264,30 @@ public class ExpenseDAO {
      * @return true if successful, false otherwise
      */
     public boolean updateExpense(Expense expense) {
-        String sql = "UPDATE expenses SET title = ?, amount = ?, mode = ?, is_recurring = ?, category_id = ? WHERE id = ?";
+        String sql = "UPDATE expenses SET title = ?, amount = ?, currency = ?, mode = ?, is_recurring = ?, category_id = ?, spent_at = ?, recurrence_of = ? WHERE user_id = ? AND id = ?";
         
-        try (Connection conn = DBConnection.getConnection();
-             PreparedStatement stmt = conn.prepareStatement(sql)) {
-            
-            stmt.setString(1, expense.getTitle());
-            stmt.setFloat(2, expense.getAmount());
-            stmt.setString(3, String.valueOf(expense.getMode()));
-            stmt.setBoolean(4, expense.isRecurring());
-            stmt.setInt(5, expense.getCategoryId());
-            stmt.setInt(6, expense.getId());
-            
-            int affectedRows = stmt.executeUpdate();
-            return affectedRows > 0;
-            
-        } catch (SQLException e) {
-            System.err.println("Error updating expense: " + e.getMessage());
-            return false;
+        synchronized (DBConnection.lock(userId)) {
+            try {
+                PreparedStatement stmt = DBConnection.prepareStatement(userId, sql);
+                
+                stmt.setString(1, expense.getTitle());
+                stmt.setBigDecimal(2, Money.toBigDecimal(expense.getAmount()));
+                stmt.setString(3, expense.getCurrency());
+                stmt.setString(4, String.valueOf(expense.getMode()));
+                stmt.setBoolean(5, expense.isRecurring());
+                stmt.setInt(6, expense.getCategoryId());
+                stmt.setTimestamp(7, new Timestamp(expense.getSpentAt()));
+                setRecurrenceOf(stmt, 8, expense.getRecurrenceOf());
+                stmt.setInt(9, userId);
+                stmt.setInt(10, expense.getId());
+                
+                int affectedRows = stmt.executeUpdate();
+                return affectedRows > 0;
+                
+            } catch (SQLException e) {
+                System.err.println("Error updating expense: " + e.getMessage());
+                return false;
+            }
         }
     }
     
@@ -86,19 +298,22 @@ public class ExpenseDAO {
      * @return true if successful, false otherwise
      */
     public boolean deleteExpense(int id) {
-        String sql = "DELETE FROM expenses WHERE id = ?";
+        String sql = "DELETE FROM expenses WHERE user_id = ? AND id = ?";
         
-        try (Connection conn = DBConnection.getConnection();
-             PreparedStatement stmt = conn.prepareStatement(sql)) {
-            
-            stmt.setInt(1, id);
-            int affectedRows = stmt.executeUpdate();
-            
-            return affectedRows > 0;
-            
-        } catch (SQLException e) {
-            System.err.println("Error deleting expense: " + e.getMessage());
-            return false;
+        synchronized (DBConnection.lock(userId)) {
+            try {
+                PreparedStatement stmt = DBConnection.prepareStatement(userId, sql);
+                
+                stmt.setInt(1, userId);
+                stmt.setInt(2, id);
+                int affectedRows = stmt.executeUpdate();
+                
+                return affectedRows > 0;
+                
+            } catch (SQLException e) {
+                System.err.println("Error deleting expense: " + e.getMessage());
+                return false;
+            }
         }
     }
     
@@ -109,21 +324,24 @@ public class ExpenseDAO {
      * @return The expense object or null if not found
      */
     public Expense getExpenseById(int id) {
-        String sql = "SELECT * FROM expenses WHERE id = ?";
+        String sql = "SELECT * FROM expenses WHERE user_id = ? AND id = ?";
         
-        try (Connection conn = DBConnection.getConnection();
-             PreparedStatement stmt = conn.prepareStatement(sql)) {
-            
-            stmt.setInt(1, id);
-            
-            try (ResultSet rs = stmt.executeQuery()) {
-                if (rs.next()) {
-                    return mapResultSetToExpense(rs);
+        synchronized (DBConnection.lock(userId)) {
+            try {
+                PreparedStatement stmt = DBConnection.prepareStatement(userId, sql);
+                
+                stmt.setInt(1, userId);
+                stmt.setInt(2, id);
+                
+                try (ResultSet rs = stmt.executeQuery()) {
+                    if (rs.next()) {
+                        return mapResultSetToExpense(rs);
+                    }
                 }
+                
+            } catch (SQLException e) {
+                System.err.println("Error retrieving expense: " + e.getMessage());
             }
-            
-        } catch (SQLException e) {
-            System.err.println("Error retrieving expense: " + e.getMessage());
         }
         
         return null;
@@ -135,22 +353,8 @@ public class ExpenseDAO {
      * @return A list of all expenses
      */
     public List<Expense> getAllExpenses() {
-        List<Expense> expenses = new ArrayList<>();
-        String sql = "SELECT * FROM expenses";
-        
-        try (Connection conn = DBConnection.getConnection();
-             Statement stmt = conn.createStatement();
-             ResultSet rs = stmt.executeQuery(sql)) {
-            
-            while (rs.next()) {
-                expenses.add(mapResultSetToExpense(rs));
-            }
-            
-        } catch (SQLException e) {
-            System.err.println("Error retrieving expenses: " + e.getMessage());
-        }
-        
-        return expenses;
+        String sql = "SELECT * FROM expenses WHERE user_id = ?";
+        return queryExpenses(sql, "Error retrieving expenses: ");
     }
     
     /**
@@ -159,22 +363,8 @@ public class ExpenseDAO {
      * @return A list of recurring expenses
      */
     public List<Expense> getRecurringExpenses() {
-        List<Expense> expenses = new ArrayList<>();
-        String sql = "SELECT * FROM expenses WHERE is_recurring = TRUE";
-        
-        try (Connection conn = DBConnection.getConnection();
-             Statement stmt = conn.createStatement();
-             ResultSet rs = stmt.executeQuery(sql)) {
-            
-            while (rs.next()) {
-                expenses.add(mapResultSetToExpense(rs));
-            }
-            
-        } catch (SQLException e) {
-            System.err.println("Error retrieving recurring expenses: " + e.getMessage());
-        }
-        
-        return expenses;
+        String sql = "SELECT * FROM expenses WHERE user_id = ? AND is_recurring = TRUE";
+        return queryExpenses(sql, "Error retrieving recurring expenses: ");
     }
     
     /**
@@ -185,21 +375,24 @@ public class ExpenseDAO {
      */
     public List<Expense> getExpensesByCategory(int categoryId) {
         List<Expense> expenses = new ArrayList<>();
-        String sql = "SELECT * FROM expenses WHERE category_id = ?";
+        String sql = "SELECT * FROM expenses WHERE user_id = ? AND category_id = ?";
         
-        try (Connection conn = DBConnection.getConnection();
-             PreparedStatement stmt = conn.prepareStatement(sql)) {
-            
-            stmt.setInt(1, categoryId);
-            
-            try (ResultSet rs = stmt.executeQuery()) {
-                while (rs.next()) {
-                    expenses.add(mapResultSetToExpense(rs));
+        synchronized (DBConnection.lock(userId)) {
+            try {
+                PreparedStatement stmt = DBConnection.prepareStatement(userId, sql);
+                
+                stmt.setInt(1, userId);
+                stmt.setInt(2, categoryId);
+                
+                try (ResultSet rs = stmt.executeQuery()) {
+                    while (rs.next()) {
+                        expenses.add(mapResultSetToExpense(rs));
+                    }
                 }
+                
+            } catch (SQLException e) {
+                System.err.println("Error retrieving expenses by category: " + e.getMessage());
             }
-            
-        } catch (SQLException e) {
-            System.err.println("Error retrieving expenses by category: " + e.getMessage());
         }
         
         return expenses;
@@ -207,24 +400,61 @@ public class ExpenseDAO {
     
     /**
      * Get total spending by category.
+     * Amounts are summed as stored, so totals mix currencies when a category
+     * has expenses in more than one; convert per currency in that case.
      * 
-     * @return A list of category IDs and their total spending
+     * @return A map of category IDs to their total spending in minor units
      */
-    public List<Object[]> getTotalSpendingByCategory() {
-        List<Object[]> result = new ArrayList<>();
-        String sql = "SELECT category_id, SUM(amount) as total FROM expenses GROUP BY category_id";
+    public IntLongMap getTotalSpendingByCategory() {
+        IntLongMap result = new IntLongMap();
+        String sql = "SELECT category_id, SUM(amount) as total FROM expenses WHERE user_id = ? GROUP BY category_id";
         
-        try (Connection conn = DBConnection.getConnection();
-             Statement stmt = conn.createStatement();
-             ResultSet rs = stmt.executeQuery(sql)) {
-            
-            while (rs.next()) {
-                Object[] row = {rs.getInt("category_id"), rs.getFloat("total")};
-                result.add(row);
+        synchronized (DBConnection.lock(userId)) {
+            try {
+                PreparedStatement stmt = DBConnection.prepareStatement(userId, sql);
+                
+                stmt.setInt(1, userId);
+                
+                try (ResultSet rs = stmt.executeQuery()) {
+                    while (rs.next()) {
+                        result.put(rs.getInt("category_id"), Money.fromBigDecimal(rs.getBigDecimal("total")));
+                    }
+                }
+                
+            } catch (SQLException e) {
+                System.err.println("Error calculating total spending by category: " + e.getMessage());
+            }
+        }
+        
+        return result;
+    }
+    
+    /**
+     * Get the date of the latest stored occurrence of each recurring expense,
+     * whether or not those occurrences are loaded.
+     * 
+     * @return A map of template IDs to epoch milliseconds, or null if the query failed
+     */
+    public IntLongMap getLatestOccurrences() {
+        IntLongMap result = new IntLongMap();
+        String sql = "SELECT recurrence_of, MAX(spent_at) as latest FROM expenses WHERE user_id = ? AND recurrence_of IS NOT NULL GROUP BY recurrence_of";
+        
+        synchronized (DBConnection.lock(userId)) {
+            try {
+                PreparedStatement stmt = DBConnection.prepareStatement(userId, sql);
+                
+                stmt.setInt(1, userId);
+                
+                try (ResultSet rs = stmt.executeQuery()) {
+                    while (rs.next()) {
+                        result.put(rs.getInt("recurrence_of"), rs.getTimestamp("latest").getTime());
+                    }
+                }
+                
+            } catch (SQLException e) {
+                System.err.println("Error retrieving latest recurring occurrences: " + e.getMessage());
+                return null;
             }
-            
-        } catch (SQLException e) {
-            System.err.println("Error calculating total spending by category: " + e.getMessage());
         }
         
         return result;
@@ -236,63 +466,107 @@ public class ExpenseDAO {
      * @return A list of non-recurring expense objects
      */
     public List<Expense> getNonRecurringExpenses() {
+        String sql = "SELECT * FROM expenses WHERE user_id = ? AND is_recurring = FALSE";
+        return queryExpenses(sql, "Error getting non-recurring expenses: ");
+    }
+    
+    /**
+     * Get expenses with a specific payment mode from the database.
+     * 
+     * @param mode The payment mode to filter by ('C'=Cash, 'D'=Digital, 'B'=Bank Transfer)
+     * @return A list of expense objects with the specified payment mode
+     */
+    public List<Expense> getExpensesByPaymentMode(char mode) {
         List<Expense> expenses = new ArrayList<>();
+        String sql = "SELECT * FROM expenses WHERE user_id = ? AND mode = ?";
         
-        try (Connection conn = DBConnection.getConnection();
-             PreparedStatement stmt = conn.prepareStatement(
-                 "SELECT * FROM expenses WHERE is_recurring = FALSE")) {
-            
-            ResultSet rs = stmt.executeQuery();
-            
-            while (rs.next()) {
-                Expense expense = new Expense(
-                    rs.getInt("id"),
-                    rs.getString("title"),
-                    rs.getFloat("amount"),
-                    rs.getString("mode").charAt(0),
-                    rs.getBoolean("is_recurring"),
-                    rs.getInt("category_id")
-                );
-                expenses.add(expense);
+        synchronized (DBConnection.lock(userId)) {
+            try {
+                PreparedStatement stmt = DBConnection.prepareStatement(userId, sql);
+                
+                stmt.setInt(1, userId);
+                stmt.setString(2, String.valueOf(mode));
+                
+                try (ResultSet rs = stmt.executeQuery()) {
+                    while (rs.next()) {
+                        expenses.add(mapResultSetToExpense(rs));
+                    }
+                }
+                
+            } catch (SQLException e) {
+                System.err.println("Error getting expenses by payment mode: " + e.getMessage());
             }
-            
-        } catch (SQLException e) {
-            System.err.println("Error getting non-recurring expenses: " + e.getMessage());
         }
         
         return expenses;
     }
     
     /**
-     * Get expenses with a specific payment mode from the database.
+     * Stream all expenses to a handler without creating Expense objects.
+     * Rows are fetched from the server in chunks, so memory use does not grow with the table.
      * 
-     * @param mode The payment mode to filter by ('C'=Cash, 'D'=Digital, 'B'=Bank Transfer)
-     * @return A list of expense objects with the specified payment mode
+     * @param handler The handler that receives each row
+     * @return The number of rows streamed, or -1 if the query failed
      */
-    public List<Expense> getExpensesByPaymentMode(char mode) {
+    public int scanExpenses(ExpenseRowHandler handler) {
+        String sql = "SELECT id, title, amount, currency, mode, is_recurring, category_id FROM expenses WHERE user_id = ?";
+        int count = 0;
+        
+        synchronized (DBConnection.lock(userId)) {
+            try {
+                PreparedStatement stmt = DBConnection.prepareStatement(userId, sql);
+                
+                stmt.setInt(1, userId);
+                
+                try (ResultSet rs = stmt.executeQuery()) {
+                    while (rs.next()) {
+                        handler.handleRow(
+                            rs.getInt(1),
+                            StringPool.SHARED.intern(rs.getString(2)),
+                            Money.fromBigDecimal(rs.getBigDecimal(3)),
+                            StringPool.SHARED.intern(rs.getString(4)),
+                            rs.getString(5).charAt(0),
+                            rs.getBoolean(6),
+                            rs.getInt(7)
+                        );
+                        count++;
+                    }
+                }
+                
+            } catch (SQLException e) {
+                System.err.println("Error scanning expenses: " + e.getMessage());
+                return -1;
+            }
+        }
+        
+        return count;
+    }
+    
+    /**
+     * Helper method to run a query whose only parameter is the user ID.
+     * 
+     * @param sql The SQL text, with the user ID as its first parameter
+     * @param errorMessage The prefix for the error message if the query fails
+     * @return A list of the expenses returned by the query
+     */
+    private List<Expense> queryExpenses(String sql, String errorMessage) {
         List<Expense> expenses = new ArrayList<>();
         
-        try (Connection conn = DBConnection.getConnection();
-             PreparedStatement stmt = conn.prepareStatement(
-                 "SELECT * FROM expenses WHERE mode = ?")) {
-            
-            stmt.setString(1, String.valueOf(mode));
-            ResultSet rs = stmt.executeQuery();
-            
-            while (rs.next()) {
-                Expense expense = new Expense(
-                    rs.getInt("id"),
-                    rs.getString("title"),
-                    rs.getFloat("amount"),
-                    rs.getString("mode").charAt(0),
-                    rs.getBoolean("is_recurring"),
-                    rs.getInt("category_id")
-                );
-                expenses.add(expense);
+        synchronized (DBConnection.lock(userId)) {
+            try {
+                PreparedStatement stmt = DBConnection.prepareStatement(userId, sql);
+                
+                stmt.setInt(1, userId);
+                
+                try (ResultSet rs = stmt.executeQuery()) {
+                    while (rs.next()) {
+                        expenses.add(mapResultSetToExpense(rs));
+                    }
+                }
+                
+            } catch (SQLException e) {
+                System.err.println(errorMessage + e.getMessage());
             }
-            
-        } catch (SQLException e) {
-            System.err.println("Error getting expenses by payment mode: " + e.getMessage());
         }
         
         return expenses;
@@ -308,11 +582,15 @@ public class ExpenseDAO {
     private Expense mapResultSetToExpense(ResultSet rs) throws SQLException {
         Expense expense = new Expense();
         expense.setId(rs.getInt("id"));
-        expense.setTitle(rs.getString("title"));
-        expense.setAmount(rs.getFloat("amount"));
+        expense.setUserId(rs.getInt("user_id"));
+        expense.setTitle(StringPool.SHARED.intern(rs.getString("title")));
+        expense.setAmount(Money.fromBigDecimal(rs.getBigDecimal("amount")));
+        expense.setCurrency(StringPool.SHARED.intern(rs.getString("currency")));
         expense.setMode(rs.getString("mode").charAt(0));
         expense.setRecurring(rs.getBoolean("is_recurring"));
         expense.setCategoryId(rs.getInt("category_id"));
+        expense.setSpentAt(rs.getTimestamp("spent_at").getTime());
+        expense.setRecurrenceOf(rs.getInt("recurrence_of"));
         return expense;
     }
-} 
\ No newline at end of file
+}
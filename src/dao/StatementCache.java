@@ -0,0 +1,82 @@
+package dao;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Least-recently-used cache of prepared statements bound to a single connection.
+ * Statements handed out by the cache stay open and must not be closed by callers;
+ * they are closed when evicted or when the cache itself is closed.
+ * The cache is not thread-safe; it is only used under the lock of its
+ * connection's shard, see {@link DBConnection#lock(int)}.
+ */
+class StatementCache {
+    private final Connection connection;
+    private final Map<String, PreparedStatement> statements;
+    
+    /**
+     * Create a cache for the given connection.
+     * 
+     * @param connection The connection that owns the cached statements
+     * @param maxSize The maximum number of statements to keep open
+     */
+    StatementCache(Connection connection, int maxSize) {
+        this.connection = connection;
+        this.statements = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, PreparedStatement> eldest) {
+                if (size() > maxSize) {
+                    closeQuietly(eldest.getValue());
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+    
+    /**
+     * Get a cached statement for the SQL text, preparing it on first use.
+     * 
+     * @param sql The SQL text to prepare
+     * @param returnGeneratedKeys true if the statement must return generated keys
+     * @return An open prepared statement with its parameters cleared
+     * @throws SQLException if the statement cannot be prepared
+     */
+    PreparedStatement prepare(String sql, boolean returnGeneratedKeys) throws SQLException {
+        String key = returnGeneratedKeys ? "K:" + sql : "S:" + sql;
+        PreparedStatement stmt = statements.get(key);
+        
+        if (stmt == null || stmt.isClosed()) {
+            stmt = returnGeneratedKeys
+                ? connection.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)
+                : connection.prepareStatement(sql);
+            statements.put(key, stmt);
+        } else {
+            stmt.clearParameters();
+        }
+        
+        return stmt;
+    }
+    
+    /**
+     * Close every cached statement.
+     */
+    void close() {
+        for (PreparedStatement stmt : statements.values()) {
+            closeQuietly(stmt);
+        }
+        statements.clear();
+    }
+    
+    private static void closeQuietly(PreparedStatement stmt) {
+        try {
+            stmt.close();
+        } catch (SQLException e) {
+            System.err.println("Failed to close cached statement: " + e.getMessage());
+        }
+    }
+}
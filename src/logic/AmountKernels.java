@@ -0,0 +1,102 @@
+package logic;
+
+/**
+ * Primitive kernels behind the analytics aggregations of {@link ColumnarExpenseStore}.
+ * The default implementation uses the incubating Vector API when the optional
+ * backend in {@code logic.vector} is compiled and the JVM is started with
+ * {@code --add-modules jdk.incubator.vector}; otherwise it falls back to plain
+ * scalar loops. Set {@code -Dexpenseflow.analytics=scalar} to force the fallback.
+ * <p>
+ * Amounts are longs in minor units. Sums are exact and throw
+ * ArithmeticException if a partial sum overflows. Which partial sums a
+ * backend forms depends on how it splits the work: the scalar loop checks
+ * the running total, the vector backend each lane's total and then their
+ * sum. Integer addition is associative, so every backend returns the same
+ * results when no partial sum overflows; near the limits of a long, one
+ * backend may throw where another returns a total.
+ */
+public interface AmountKernels {
+    
+    // Fully qualified name of the optional Vector API backend
+    String VECTOR_BACKEND = "logic.vector.VectorAmountKernels";
+    
+    /**
+     * The best backend available in this JVM.
+     */
+    AmountKernels DEFAULT = load();
+    
+    /**
+     * Get a short name for the backend, for logs and benchmarks.
+     * 
+     * @return The backend name
+     */
+    String getName();
+    
+    /**
+     * Sum the first length amounts.
+     * 
+     * @param amounts The amounts
+     * @param length The number of amounts to sum
+     * @return The total
+     * @throws ArithmeticException if the total overflows
+     */
+    long sum(long[] amounts, int length);
+    
+    /**
+     * Find the smallest of the first length amounts.
+     * 
+     * @param amounts The amounts
+     * @param length The number of amounts to scan
+     * @return The smallest amount, or Long.MAX_VALUE if length is 0
+     */
+    long min(long[] amounts, int length);
+    
+    /**
+     * Find the largest of the first length amounts.
+     * 
+     * @param amounts The amounts
+     * @param length The number of amounts to scan
+     * @return The largest amount, or Long.MIN_VALUE if length is 0
+     */
+    long max(long[] amounts, int length);
+    
+    /**
+     * Count how many of the first length amounts are at least a threshold.
+     * 
+     * @param amounts The amounts
+     * @param length The number of amounts to scan
+     * @param threshold The smallest amount to count
+     * @return The number of matching amounts
+     */
+    int countAtLeast(long[] amounts, int length, long threshold);
+    
+    /**
+     * Add each of the first length amounts to the total selected by its code.
+     * The code of row i is {@code codes[i] & codeMask}; rows whose code is not
+     * a valid index into totals are skipped.
+     * 
+     * @param amounts The amounts
+     * @param codes The code of each row
+     * @param codeMask The bits of each code byte that hold the code
+     * @param length The number of rows to scan
+     * @param totals The totals to add to, indexed by code
+     * @throws ArithmeticException if a total overflows
+     */
+    void sumByCode(long[] amounts, byte[] codes, int codeMask, int length, long[] totals);
+    
+    /**
+     * Pick the Vector API backend if it can be loaded, otherwise the scalar one.
+     */
+    private static AmountKernels load() {
+        if ("scalar".equalsIgnoreCase(System.getProperty("expenseflow.analytics"))) {
+            return ScalarAmountKernels.INSTANCE;
+        }
+        try {
+            Class<?> backend = Class.forName(VECTOR_BACKEND);
+            return (AmountKernels) backend.getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException | LinkageError | UnsupportedOperationException e) {
+            // Backend not compiled, module not added or no suitable vector hardware
+            return ScalarAmountKernels.INSTANCE;
+        }
+    }
+}
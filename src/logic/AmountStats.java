@@ -0,0 +1,79 @@
+package logic;
+
+import model.Money;
+
+/**
+ * Summary statistics of a group of amounts: count, sum, minimum, maximum and average.
+ * All amounts are in minor units.
+ */
+public final class AmountStats {
+    
+    /** Statistics of no amounts. */
+    public static final AmountStats EMPTY = new AmountStats(0, 0, 0, 0);
+    
+    private final long count;
+    private final long sum;
+    private final long min;
+    private final long max;
+    
+    AmountStats(long count, long sum, long min, long max) {
+        this.count = count;
+        this.sum = sum;
+        this.min = min;
+        this.max = max;
+    }
+    
+    /**
+     * Get the number of amounts.
+     * 
+     * @return The count
+     */
+    public long getCount() {
+        return count;
+    }
+    
+    /**
+     * Get the total of the amounts.
+     * 
+     * @return The sum in minor units
+     */
+    public long getSum() {
+        return sum;
+    }
+    
+    /**
+     * Get the smallest amount.
+     * 
+     * @return The minimum in minor units, or 0 if there are no amounts
+     */
+    public long getMin() {
+        return min;
+    }
+    
+    /**
+     * Get the largest amount.
+     * 
+     * @return The maximum in minor units, or 0 if there are no amounts
+     */
+    public long getMax() {
+        return max;
+    }
+    
+    /**
+     * Get the average amount, rounded half up to a whole minor unit.
+     * 
+     * @return The average in minor units, or 0 if there are no amounts
+     */
+    public long getAverage() {
+        if (count == 0) {
+            return 0;
+        }
+        return Math.floorDiv(Math.addExact(sum, count / 2), count);
+    }
+    
+    @Override
+    public String toString() {
+        return "count=" + count + ", sum=" + Money.format(sum) + ", min=" + Money.format(min)
+                + ", max=" + Money.format(max) + ", avg=" + Money.format(getAverage());
+    }
+}
@@ -0,0 +1,145 @@
+package logic;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Keeps the k highest ranked of the items offered to it, in O(k) space.
+ * Items are ranked by a comparator, greatest first; items that compare equal
+ * are ranked by their position in the input, earliest first, so the result is
+ * the same as a stable sort followed by truncation.
+ * <p>
+ * The items are held in a binary min-heap whose root is the lowest ranked
+ * item kept, so each offer costs O(log k).
+ * 
+ * @param <E> The type of item ranked
+ */
+final class BoundedHeap<E> {
+    
+    private final Comparator<? super E> comparator;
+    private final int capacity;
+    private final Object[] items;
+    private final long[] positions;
+    private int size;
+    
+    /**
+     * Create an empty heap.
+     * 
+     * @param comparator The comparator that ranks the items, greatest first
+     * @param capacity The number of items to keep
+     */
+    BoundedHeap(Comparator<? super E> comparator, int capacity) {
+        this.comparator = comparator;
+        this.capacity = capacity;
+        this.items = new Object[capacity];
+        this.positions = new long[capacity];
+    }
+    
+    /**
+     * Offer an item, keeping it if it ranks among the k highest so far.
+     * 
+     * @param item The item
+     * @param position The position of the item in the input
+     */
+    void offer(E item, long position) {
+        if (size < capacity) {
+            items[size] = item;
+            positions[size] = position;
+            siftUp(size++);
+        } else if (capacity > 0 && ranksBelow(item(0), positions[0], item, position)) {
+            items[0] = item;
+            positions[0] = position;
+            siftDown(0);
+        }
+    }
+    
+    /**
+     * Offer every item kept by another heap.
+     * 
+     * @param other The heap to merge into this one
+     */
+    @SuppressWarnings("unchecked")
+    void merge(BoundedHeap<E> other) {
+        for (int i = 0; i < other.size; i++) {
+            offer((E) other.items[i], other.positions[i]);
+        }
+    }
+    
+    /**
+     * Get the items kept, highest ranked first. Empties the heap.
+     * 
+     * @return A new list of the items
+     */
+    List<E> drainSorted() {
+        Object[] sorted = new Object[size];
+        while (size > 0) {
+            sorted[size - 1] = items[0];
+            size--;
+            items[0] = items[size];
+            positions[0] = positions[size];
+            items[size] = null;
+            siftDown(0);
+        }
+        @SuppressWarnings("unchecked")
+        List<E> result = new ArrayList<>((List<E>) Arrays.asList(sorted));
+        return result;
+    }
+    
+    @SuppressWarnings("unchecked")
+    private E item(int slot) {
+        return (E) items[slot];
+    }
+    
+    /**
+     * Check whether item a ranks below item b.
+     */
+    private boolean ranksBelow(E a, long positionA, E b, long positionB) {
+        int order = comparator.compare(a, b);
+        return order < 0 || (order == 0 && positionA > positionB);
+    }
+    
+    private boolean ranksBelow(int slotA, int slotB) {
+        return ranksBelow(item(slotA), positions[slotA], item(slotB), positions[slotB]);
+    }
+    
+    private void siftUp(int slot) {
+        while (slot > 0) {
+            int parent = (slot - 1) >>> 1;
+            if (!ranksBelow(slot, parent)) {
+                break;
+            }
+            swap(slot, parent);
+            slot = parent;
+        }
+    }
+    
+    private void siftDown(int slot) {
+        while (true) {
+            int lowest = slot;
+            int left = 2 * slot + 1;
+            int right = left + 1;
+            if (left < size && ranksBelow(left, lowest)) {
+                lowest = left;
+            }
+            if (right < size && ranksBelow(right, lowest)) {
+                lowest = right;
+            }
+            if (lowest == slot) {
+                return;
+            }
+            swap(slot, lowest);
+            slot = lowest;
+        }
+    }
+    
+    private void swap(int a, int b) {
+        Object item = items[a];
+        items[a] = items[b];
+        items[b] = item;
+        long position = positions[a];
+        positions[a] = positions[b];
+        positions[b] = position;
+    }
+}
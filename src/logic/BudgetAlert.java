@@ -0,0 +1,88 @@
+package logic;
+
+import model.Category;
+import model.Money;
+
+/**
+ * Reports that a category's spending this month has crossed one of the
+ * budget thresholds, either rising to it or falling back below it.
+ */
+public class BudgetAlert {
+    
+    private final Category category;
+    private final int threshold;
+    private final boolean reached;
+    private final long spent;
+    private final long limit;
+    private final String currency;
+    
+    BudgetAlert(Category category, int threshold, boolean reached, long spent, long limit, String currency) {
+        this.category = category;
+        this.threshold = threshold;
+        this.reached = reached;
+        this.spent = spent;
+        this.limit = limit;
+        this.currency = currency;
+    }
+    
+    /**
+     * Get the category whose spending crossed the threshold.
+     * 
+     * @return The category
+     */
+    public Category getCategory() {
+        return category;
+    }
+    
+    /**
+     * Get the threshold that was crossed.
+     * 
+     * @return The threshold as a percentage of the monthly limit, such as 100
+     */
+    public int getThreshold() {
+        return threshold;
+    }
+    
+    /**
+     * Check whether spending rose to the threshold or fell back below it.
+     * 
+     * @return true if the threshold was reached, false if spending dropped below it
+     */
+    public boolean isReached() {
+        return reached;
+    }
+    
+    /**
+     * Get the category's spending this month after the change.
+     * 
+     * @return The amount spent in minor units of {@link #getCurrency()}
+     */
+    public long getSpent() {
+        return spent;
+    }
+    
+    /**
+     * Get the category's monthly limit, converted into the currency the
+     * spending is reported in.
+     * 
+     * @return The limit in minor units of {@link #getCurrency()}
+     */
+    public long getLimit() {
+        return limit;
+    }
+    
+    /**
+     * Get the currency of the spending and the limit.
+     * 
+     * @return The ISO 4217 code of the reporting currency
+     */
+    public String getCurrency() {
+        return currency;
+    }
+    
+    @Override
+    public String toString() {
+        return category.getName() + (reached ? " reached " : " dropped below ") + threshold
+                + "% of its monthly limit (" + Money.format(spent, currency) + " of " + Money.format(limit, currency) + ")";
+    }
+}
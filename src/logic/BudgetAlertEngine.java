@@ -0,0 +1,299 @@
+package logic;
+
+import model.Category;
+import model.Expense;
+import utils.IntLongMap;
+
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Tracks each category's spending in the current month against its monthly
+ * limit and raises an alert as soon as a change crosses 80%, 100% or 120% of
+ * the limit.
+ * <p>
+ * The engine listens to the expense and category managers, so every saved,
+ * updated or deleted expense adjusts one or two running totals and checks
+ * only the categories it touched. Reloads, which arrive as batches, rebuild
+ * the totals from the expense manager's time buckets without raising
+ * alerts. Nothing is queried from the database.
+ */
+public class BudgetAlertEngine {
+    
+    /** The alert thresholds, as percentages of the monthly limit. */
+    private static final int[] THRESHOLDS = {80, 100, 120};
+    
+    private final ExpenseManager expenseManager;
+    private final CategoryManager categoryManager;
+    private final ZoneId zone = ZoneId.systemDefault();
+    private final List<BudgetAlertListener> listeners = new CopyOnWriteArrayList<>();
+    
+    // Spending this month per category ID, and the number of thresholds each has reached
+    private final IntLongMap monthlySpent = new IntLongMap();
+    private final IntLongMap levels = new IntLongMap();
+    
+    // Set while a manager is in a batch of changes, such as a reload
+    private boolean expenseBatchOpen;
+    private boolean categoryBatchOpen;
+    
+    // The month being tracked, as epoch milliseconds [monthStart, monthEnd)
+    private YearMonth month;
+    private long monthStart;
+    private long monthEnd;
+    
+    /**
+     * Create an engine and start tracking the managers' changes.
+     * 
+     * @param expenseManager The expenses to track
+     * @param categoryManager The categories whose limits apply
+     */
+    public BudgetAlertEngine(ExpenseManager expenseManager, CategoryManager categoryManager) {
+        this.expenseManager = expenseManager;
+        this.categoryManager = categoryManager;
+        rebuild();
+        expenseManager.addChangeListener(this::expensesChanged);
+        categoryManager.addChangeListener(this::categoriesChanged);
+    }
+    
+    /**
+     * Register a listener for threshold crossings.
+     * 
+     * @param listener The listener to add
+     */
+    public void addAlertListener(BudgetAlertListener listener) {
+        listeners.add(listener);
+    }
+    
+    /**
+     * Unregister a listener.
+     * 
+     * @param listener The listener to remove
+     */
+    public void removeAlertListener(BudgetAlertListener listener) {
+        listeners.remove(listener);
+    }
+    
+    /**
+     * Get the amount spent in a category this month.
+     * 
+     * @param categoryId The ID of the category
+     * @return The amount in minor units
+     */
+    public synchronized long getMonthlySpent(int categoryId) {
+        checkMonth();
+        return monthlySpent.get(categoryId, 0);
+    }
+    
+    /**
+     * Get the highest threshold a category's spending has reached this month.
+     * 
+     * @param categoryId The ID of the category
+     * @return The threshold percentage, or 0 if none has been reached
+     */
+    public synchronized int getReachedThreshold(int categoryId) {
+        checkMonth();
+        int level = (int) levels.get(categoryId, 0);
+        return (level == 0) ? 0 : THRESHOLDS[level - 1];
+    }
+    
+    /**
+     * Count the categories whose spending this month has reached a threshold.
+     * 
+     * @param threshold The threshold percentage, such as 100
+     * @return The number of categories at or above it
+     */
+    public synchronized int countAtThreshold(int threshold) {
+        checkMonth();
+        int count = 0;
+        for (int i = 0; i < levels.size(); i++) {
+            int level = (int) levels.valueAt(i);
+            if (level > 0 && THRESHOLDS[level - 1] >= threshold) {
+                count++;
+            }
+        }
+        return count;
+    }
+    
+    private void expensesChanged(DataChangeEvent<Expense> event) {
+        List<BudgetAlert> alerts = new ArrayList<>();
+        synchronized (this) {
+            if (event.getType() == DataChangeEvent.Type.BATCH_BEGIN) {
+                expenseBatchOpen = true;
+                return;
+            }
+            if (event.getType() == DataChangeEvent.Type.BATCH_END) {
+                expenseBatchOpen = false;
+                rebuild();
+                return;
+            }
+            if (expenseBatchOpen || checkMonth()) {
+                return;
+            }
+            switch (event.getType()) {
+                case ADDED:
+                    apply(event.getItem(), 1);
+                    updateLevel(event.getItem().getCategoryId(), alerts);
+                    break;
+                case UPDATED:
+                    // Apply both versions before checking, so a change that nets out raises nothing
+                    apply(event.getPrevious(), -1);
+                    apply(event.getItem(), 1);
+                    updateLevel(event.getPrevious().getCategoryId(), alerts);
+                    if (event.getItem().getCategoryId() != event.getPrevious().getCategoryId()) {
+                        updateLevel(event.getItem().getCategoryId(), alerts);
+                    }
+                    break;
+                case REMOVED:
+                    apply(event.getItem(), -1);
+                    updateLevel(event.getItem().getCategoryId(), alerts);
+                    break;
+                case CLEARED:
+                    monthlySpent.clear();
+                    levels.clear();
+                    break;
+                default:
+                    break;
+            }
+        }
+        fireAlerts(alerts);
+    }
+    
+    private void categoriesChanged(DataChangeEvent<Category> event) {
+        List<BudgetAlert> alerts = new ArrayList<>();
+        synchronized (this) {
+            if (event.getType() == DataChangeEvent.Type.BATCH_BEGIN) {
+                categoryBatchOpen = true;
+                return;
+            }
+            if (event.getType() == DataChangeEvent.Type.BATCH_END) {
+                categoryBatchOpen = false;
+                rebuildLevels();
+                return;
+            }
+            if (categoryBatchOpen || checkMonth()) {
+                return;
+            }
+            switch (event.getType()) {
+                case ADDED:
+                case UPDATED:
+                    updateLevel(event.getItem().getId(), alerts);
+                    break;
+                case REMOVED:
+                    levels.put(event.getItem().getId(), 0);
+                    break;
+                case CLEARED:
+                    rebuildLevels();
+                    break;
+                default:
+                    break;
+            }
+        }
+        fireAlerts(alerts);
+    }
+    
+    /**
+     * Add an expense to this month's spending, or take it out of it.
+     * Expenses from other months are ignored. Amounts are converted into the
+     * reporting currency, as limits are when they are checked; expenses in
+     * a currency without a rate are ignored, as they are by the time buckets.
+     */
+    private void apply(Expense expense, int sign) {
+        if (expense.getSpentAt() >= monthStart && expense.getSpentAt() < monthEnd && expenseManager.canReport(expense)) {
+            monthlySpent.add(expense.getCategoryId(), Math.multiplyExact(sign, expenseManager.toReportingAmount(expense)));
+        }
+    }
+    
+    /**
+     * Recompute a category's level and record an alert for each threshold crossed.
+     */
+    private void updateLevel(int categoryId, List<BudgetAlert> alerts) {
+        Category category = categoryManager.getById(categoryId);
+        long spent = monthlySpent.get(categoryId, 0);
+        int oldLevel = (int) levels.get(categoryId, 0);
+        int newLevel = levelOf(category, spent);
+        if (newLevel == oldLevel) {
+            return;
+        }
+        levels.put(categoryId, newLevel);
+        long limit = expenseManager.toReportingLimit(category);
+        String currency = expenseManager.getReportingCurrency();
+        for (int level = oldLevel; level < newLevel; level++) {
+            alerts.add(new BudgetAlert(category, THRESHOLDS[level], true, spent, limit, currency));
+        }
+        for (int level = oldLevel; level > newLevel; level--) {
+            alerts.add(new BudgetAlert(category, THRESHOLDS[level - 1], false, spent, limit, currency));
+        }
+    }
+    
+    /**
+     * Count the thresholds that an amount in the reporting currency reaches
+     * in a category, with the limit converted into the same currency.
+     */
+    private int levelOf(Category category, long spent) {
+        long limit = (category != null) ? expenseManager.toReportingLimit(category) : 0;
+        if (limit <= 0) {
+            return 0;
+        }
+        int level = 0;
+        while (level < THRESHOLDS.length && Math.multiplyExact(spent, 100) >= Math.multiplyExact(limit, THRESHOLDS[level])) {
+            level++;
+        }
+        return level;
+    }
+    
+    /**
+     * Move to the current month if it has changed, starting its totals from
+     * the expense manager's time buckets.
+     * 
+     * @return true if the totals were rebuilt
+     */
+    private boolean checkMonth() {
+        if (YearMonth.now(zone).equals(month)) {
+            return false;
+        }
+        rebuild();
+        return true;
+    }
+    
+    /**
+     * Reload this month's spending from the expense manager's time buckets
+     * and reset every category's level without raising alerts.
+     */
+    private synchronized void rebuild() {
+        month = YearMonth.now(zone);
+        LocalDate first = month.atDay(1);
+        monthStart = first.atStartOfDay(zone).toInstant().toEpochMilli();
+        monthEnd = first.plusMonths(1).atStartOfDay(zone).toInstant().toEpochMilli();
+        
+        monthlySpent.clear();
+        IntLongMap totals = expenseManager.getTotalsByCategoryBetween(first, month.atEndOfMonth());
+        for (int i = 0; i < totals.size(); i++) {
+            monthlySpent.put(totals.keyAt(i), totals.valueAt(i));
+        }
+        rebuildLevels();
+    }
+    
+    private void rebuildLevels() {
+        levels.clear();
+        for (int i = 0; i < monthlySpent.size(); i++) {
+            int categoryId = monthlySpent.keyAt(i);
+            levels.put(categoryId, levelOf(categoryManager.getById(categoryId), monthlySpent.valueAt(i)));
+        }
+    }
+    
+    private void fireAlerts(List<BudgetAlert> alerts) {
+        for (BudgetAlert alert : alerts) {
+            for (BudgetAlertListener listener : listeners) {
+                try {
+                    listener.budgetAlert(alert);
+                } catch (RuntimeException e) {
+                    System.err.println("Error in budget alert listener: " + e.getMessage());
+                }
+            }
+        }
+    }
+}
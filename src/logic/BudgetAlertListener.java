@@ -0,0 +1,17 @@
+package logic;
+
+/**
+ * Receives budget threshold crossings from a BudgetAlertEngine.
+ * 
+ * @see BudgetAlertEngine#addAlertListener(BudgetAlertListener)
+ */
+@FunctionalInterface
+public interface BudgetAlertListener {
+    
+    /**
+     * Called on the thread that made the change, once per threshold crossed.
+     * 
+     * @param alert The crossing
+     */
+    void budgetAlert(BudgetAlert alert);
+}
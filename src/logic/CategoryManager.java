@@ -1,6 +1,7 @@
 package logic;
 
 import dao.CategoryDAO;
+import dao.DBConnection;
 import model.Category;
 
 import java.util.Comparator;
@@ -12,14 +13,60 @@ import java.util.List;
  */
 public class CategoryManager extends DataManager<Category> {
     
+    // Shared comparator instances, so sorted views can be reused (see getSortedView)
+    private static final Comparator<Category> ID_ORDER = Comparator.comparingInt(Category::getId);
+    private static final Comparator<Category> NAME_ORDER = Comparator.comparing(Category::getName);
+    private static final Comparator<Category> MONTHLY_LIMIT_ASCENDING = Comparator.comparingLong(Category::getMonthlyLimit);
+    private static final Comparator<Category> MONTHLY_LIMIT_DESCENDING = MONTHLY_LIMIT_ASCENDING.reversed();
+    private static final Comparator<Category> ACTIVE_FIRST = Comparator.comparing(Category::isActive).reversed();
+    private static final Comparator<Category> INACTIVE_FIRST = Comparator.comparing(Category::isActive);
+    private static final Comparator<Category> PRIORITY_ORDER = (c1, c2) -> {
+        // Custom priority ordering: H > M > L
+        char p1 = c1.getPriority();
+        char p2 = c2.getPriority();
+        
+        // Convert to numerical values for comparison
+        int v1 = (p1 == 'H') ? 3 : (p1 == 'M') ? 2 : 1;
+        int v2 = (p2 == 'H') ? 3 : (p2 == 'M') ? 2 : 1;
+        
+        return Integer.compare(v2, v1); // Reverse to get H first
+    };
+    
     private final CategoryDAO categoryDAO;
     
+    // Secondary indexes over the loaded categories
+    private final SecondaryIndex<Character, Category> priorityIndex;
+    private final SecondaryIndex<Boolean, Category> activeIndex;
+    
     /**
-     * Constructor that initializes the CategoryManager.
+     * Constructor that initializes the CategoryManager for the default user.
      */
     public CategoryManager() {
-        super();
-        this.categoryDAO = new CategoryDAO();
+        this(DBConnection.DEFAULT_USER_ID);
+    }
+    
+    /**
+     * Constructor that initializes the CategoryManager for a specific user.
+     * 
+     * @param userId The ID of the user whose data is managed
+     */
+    public CategoryManager(int userId) {
+        this(userId, false);
+    }
+    
+    /**
+     * Constructor that initializes the CategoryManager for a specific user,
+     * optionally for use from several threads.
+     * 
+     * @param userId The ID of the user whose data is managed
+     * @param concurrent true to make the manager safe to share between threads
+     * @see DataManager#isConcurrent()
+     */
+    public CategoryManager(int userId, boolean concurrent) {
+        super(concurrent);
+        this.categoryDAO = new CategoryDAO(userId);
+        this.priorityIndex = createIndex(Category::getPriority);
+        this.activeIndex = createIndex(Category::isActive);
     }
     
     /**
@@ -27,22 +74,14 @@ public class CategoryManager extends DataManager<Category> {
      */
     @Override
     public void loadData() {
-        clear();
-        List<Category> categories = categoryDAO.getAllCategories();
-        for (Category category : categories) {
-            add(category);
-        }
+        replaceAll(categoryDAO.getAllCategories());
     }
     
     /**
      * Load only active categories from the database into the collection.
      */
     public void loadActiveCategories() {
-        clear();
-        List<Category> categories = categoryDAO.getActiveCategories();
-        for (Category category : categories) {
-            add(category);
-        }
+        replaceAll(categoryDAO.getActiveCategories());
     }
     
     /**
@@ -51,22 +90,54 @@ public class CategoryManager extends DataManager<Category> {
      * @param priority The priority level ('H', 'M', or 'L')
      */
     public void loadCategoriesByPriority(char priority) {
-        clear();
-        List<Category> categories = categoryDAO.getCategoriesByPriority(priority);
-        for (Category category : categories) {
-            add(category);
-        }
+        replaceAll(categoryDAO.getCategoriesByPriority(priority));
     }
     
     /**
      * Load over budget categories from the database into the collection.
      */
     public void loadOverBudgetCategories() {
-        clear();
-        List<Category> categories = categoryDAO.getOverBudgetCategories();
-        for (Category category : categories) {
-            add(category);
-        }
+        replaceAll(categoryDAO.getOverBudgetCategories());
+    }
+    
+    /**
+     * Get the loaded categories with a priority, without querying the database.
+     * 
+     * @param priority The priority level ('H', 'M', or 'L')
+     * @return A new list of the matching categories
+     */
+    public List<Category> getCategoriesByPriority(char priority) {
+        return read(() -> priorityIndex.get(priority));
+    }
+    
+    /**
+     * Get the loaded active or inactive categories, without querying the database.
+     * 
+     * @param active true for active categories, false for inactive ones
+     * @return A new list of the matching categories
+     */
+    public List<Category> getCategoriesByActiveStatus(boolean active) {
+        return read(() -> activeIndex.get(active));
+    }
+    
+    /**
+     * Count the loaded categories with a priority.
+     * 
+     * @param priority The priority level ('H', 'M', or 'L')
+     * @return The number of matching categories
+     */
+    public int countByPriority(char priority) {
+        return read(() -> priorityIndex.count(priority));
+    }
+    
+    /**
+     * Count the loaded active or inactive categories.
+     * 
+     * @param active true to count active categories, false for inactive ones
+     * @return The number of matching categories
+     */
+    public int countByActiveStatus(boolean active) {
+        return read(() -> activeIndex.count(active));
     }
     
     /**
@@ -92,14 +163,7 @@ public class CategoryManager extends DataManager<Category> {
      */
     public boolean updateCategory(Category category) {
         boolean success = categoryDAO.updateCategory(category);
-        if (success) {
-            // Remove and re-add to update the collection
-            for (Category c : dataCollection) {
-                if (c.getId() == category.getId()) {
-                    remove(c);
-                    break;
-                }
-            }
+        if (success && !update(category)) {
             add(category);
         }
         return success;
@@ -119,25 +183,77 @@ public class CategoryManager extends DataManager<Category> {
         return success;
     }
     
+    /**
+     * Get the categories with the highest monthly limits, highest first.
+     * Limits are compared in minor units of their own currencies, so the
+     * ranking is only meaningful among categories that share a currency;
+     * see ExpenseManager#toReportingLimit for comparing across currencies.
+     * 
+     * @param count The maximum number of categories to return
+     * @return A list of at most count categories
+     */
+    public List<Category> getHighestLimitCategories(int count) {
+        return topK(MONTHLY_LIMIT_ASCENDING, count);
+    }
+    
+    /**
+     * Get a filter that accepts categories with the given priority.
+     * 
+     * @param priority The priority level ('H', 'M', or 'L')
+     * @return A filter for use with {@link #select(Filter)}
+     */
+    public static Filter<Category> priorityIs(char priority) {
+        return Filter.where("priority=" + priority, category -> category.getPriority() == priority);
+    }
+    
+    /**
+     * Get a filter that accepts active or inactive categories.
+     * 
+     * @param active true for active categories, false for inactive ones
+     * @return A filter for use with {@link #select(Filter)}
+     */
+    public static Filter<Category> activeIs(boolean active) {
+        return Filter.where("active=" + active, category -> category.isActive() == active);
+    }
+    
+    /**
+     * Get a filter that accepts categories with at least the given monthly
+     * limit, compared in minor units of each category's own currency.
+     * 
+     * @param minimum The smallest monthly limit accepted, in minor units
+     * @return A filter for use with {@link #select(Filter)}
+     */
+    public static Filter<Category> monthlyLimitAtLeast(long minimum) {
+        return Filter.where("limit>=" + minimum, category -> category.getMonthlyLimit() >= minimum);
+    }
+    
+    /**
+     * Get a comparator for sorting categories by ID.
+     * 
+     * @return A comparator for sorting by ID
+     */
+    public static Comparator<Category> getIdComparator() {
+        return ID_ORDER;
+    }
+    
     /**
      * Get a comparator for sorting categories by name.
      * 
      * @return A comparator for sorting by name
      */
     public static Comparator<Category> getNameComparator() {
-        return Comparator.comparing(Category::getName);
+        return NAME_ORDER;
     }
     
     /**
-     * Get a comparator for sorting categories by monthly limit.
+     * Get a comparator for sorting categories by monthly limit, compared in
+     * minor units of each category's own currency.
      * 
      * @param ascending true for ascending order, false for descending
      * @return A comparator for sorting by monthly limit
      */
     public static Comparator<Category> getMonthlyLimitComparator(boolean ascending) {
-        return ascending
-            ? Comparator.comparing(Category::getMonthlyLimit)
-            : Comparator.comparing(Category::getMonthlyLimit).reversed();
+        return ascending ? MONTHLY_LIMIT_ASCENDING : MONTHLY_LIMIT_DESCENDING;
     }
     
     /**
@@ -147,17 +263,7 @@ public class CategoryManager extends DataManager<Category> {
      * @return A comparator for sorting by priority
      */
     public static Comparator<Category> getPriorityComparator() {
-        return (c1, c2) -> {
-            // Custom priority ordering: H > M > L
-            char p1 = c1.getPriority();
-            char p2 = c2.getPriority();
-            
-            // Convert to numerical values for comparison
-            int v1 = (p1 == 'H') ? 3 : (p1 == 'M') ? 2 : 1;
-            int v2 = (p2 == 'H') ? 3 : (p2 == 'M') ? 2 : 1;
-            
-            return Integer.compare(v2, v1); // Reverse to get H first
-        };
+        return PRIORITY_ORDER;
     }
     
     /**
@@ -167,8 +273,6 @@ public class CategoryManager extends DataManager<Category> {
      * @return A comparator for sorting by active status
      */
     public static Comparator<Category> getActiveStatusComparator(boolean activeFirst) {
-        return activeFirst
-            ? Comparator.comparing(Category::isActive).reversed()
-            : Comparator.comparing(Category::isActive);
+        return activeFirst ? ACTIVE_FIRST : INACTIVE_FIRST;
     }
 } 
\ No newline at end of file
@@ -0,0 +1,601 @@
+package logic;
+
+import dao.ExpenseDAO;
+import model.Expense;
+import model.Money;
+import utils.IntLongMap;
+
+import java.util.*;
+
+/**
+ * Read-optimized, column-oriented copy of a set of expenses for analytics.
+ * Each field is stored in its own primitive array, so scans and aggregates run
+ * over contiguous memory instead of following references to Expense objects.
+ * Payment mode and recurring flag are packed into one byte per row, and titles
+ * and currencies are dictionary-encoded so repeated values are stored once.
+ * <p>
+ * Filter operators return selection vectors: sorted arrays of row positions
+ * that can be combined with {@link #intersect(int[], int[])} and passed to the
+ * aggregate operators.
+ * <p>
+ * The amount operators compare and add raw minor units, which is only
+ * meaningful within one currency, so they refuse a store that holds several;
+ * such a store is first copied into one currency with
+ * {@link #convertTo(CurrencyRates.Converter)}.
+ */
+public class ColumnarExpenseStore {
+    
+    // Layout of the packed flags byte: bits 0-1 hold the mode index, bit 2 the recurring flag
+    private static final int MODE_MASK = 0x03;
+    private static final int UNKNOWN_MODE = 0x03;
+    private static final int RECURRING_BIT = 0x04;
+    
+    // Currency codes use the low seven bits, as the kernels read code bytes as signed
+    private static final int CURRENCY_MASK = 0x7F;
+    
+    private int size;
+    private int[] ids;
+    private long[] amounts;
+    private byte[] flags;
+    private int[] categoryIds;
+    private int[] titleCodes;
+    private byte[] currencyCodes;
+    
+    // Title dictionary: code -> title and title -> code
+    private final List<String> titles;
+    private final Map<String, Integer> titleDictionary;
+    
+    // Currency dictionary, with at most 128 entries so a code is a non-negative byte
+    private final List<String> currencies;
+    
+    // Kernels used by the aggregate operators
+    private AmountKernels kernels = AmountKernels.DEFAULT;
+    
+    /**
+     * Create an empty store.
+     */
+    public ColumnarExpenseStore() {
+        this(1024);
+    }
+    
+    /**
+     * Create an empty store sized for the expected number of rows.
+     * 
+     * @param expectedRows The number of rows expected
+     */
+    public ColumnarExpenseStore(int expectedRows) {
+        int capacity = Math.max(16, expectedRows);
+        this.ids = new int[capacity];
+        this.amounts = new long[capacity];
+        this.flags = new byte[capacity];
+        this.categoryIds = new int[capacity];
+        this.titleCodes = new int[capacity];
+        this.currencyCodes = new byte[capacity];
+        this.titles = new ArrayList<>();
+        this.titleDictionary = new HashMap<>();
+        this.currencies = new ArrayList<>();
+    }
+    
+    /**
+     * Build a store by streaming every expense of the DAO's user from the database.
+     * 
+     * @param expenseDAO The DAO to read from
+     * @return A new store holding the user's expenses
+     */
+    public static ColumnarExpenseStore load(ExpenseDAO expenseDAO) {
+        ColumnarExpenseStore store = new ColumnarExpenseStore();
+        expenseDAO.scanExpenses(store::append);
+        return store;
+    }
+    
+    /**
+     * Build a store from expenses that are already in memory.
+     * 
+     * @param expenses The expenses to copy
+     * @return A new store holding the expenses
+     */
+    public static ColumnarExpenseStore fromExpenses(Collection<Expense> expenses) {
+        ColumnarExpenseStore store = new ColumnarExpenseStore(expenses.size());
+        for (Expense expense : expenses) {
+            store.append(expense.getId(), expense.getTitle(), expense.getAmount(), expense.getCurrency(),
+                    expense.getMode(), expense.isRecurring(), expense.getCategoryId());
+        }
+        return store;
+    }
+    
+    /**
+     * Append a row in the default currency to the store.
+     * 
+     * @param id The expense ID
+     * @param title The expense title
+     * @param amount The expense amount in minor units
+     * @param mode The payment mode ('C'=Cash, 'D'=Digital, 'B'=Bank Transfer)
+     * @param isRecurring Whether the expense recurs
+     * @param categoryId The ID of the expense's category
+     */
+    public void append(int id, String title, long amount, char mode, boolean isRecurring, int categoryId) {
+        append(id, title, amount, Money.DEFAULT_CURRENCY, mode, isRecurring, categoryId);
+    }
+    
+    /**
+     * Append a row to the store.
+     * 
+     * @param id The expense ID
+     * @param title The expense title
+     * @param amount The expense amount in minor units
+     * @param currency The ISO 4217 code of the amount's currency
+     * @param mode The payment mode ('C'=Cash, 'D'=Digital, 'B'=Bank Transfer)
+     * @param isRecurring Whether the expense recurs
+     * @param categoryId The ID of the expense's category
+     */
+    public void append(int id, String title, long amount, String currency, char mode, boolean isRecurring, int categoryId) {
+        if (size == ids.length) {
+            grow();
+        }
+        
+        int modeIndex = Expense.modeIndex(mode);
+        int packed = (modeIndex < 0 ? UNKNOWN_MODE : modeIndex) | (isRecurring ? RECURRING_BIT : 0);
+        
+        ids[size] = id;
+        amounts[size] = amount;
+        flags[size] = (byte) packed;
+        categoryIds[size] = categoryId;
+        titleCodes[size] = encodeTitle(title);
+        currencyCodes[size] = encodeCurrency(currency);
+        size++;
+    }
+    
+    /**
+     * Choose the kernels used by the aggregate operators.
+     * The default is {@link AmountKernels#DEFAULT}.
+     * 
+     * @param kernels The kernels to use
+     */
+    public void setKernels(AmountKernels kernels) {
+        this.kernels = Objects.requireNonNull(kernels);
+    }
+    
+    /**
+     * Get the kernels used by the aggregate operators.
+     * 
+     * @return The kernels in use
+     */
+    public AmountKernels getKernels() {
+        return kernels;
+    }
+    
+    /**
+     * Get the number of rows.
+     * 
+     * @return The number of rows
+     */
+    public int size() {
+        return size;
+    }
+    
+    /**
+     * Get the number of distinct titles in the dictionary.
+     * 
+     * @return The number of distinct titles
+     */
+    public int distinctTitleCount() {
+        return titles.size();
+    }
+    
+    /**
+     * Get the distinct currencies of the rows, in order of first appearance.
+     * 
+     * @return An unmodifiable list of ISO 4217 codes
+     */
+    public List<String> getCurrencies() {
+        return Collections.unmodifiableList(currencies);
+    }
+    
+    public int getId(int row) {
+        checkRow(row);
+        return ids[row];
+    }
+    
+    public long getAmount(int row) {
+        checkRow(row);
+        return amounts[row];
+    }
+    
+    public String getCurrency(int row) {
+        checkRow(row);
+        return currencies.get(currencyCodes[row]);
+    }
+    
+    public char getMode(int row) {
+        checkRow(row);
+        int modeIndex = flags[row] & MODE_MASK;
+        return modeIndex == UNKNOWN_MODE ? '?' : Expense.MODE_CODES.charAt(modeIndex);
+    }
+    
+    public boolean isRecurring(int row) {
+        checkRow(row);
+        return (flags[row] & RECURRING_BIT) != 0;
+    }
+    
+    public int getCategoryId(int row) {
+        checkRow(row);
+        return categoryIds[row];
+    }
+    
+    public String getTitle(int row) {
+        checkRow(row);
+        return titles.get(titleCodes[row]);
+    }
+    
+    /**
+     * Materialize a row as an Expense object.
+     * 
+     * @param row The row position
+     * @return A new Expense holding the row's values
+     */
+    public Expense toExpense(int row) {
+        Expense expense = new Expense(getId(row), getTitle(row), getAmount(row), getMode(row), isRecurring(row), getCategoryId(row));
+        expense.setCurrency(getCurrency(row));
+        return expense;
+    }
+    
+    /**
+     * Row visitor used by {@link #scan(RowVisitor)}.
+     */
+    @FunctionalInterface
+    public interface RowVisitor {
+        void visit(int id, long amount, char mode, boolean isRecurring, int categoryId, String title);
+    }
+    
+    /**
+     * Visit every row in order.
+     * 
+     * @param visitor The visitor that receives each row
+     */
+    public void scan(RowVisitor visitor) {
+        for (int row = 0; row < size; row++) {
+            int modeIndex = flags[row] & MODE_MASK;
+            visitor.visit(ids[row], amounts[row],
+                    modeIndex == UNKNOWN_MODE ? '?' : Expense.MODE_CODES.charAt(modeIndex),
+                    (flags[row] & RECURRING_BIT) != 0, categoryIds[row], titles.get(titleCodes[row]));
+        }
+    }
+    
+    // ---- Filter operators ----
+    
+    /**
+     * Select the rows with a payment mode.
+     * 
+     * @param mode The payment mode to match
+     * @return A selection vector of matching rows
+     */
+    public int[] selectByMode(char mode) {
+        int modeIndex = Expense.modeIndex(mode);
+        int code = modeIndex < 0 ? UNKNOWN_MODE : modeIndex;
+        int[] selection = new int[size];
+        int count = 0;
+        for (int row = 0; row < size; row++) {
+            selection[count] = row;
+            count += ((flags[row] & MODE_MASK) == code) ? 1 : 0;
+        }
+        return Arrays.copyOf(selection, count);
+    }
+    
+    /**
+     * Select the recurring or one-time rows.
+     * 
+     * @param recurring true to select recurring rows, false for one-time rows
+     * @return A selection vector of matching rows
+     */
+    public int[] selectByRecurring(boolean recurring) {
+        int expected = recurring ? RECURRING_BIT : 0;
+        int[] selection = new int[size];
+        int count = 0;
+        for (int row = 0; row < size; row++) {
+            selection[count] = row;
+            count += ((flags[row] & RECURRING_BIT) == expected) ? 1 : 0;
+        }
+        return Arrays.copyOf(selection, count);
+    }
+    
+    /**
+     * Select the rows in a category.
+     * 
+     * @param categoryId The category ID to match
+     * @return A selection vector of matching rows
+     */
+    public int[] selectByCategory(int categoryId) {
+        int[] selection = new int[size];
+        int count = 0;
+        for (int row = 0; row < size; row++) {
+            selection[count] = row;
+            count += (categoryIds[row] == categoryId) ? 1 : 0;
+        }
+        return Arrays.copyOf(selection, count);
+    }
+    
+    /**
+     * Select the rows whose amount lies in a range.
+     * 
+     * @param min The smallest amount to include, in minor units
+     * @param max The largest amount to include, in minor units
+     * @return A selection vector of matching rows
+     * @throws IllegalStateException if the store holds more than one currency
+     */
+    public int[] selectByAmountRange(long min, long max) {
+        checkSingleCurrency();
+        int[] selection = new int[size];
+        int count = 0;
+        for (int row = 0; row < size; row++) {
+            long amount = amounts[row];
+            selection[count] = row;
+            count += (amount >= min && amount <= max) ? 1 : 0;
+        }
+        return Arrays.copyOf(selection, count);
+    }
+    
+    /**
+     * Select the rows with a title.
+     * 
+     * @param title The title to match exactly
+     * @return A selection vector of matching rows
+     */
+    public int[] selectByTitle(String title) {
+        Integer code = titleDictionary.get(title);
+        if (code == null) {
+            return new int[0];
+        }
+        int titleCode = code;
+        int[] selection = new int[size];
+        int count = 0;
+        for (int row = 0; row < size; row++) {
+            selection[count] = row;
+            count += (titleCodes[row] == titleCode) ? 1 : 0;
+        }
+        return Arrays.copyOf(selection, count);
+    }
+    
+    /**
+     * Intersect two selection vectors.
+     * 
+     * @param a A selection vector
+     * @param b Another selection vector
+     * @return A selection vector of the rows in both
+     */
+    public static int[] intersect(int[] a, int[] b) {
+        int[] result = new int[Math.min(a.length, b.length)];
+        int i = 0;
+        int j = 0;
+        int count = 0;
+        while (i < a.length && j < b.length) {
+            if (a[i] < b[j]) {
+                i++;
+            } else if (a[i] > b[j]) {
+                j++;
+            } else {
+                result[count++] = a[i];
+                i++;
+                j++;
+            }
+        }
+        return Arrays.copyOf(result, count);
+    }
+    
+    // ---- Aggregate operators ----
+    
+    /**
+     * Sum the amounts of all rows.
+     * 
+     * @return The total amount in minor units
+     * @throws IllegalStateException if the store holds more than one currency
+     * @throws ArithmeticException if the total overflows
+     */
+    public long sumAmount() {
+        checkSingleCurrency();
+        return kernels.sum(amounts, size);
+    }
+    
+    /**
+     * Sum the amounts of the selected rows.
+     * 
+     * @param selection A selection vector
+     * @return The total amount of the selected rows in minor units
+     * @throws IllegalStateException if the store holds more than one currency
+     * @throws ArithmeticException if the total overflows
+     */
+    public long sumAmount(int[] selection) {
+        checkSingleCurrency();
+        long total = 0;
+        for (int row : selection) {
+            total = Money.add(total, amounts[row]);
+        }
+        return total;
+    }
+    
+    /**
+     * Sum the amounts of all rows per currency.
+     * 
+     * @return Totals indexed like {@link #getCurrencies()}
+     * @throws ArithmeticException if a total overflows
+     */
+    public long[] sumByCurrency() {
+        long[] totals = new long[currencies.size()];
+        kernels.sumByCode(amounts, currencyCodes, CURRENCY_MASK, size, totals);
+        return totals;
+    }
+    
+    /**
+     * Sum the amounts of all rows converted into one currency. Every row is
+     * converted before it is added, as ExpenseManager's running totals are,
+     * so the two agree exactly.
+     * 
+     * @param converter Converts into the currency of the result
+     * @return The total amount in minor units of the converter's currency
+     * @throws IllegalArgumentException if a currency has no rate
+     * @throws ArithmeticException if the total overflows
+     */
+    public long sumAmount(CurrencyRates.Converter converter) {
+        return kernels.sum(convertAmounts(converter), size);
+    }
+    
+    /**
+     * Convert the amount of every row into one currency.
+     * 
+     * @param converter Converts into the wanted currency
+     * @return The converted amounts in minor units, indexed by row
+     * @throws IllegalArgumentException if a currency has no rate
+     */
+    public long[] convertAmounts(CurrencyRates.Converter converter) {
+        long[] converted = new long[size];
+        converter.convert(amounts, currencyCodes, currencies, size, converted);
+        return converted;
+    }
+    
+    /**
+     * Copy the store with every amount converted into one currency, so the
+     * amount operators can be used on it.
+     * 
+     * @param converter Converts into the wanted currency
+     * @return A new store with the same rows, all in the converter's currency
+     * @throws IllegalArgumentException if a currency has no rate
+     */
+    public ColumnarExpenseStore convertTo(CurrencyRates.Converter converter) {
+        ColumnarExpenseStore copy = new ColumnarExpenseStore(size);
+        int capacity = copy.ids.length;
+        copy.size = size;
+        copy.ids = Arrays.copyOf(ids, capacity);
+        copy.amounts = Arrays.copyOf(convertAmounts(converter), capacity);
+        copy.flags = Arrays.copyOf(flags, capacity);
+        copy.categoryIds = Arrays.copyOf(categoryIds, capacity);
+        copy.titleCodes = Arrays.copyOf(titleCodes, capacity);
+        copy.titles.addAll(titles);
+        copy.titleDictionary.putAll(titleDictionary);
+        copy.currencies.add(converter.getTarget());
+        copy.kernels = kernels;
+        return copy;
+    }
+    
+    /**
+     * Sum the amounts of all rows per payment mode.
+     * 
+     * @return Totals indexed like {@link Expense#MODE_CODES}
+     * @throws IllegalStateException if the store holds more than one currency
+     */
+    public long[] sumByMode() {
+        checkSingleCurrency();
+        // Rows with an unknown mode have a code past the end of the array and are skipped
+        long[] totals = new long[Expense.MODE_CODES.length()];
+        kernels.sumByCode(amounts, flags, MODE_MASK, size, totals);
+        return totals;
+    }
+    
+    /**
+     * Sum the amounts of all rows per category.
+     * 
+     * @return A map of category IDs to their total amounts
+     * @throws IllegalStateException if the store holds more than one currency
+     */
+    public IntLongMap sumByCategory() {
+        checkSingleCurrency();
+        IntLongMap totals = new IntLongMap();
+        for (int row = 0; row < size; row++) {
+            totals.add(categoryIds[row], amounts[row]);
+        }
+        return totals;
+    }
+    
+    /**
+     * Sum the amounts of recurring and one-time rows.
+     * 
+     * @return A two-element array: one-time total, then recurring total
+     * @throws IllegalStateException if the store holds more than one currency
+     */
+    public long[] sumByRecurring() {
+        checkSingleCurrency();
+        long[] totals = new long[2];
+        for (int row = 0; row < size; row++) {
+            int slot = (flags[row] & RECURRING_BIT) >>> 2;
+            totals[slot] = Money.add(totals[slot], amounts[row]);
+        }
+        return totals;
+    }
+    
+    /**
+     * Find the smallest amount.
+     * 
+     * @return The smallest amount in minor units, or 0 if the store is empty
+     * @throws IllegalStateException if the store holds more than one currency
+     */
+    public long minAmount() {
+        checkSingleCurrency();
+        return size == 0 ? 0 : kernels.min(amounts, size);
+    }
+    
+    /**
+     * Find the largest amount.
+     * 
+     * @return The largest amount in minor units, or 0 if the store is empty
+     * @throws IllegalStateException if the store holds more than one currency
+     */
+    public long maxAmount() {
+        checkSingleCurrency();
+        return size == 0 ? 0 : kernels.max(amounts, size);
+    }
+    
+    /**
+     * Count the rows whose amount is at least a threshold.
+     * 
+     * @param threshold The smallest amount to count, in minor units
+     * @return The number of matching rows
+     * @throws IllegalStateException if the store holds more than one currency
+     */
+    public int countAmountAtLeast(long threshold) {
+        checkSingleCurrency();
+        return kernels.countAtLeast(amounts, size, threshold);
+    }
+    
+    private int encodeTitle(String title) {
+        Integer code = titleDictionary.get(title);
+        if (code == null) {
+            code = titles.size();
+            titles.add(title);
+            titleDictionary.put(title, code);
+        }
+        return code;
+    }
+    
+    private byte encodeCurrency(String currency) {
+        int code = currencies.indexOf(currency);
+        if (code < 0) {
+            if (currencies.size() > CURRENCY_MASK) {
+                throw new IllegalStateException("Too many currencies: " + currency);
+            }
+            code = currencies.size();
+            currencies.add(currency);
+        }
+        return (byte) code;
+    }
+    
+    private void grow() {
+        int capacity = ids.length * 2;
+        ids = Arrays.copyOf(ids, capacity);
+        amounts = Arrays.copyOf(amounts, capacity);
+        flags = Arrays.copyOf(flags, capacity);
+        categoryIds = Arrays.copyOf(categoryIds, capacity);
+        titleCodes = Arrays.copyOf(titleCodes, capacity);
+        currencyCodes = Arrays.copyOf(currencyCodes, capacity);
+    }
+    
+    private void checkSingleCurrency() {
+        if (currencies.size() > 1) {
+            throw new IllegalStateException("Amounts are in more than one currency: " + currencies
+                    + "; convert the store with convertTo first");
+        }
+    }
+    
+    private void checkRow(int row) {
+        if (row < 0 || row >= size) {
+            throw new IndexOutOfBoundsException("Row: " + row + ", Size: " + size);
+        }
+    }
+}
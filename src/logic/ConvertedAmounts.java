@@ -0,0 +1,101 @@
+package logic;
+
+import model.Expense;
+
+import java.util.Arrays;
+import java.util.function.ToLongFunction;
+
+/**
+ * Converts the amounts of expenses into one currency. The factor of each
+ * currency is resolved from the rates the first time the currency is seen
+ * and kept, so converting a row costs a scan of the few currencies seen so
+ * far and a multiplication, instead of a rate lookup. Currency codes read
+ * from the database are interned, so the scan compares references first.
+ * <p>
+ * Instances can be shared between threads, such as by the comparators of a
+ * parallel sort.
+ */
+public final class ConvertedAmounts implements ToLongFunction<Expense> {
+    
+    private final CurrencyRates.Converter converter;
+    
+    // Currencies seen so far and their factors, replaced as a whole when a currency is added
+    private volatile Factors known;
+    
+    /**
+     * Create a conversion of expense amounts with a converter.
+     * 
+     * @param converter Converts into the wanted currency
+     */
+    public ConvertedAmounts(CurrencyRates.Converter converter) {
+        this.converter = converter;
+        this.known = new Factors(new String[] {converter.getTarget()}, new double[] {1.0});
+    }
+    
+    /**
+     * Get the converter the amounts are converted with.
+     * 
+     * @return The converter
+     */
+    public CurrencyRates.Converter getConverter() {
+        return converter;
+    }
+    
+    /**
+     * Check whether an expense's amount can be converted.
+     * 
+     * @param expense The expense
+     * @return true if the expense's currency is the target or has a rate, false otherwise
+     */
+    public boolean canConvert(Expense expense) {
+        return !Double.isNaN(factorOf(expense.getCurrency()));
+    }
+    
+    /**
+     * Convert an expense's amount.
+     * 
+     * @param expense The expense
+     * @return The amount in minor units of the converter's currency
+     * @throws IllegalArgumentException if the expense's currency has no rate
+     * @throws ArithmeticException if the converted amount does not fit in a long
+     */
+    @Override
+    public long applyAsLong(Expense expense) {
+        double factor = factorOf(expense.getCurrency());
+        if (Double.isNaN(factor)) {
+            throw new IllegalArgumentException("Unknown currency: " + expense.getCurrency());
+        }
+        return CurrencyRates.Converter.applyFactor(expense.getAmount(), factor);
+    }
+    
+    private double factorOf(String currency) {
+        Factors current = known;
+        String[] currencies = current.currencies;
+        for (int i = 0; i < currencies.length; i++) {
+            if (currencies[i].equals(currency)) {
+                return current.factors[i];
+            }
+        }
+        
+        // A racing thread may add the same currency too, which only costs a duplicate entry
+        double factor = converter.canConvert(currency) ? converter.getFactor(currency) : Double.NaN;
+        int count = currencies.length;
+        String[] grownCurrencies = Arrays.copyOf(currencies, count + 1);
+        grownCurrencies[count] = currency;
+        double[] grownFactors = Arrays.copyOf(current.factors, count + 1);
+        grownFactors[count] = factor;
+        known = new Factors(grownCurrencies, grownFactors);
+        return factor;
+    }
+    
+    // Parallel arrays of currencies and their factors, NaN for a currency without a rate
+    private static final class Factors {
+        final String[] currencies;
+        final double[] factors;
+        
+        Factors(String[] currencies, double[] factors) {
+            this.currencies = currencies;
+            this.factors = factors;
+        }
+    }
+}
@@ -0,0 +1,365 @@
+package logic;
+
+import model.Money;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.*;
+
+/**
+ * Immutable table of exchange rates between a fixed set of currencies.
+ * <p>
+ * Rates are given against a base currency and expanded once into a square
+ * matrix of conversion factors, so converting an amount is an array lookup
+ * and a multiplication. Amounts in many currencies are converted with a
+ * {@link Converter}, which holds the factors into one target currency and
+ * converts whole columns of amounts in a single loop. Each amount is
+ * converted and rounded before it is added to a total, so a total does not
+ * depend on how the amounts were grouped before they were summed.
+ * <p>
+ * Rates are read from a properties file: {@code base=INR} names the base
+ * currency and each other entry gives the value of one unit of a currency in
+ * the base currency, such as {@code USD=83.10}.
+ */
+public final class CurrencyRates {
+    
+    // System property naming the rates file to read
+    public static final String RATES_FILE_PROPERTY = "expenseflow.currencyRates";
+    
+    // Rates file looked up in the working directory when none is given
+    public static final String DEFAULT_RATES_FILE = "currency_rates.properties";
+    
+    // Key of the base currency in the rates file
+    private static final String KEY_BASE = "base";
+    
+    private final String base;
+    private final String[] codes;
+    private final Map<String, Integer> indexes;
+    
+    // factors[from * codes.length + to] converts an amount in one currency to another
+    private final double[] factors;
+    
+    private CurrencyRates(String base, Map<String, BigDecimal> rates) {
+        this.base = base;
+        this.codes = new String[rates.size() + (rates.containsKey(base) ? 0 : 1)];
+        this.indexes = new HashMap<>();
+        
+        double[] baseValues = new double[codes.length];
+        codes[0] = base;
+        baseValues[0] = 1.0;
+        indexes.put(base, 0);
+        int count = 1;
+        for (Map.Entry<String, BigDecimal> rate : rates.entrySet()) {
+            if (rate.getKey().equals(base)) {
+                continue;
+            }
+            if (rate.getValue().signum() <= 0) {
+                throw new IllegalArgumentException("Rate for " + rate.getKey() + " must be positive: " + rate.getValue());
+            }
+            codes[count] = rate.getKey();
+            baseValues[count] = rate.getValue().doubleValue();
+            indexes.put(rate.getKey(), count);
+            count++;
+        }
+        
+        int n = codes.length;
+        this.factors = new double[n * n];
+        for (int from = 0; from < n; from++) {
+            for (int to = 0; to < n; to++) {
+                factors[from * n + to] = (from == to) ? 1.0 : baseValues[from] / baseValues[to];
+            }
+        }
+    }
+    
+    /**
+     * Create a table that knows only one currency.
+     * 
+     * @param base The ISO 4217 code of the currency
+     * @return A table in which every known amount converts to itself
+     */
+    public static CurrencyRates identity(String base) {
+        return new CurrencyRates(base, Collections.emptyMap());
+    }
+    
+    /**
+     * Create a table from rates against a base currency.
+     * 
+     * @param base The ISO 4217 code of the base currency
+     * @param rates The value of one unit of each currency in the base currency
+     * @return The table
+     * @throws IllegalArgumentException if a rate is not positive
+     */
+    public static CurrencyRates fromRates(String base, Map<String, BigDecimal> rates) {
+        return new CurrencyRates(base, new LinkedHashMap<>(rates));
+    }
+    
+    /**
+     * Load the table from the configured rates file. A missing file is not an
+     * error; a table of only {@link Money#DEFAULT_CURRENCY} is used instead.
+     * 
+     * @return The loaded table
+     */
+    public static CurrencyRates load() {
+        String ratesFile = System.getProperty(RATES_FILE_PROPERTY, DEFAULT_RATES_FILE);
+        Path path = Paths.get(ratesFile);
+        if (!Files.exists(path) && System.getProperty(RATES_FILE_PROPERTY) == null) {
+            return identity(Money.DEFAULT_CURRENCY);
+        }
+        try {
+            CurrencyRates rates = load(path);
+            System.out.println("Loaded currency rates from: " + ratesFile);
+            return rates;
+        } catch (IOException | IllegalArgumentException e) {
+            System.err.println("Could not read currency rates " + ratesFile + ": " + e.getMessage());
+            return identity(Money.DEFAULT_CURRENCY);
+        }
+    }
+    
+    /**
+     * Load the table from a rates file.
+     * 
+     * @param path The path of the properties file
+     * @return The loaded table
+     * @throws IOException if the file cannot be read
+     * @throws IllegalArgumentException if a rate is missing, malformed or not positive
+     */
+    public static CurrencyRates load(Path path) throws IOException {
+        Properties properties = new Properties();
+        try (InputStream in = new FileInputStream(path.toFile())) {
+            properties.load(in);
+        }
+        
+        String base = properties.getProperty(KEY_BASE, Money.DEFAULT_CURRENCY).trim().toUpperCase(Locale.ROOT);
+        Map<String, BigDecimal> rates = new TreeMap<>();
+        for (String name : properties.stringPropertyNames()) {
+            if (name.equals(KEY_BASE)) {
+                continue;
+            }
+            String value = properties.getProperty(name).trim();
+            try {
+                rates.put(name.trim().toUpperCase(Locale.ROOT), new BigDecimal(value));
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Invalid rate for " + name + ": " + value);
+            }
+        }
+        return new CurrencyRates(base, rates);
+    }
+    
+    /**
+     * Get the currency the rates are given against.
+     * 
+     * @return The ISO 4217 code of the base currency
+     */
+    public String getBase() {
+        return base;
+    }
+    
+    /**
+     * Get the known currencies, base currency first.
+     * 
+     * @return An unmodifiable list of ISO 4217 codes
+     */
+    public List<String> getCurrencies() {
+        return Collections.unmodifiableList(Arrays.asList(codes));
+    }
+    
+    /**
+     * Check whether a currency is in the table.
+     * 
+     * @param currency The ISO 4217 code
+     * @return true if amounts in the currency can be converted, false otherwise
+     */
+    public boolean contains(String currency) {
+        return indexes.containsKey(currency);
+    }
+    
+    /**
+     * Get the factor that converts an amount from one currency to another.
+     * 
+     * @param from The currency of the amount
+     * @param to The currency to convert to
+     * @return The conversion factor
+     * @throws IllegalArgumentException if either currency is unknown
+     */
+    public double getRate(String from, String to) {
+        return factors[indexOf(from) * codes.length + indexOf(to)];
+    }
+    
+    /**
+     * Convert an amount between currencies, rounding to the nearest minor unit.
+     * 
+     * @param amount The amount in minor units
+     * @param from The currency of the amount
+     * @param to The currency to convert to
+     * @return The converted amount in minor units
+     * @throws IllegalArgumentException if either currency is unknown
+     * @throws ArithmeticException if the converted amount does not fit in a long
+     */
+    public long convert(long amount, String from, String to) {
+        return from.equals(to) ? amount : roundExact(amount * getRate(from, to));
+    }
+    
+    /**
+     * Get a converter into one currency.
+     * 
+     * @param target The currency to convert to
+     * @return The converter
+     * @throws IllegalArgumentException if the currency is unknown
+     */
+    public Converter converterTo(String target) {
+        int to = indexOf(target);
+        double[] column = new double[codes.length];
+        for (int from = 0; from < codes.length; from++) {
+            column[from] = factors[from * codes.length + to];
+        }
+        return new Converter(this, target, column);
+    }
+    
+    /**
+     * Round a converted amount to the nearest minor unit. Math.round clamps
+     * out-of-range values to Long.MIN_VALUE or Long.MAX_VALUE, which would
+     * silently corrupt a total, so they are rejected instead.
+     */
+    private static long roundExact(double amount) {
+        if (!(Math.abs(amount) < 0x1p63)) {
+            throw new ArithmeticException("long overflow");
+        }
+        return Math.round(amount);
+    }
+    
+    private int indexOf(String currency) {
+        Integer index = indexes.get(currency);
+        if (index == null) {
+            throw new IllegalArgumentException("Unknown currency: " + currency);
+        }
+        return index;
+    }
+    
+    @Override
+    public String toString() {
+        return "CurrencyRates{base=" + base + ", currencies=" + Arrays.toString(codes) + '}';
+    }
+    
+    /**
+     * Converts amounts into one target currency. An amount in a currency the
+     * table does not know cannot be converted and is rejected, rather than
+     * being counted as if it were already in the target currency; callers
+     * that may see such amounts check {@link #canConvert(String)} first.
+     * Many expenses are converted with {@link ConvertedAmounts}, which looks
+     * each currency's rate up once rather than for every amount.
+     */
+    public static final class Converter {
+        private final CurrencyRates rates;
+        private final String target;
+        
+        // Factor into the target currency, indexed like the table's currencies
+        private final double[] factors;
+        
+        private Converter(CurrencyRates rates, String target, double[] factors) {
+            this.rates = rates;
+            this.target = target;
+            this.factors = factors;
+        }
+        
+        /**
+         * Get the currency amounts are converted to.
+         * 
+         * @return The ISO 4217 code of the target currency
+         */
+        public String getTarget() {
+            return target;
+        }
+        
+        /**
+         * Get the table the converter was created from.
+         * 
+         * @return The rates
+         */
+        public CurrencyRates getRates() {
+            return rates;
+        }
+        
+        /**
+         * Check whether amounts in a currency can be converted.
+         * 
+         * @param currency The ISO 4217 code
+         * @return true if the currency is the target or has a rate, false otherwise
+         */
+        public boolean canConvert(String currency) {
+            return currency.equals(target) || rates.contains(currency);
+        }
+        
+        /**
+         * Get the factor that converts amounts in a currency into the target
+         * currency, for converting many amounts with one lookup of the rate.
+         * 
+         * @param currency The currency of the amounts
+         * @return The conversion factor
+         * @throws IllegalArgumentException if the currency has no rate
+         * @see #applyFactor(long, double)
+         */
+        public double getFactor(String currency) {
+            return currency.equals(target) ? 1.0 : factors[rates.indexOf(currency)];
+        }
+        
+        /**
+         * Convert an amount with a factor from {@link #getFactor(String)},
+         * rounding to the nearest minor unit. A factor of exactly 1 returns
+         * the amount unchanged.
+         * 
+         * @param amount The amount in minor units
+         * @param factor The conversion factor
+         * @return The converted amount in minor units
+         * @throws ArithmeticException if the converted amount does not fit in a long
+         */
+        public static long applyFactor(long amount, double factor) {
+            return (factor == 1.0) ? amount : roundExact(amount * factor);
+        }
+        
+        /**
+         * Convert an amount into the target currency.
+         * 
+         * @param amount The amount in minor units
+         * @param currency The currency of the amount
+         * @return The converted amount in minor units
+         * @throws IllegalArgumentException if the currency has no rate
+         * @throws ArithmeticException if the converted amount does not fit in a long
+         */
+        public long convert(long amount, String currency) {
+            return applyFactor(amount, getFactor(currency));
+        }
+        
+        /**
+         * Convert a column of amounts into the target currency. The currency of
+         * row i is {@code currencies.get(codes[i])}; the factor of each code
+         * is looked up once before the rows are converted in a single loop.
+         * 
+         * @param amounts The amounts in minor units
+         * @param codes The currency code of each row
+         * @param currencies The currency of each code
+         * @param length The number of rows to convert
+         * @param converted The array to receive the converted amounts
+         * @throws IllegalArgumentException if a currency has no rate
+         * @throws ArithmeticException if a converted amount does not fit in a long
+         */
+        public void convert(long[] amounts, byte[] codes, List<String> currencies, int length, long[] converted) {
+            double[] codeFactors = factorsFor(currencies);
+            for (int row = 0; row < length; row++) {
+                converted[row] = applyFactor(amounts[row], codeFactors[codes[row]]);
+            }
+        }
+        
+        private double[] factorsFor(List<String> currencies) {
+            double[] codeFactors = new double[currencies.size()];
+            for (int code = 0; code < codeFactors.length; code++) {
+                codeFactors[code] = getFactor(currencies.get(code));
+            }
+            return codeFactors;
+        }
+    }
+}
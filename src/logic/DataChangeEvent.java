@@ -0,0 +1,95 @@
+package logic;
+
+import model.Identifiable;
+
+/**
+ * Describes one change to the collection of a DataManager, or the start or
+ * end of a batch of changes.
+ * 
+ * @param <T> The type of item changed
+ */
+public class DataChangeEvent<T extends Identifiable> {
+    
+    /**
+     * The kinds of change.
+     */
+    public enum Type {
+        /** An item was added; {@link #getItem()} is the new item. */
+        ADDED,
+        /** An item was replaced; {@link #getItem()} is the new version and {@link #getPrevious()} the old one. */
+        UPDATED,
+        /** An item was removed; {@link #getItem()} is the removed item. */
+        REMOVED,
+        /** All items were removed. */
+        CLEARED,
+        /** A batch of changes is starting; consumers may defer work until it ends. */
+        BATCH_BEGIN,
+        /** A batch of changes has ended. */
+        BATCH_END
+    }
+    
+    private final DataManager<T> source;
+    private final Type type;
+    private final T item;
+    private final T previous;
+    private final long version;
+    
+    DataChangeEvent(DataManager<T> source, Type type, T item, T previous, long version) {
+        this.source = source;
+        this.type = type;
+        this.item = item;
+        this.previous = previous;
+        this.version = version;
+    }
+    
+    /**
+     * Get the manager whose collection changed.
+     * 
+     * @return The source manager
+     */
+    public DataManager<T> getSource() {
+        return source;
+    }
+    
+    /**
+     * Get the kind of change.
+     * 
+     * @return The event type
+     */
+    public Type getType() {
+        return type;
+    }
+    
+    /**
+     * Get the item added, removed, or the new version of the item updated.
+     * 
+     * @return The item, or null for CLEARED and batch events
+     */
+    public T getItem() {
+        return item;
+    }
+    
+    /**
+     * Get the old version of an updated item.
+     * 
+     * @return The previous item, or null unless the type is UPDATED
+     */
+    public T getPrevious() {
+        return previous;
+    }
+    
+    /**
+     * Get the version of the collection right after the change.
+     * 
+     * @return The collection version
+     * @see DataManager#getVersion()
+     */
+    public long getVersion() {
+        return version;
+    }
+    
+    @Override
+    public String toString() {
+        return type + (item != null ? " " + item : "") + " (version " + version + ")";
+    }
+}
@@ -0,0 +1,20 @@
+package logic;
+
+import model.Identifiable;
+
+/**
+ * Receives the changes made to the collection of a DataManager.
+ * 
+ * @param <T> The type of item managed
+ * @see DataManager#addChangeListener(DataChangeListener)
+ */
+@FunctionalInterface
+public interface DataChangeListener<T extends Identifiable> {
+    
+    /**
+     * Called for each change, in the order the changes were made.
+     * 
+     * @param event The change
+     */
+    void dataChanged(DataChangeEvent<T> event);
+}
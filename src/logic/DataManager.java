@@ -1,24 +1,437 @@
 package logic;
 
+import model.Identifiable;
+
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.Function;
 import java.util.function.Predicate;
+import java.util.function.Supplier;
 
 /**
  * Abstract generic class to manage collections of data objects.
  * Provides methods for common operations like sorting, filtering, and iteration.
- *
+ * Items are kept in insertion order and indexed by ID, so lookups, updates
+ * and removals by ID take constant time. Subclasses can register secondary
+ * indexes, which are kept up to date on every change.
+ * <p>
+ * Managed items must not be modified in place; pass a new instance with the
+ * same ID to {@link #update(Identifiable)} so derived state sees both versions.
+ * <p>
+ * By default a manager must only be used from one thread. A manager created
+ * in concurrent mode can be shared by any number of reader threads and
+ * written from any thread: changes take the write side of a StampedLock,
+ * lookups by ID and size first try an optimistic read and take its read side
+ * only if a writer got in the way, and bulk reads such as getAll, filter,
+ * sort and getSortedView work on immutable snapshots shared until the next
+ * change. A batch belongs to the thread that began it; other threads that
+ * begin a batch wait until it ends.
+ * <p>
+ * Listeners can be registered to receive every change as a
+ * {@link DataChangeEvent}, so consumers can apply deltas instead of
+ * recomputing from the whole collection.
+ * 
  * @param <T> The type of objects this manager will handle.
  */
-public abstract class DataManager<T> {
+public abstract class DataManager<T extends Identifiable> {
+    
+    /**
+     * Number of items below which the parallel operations run sequentially,
+     * since splitting smaller inputs costs more than it saves.
+     */
+    public static final int PARALLEL_THRESHOLD = 8192;
+    
+    // Index of the data elements by ID, in insertion order
+    private final Map<Integer, T> dataIndex;
+    
+    // The collection of data elements, a live view of the index;
+    // in concurrent mode it may only be read inside read(...) or the hooks
+    protected final Collection<T> dataCollection;
+    
+    // Secondary indexes maintained alongside the ID index
+    private final List<SecondaryIndex<?, T>> secondaryIndexes;
+    
+    // Maximum number of sorted views kept up to date at once
+    private static final int MAX_SORTED_VIEWS = 8;
     
-    // The collection of data elements
-    protected List<T> dataCollection;
+    // Sorted views by comparator, least recently used first
+    private final Map<Comparator<T>, SortedView<T>> sortedViews;
+    
+    // Guards all state in concurrent mode, null otherwise
+    private final StampedLock lock;
+    
+    // Incremented on every change to the collection
+    private volatile long version;
+    
+    // Read-only copy of the items shared by readers
+    private volatile Snapshot<T> snapshot;
+    
+    // Read-only copies of the sorted views shared by readers, in concurrent mode
+    private final Map<Comparator<T>, Snapshot<T>> sortedSnapshots = new ConcurrentHashMap<>();
+    
+    // Evaluates filters for select and count
+    private final FilterEngine<T> filterEngine;
+    
+    // Change listeners, and the lock held by the thread running a batch, once per nesting level
+    private final List<ListenerRegistration<T>> listeners = new CopyOnWriteArrayList<>();
+    private final ReentrantLock batchLock = new ReentrantLock();
     
     /**
-     * Constructor that initializes the data manager with an ArrayList.
+     * Constructor that initializes the data manager with an insertion-ordered ID index.
      */
     public DataManager() {
-        this.dataCollection = new ArrayList<>();
+        this(false);
+    }
+    
+    /**
+     * Constructor that initializes the data manager, optionally for use from several threads.
+     * 
+     * @param concurrent true to make the manager safe to share between threads
+     */
+    protected DataManager(boolean concurrent) {
+        this.lock = concurrent ? new StampedLock() : null;
+        this.dataIndex = new LinkedHashMap<>();
+        this.dataCollection = Collections.unmodifiableCollection(dataIndex.values());
+        this.secondaryIndexes = new ArrayList<>();
+        this.sortedViews = new LinkedHashMap<Comparator<T>, SortedView<T>>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Comparator<T>, SortedView<T>> eldest) {
+                return size() > MAX_SORTED_VIEWS;
+            }
+        };
+        this.filterEngine = new FilterEngine<>(this);
+    }
+    
+    /**
+     * Check whether this manager is safe to share between threads.
+     * 
+     * @return true if the manager was created in concurrent mode
+     */
+    public boolean isConcurrent() {
+        return lock != null;
+    }
+    
+    /**
+     * Run a read of the manager's state, or of subclass state maintained in
+     * the hooks, consistently with concurrent writers. In concurrent mode the
+     * reader runs under the read lock: the index and the derived state are
+     * plain collections, which are not safe to read while a writer changes
+     * them, even if the result were thrown away afterwards. Outside
+     * concurrent mode the reader is simply run.
+     * 
+     * @param <R> The type of the result
+     * @param reader The read to perform
+     * @return The result of the read
+     */
+    protected <R> R read(Supplier<R> reader) {
+        if (lock == null) {
+            return reader.get();
+        }
+        long stamp = lock.readLock();
+        try {
+            return reader.get();
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+    
+    /**
+     * Run a short read of the manager's state, such as a single lookup or a
+     * counter, without blocking writers. In concurrent mode the reader first
+     * runs under an optimistic stamp of the lock, and runs again under the
+     * read lock only if a write happened meanwhile. The reader may therefore
+     * see state a writer is changing, so it must only do bounded reads whose
+     * result or failure is thrown away when the stamp does not validate, and
+     * it must not have side effects.
+     * 
+     * @param <R> The type of the result
+     * @param reader The read to perform
+     * @return The result of the read
+     */
+    protected <R> R readOptimistic(Supplier<R> reader) {
+        if (lock == null) {
+            return reader.get();
+        }
+        long stamp = lock.tryOptimisticRead();
+        if (stamp != 0L) {
+            try {
+                R result = reader.get();
+                if (lock.validate(stamp)) {
+                    return result;
+                }
+            } catch (RuntimeException e) {
+                if (lock.validate(stamp)) {
+                    throw e;
+                }
+            }
+        }
+        return read(reader);
+    }
+    
+    /**
+     * Run a change to state derived from the items, such as running
+     * aggregates, under the write lock so readers never see it half done.
+     * The items themselves must not be changed.
+     * 
+     * @param writer The change to make
+     */
+    protected void write(Runnable writer) {
+        long stamp = lockWrite();
+        try {
+            writer.run();
+        } finally {
+            unlockWrite(stamp);
+        }
+    }
+    
+    private long lockWrite() {
+        return (lock != null) ? lock.writeLock() : 0L;
+    }
+    
+    private void unlockWrite(long stamp) {
+        if (lock != null) {
+            lock.unlockWrite(stamp);
+        }
+    }
+    
+    /**
+     * Mark the sorted views and the cached filter results out of date, for
+     * when the comparators and filters they were built with depend on state
+     * that changed without any item changing, such as the currency amounts
+     * are compared in. Each view is re-sorted and each filter re-evaluated
+     * the next time it is used. Must be called inside {@link #write(Runnable)}.
+     */
+    protected void invalidateDerivedViews() {
+        for (SortedView<T> view : sortedViews.values()) {
+            view.invalidate();
+        }
+        sortedSnapshots.clear();
+        filterEngine.invalidate();
+    }
+    
+    /**
+     * Register a listener that is called synchronously, on the thread that
+     * made the change, after each change. Listeners run after the write lock
+     * is released, so they may read the manager.
+     * 
+     * @param listener The listener to add
+     */
+    public void addChangeListener(DataChangeListener<T> listener) {
+        listeners.add(new ListenerRegistration<>(listener, null));
+    }
+    
+    /**
+     * Register a listener that is called asynchronously on an executor, such
+     * as SwingUtilities::invokeLater. Events are still delivered one at a time
+     * and in order.
+     * 
+     * @param listener The listener to add
+     * @param executor The executor that runs the listener
+     */
+    public void addChangeListener(DataChangeListener<T> listener, Executor executor) {
+        listeners.add(new ListenerRegistration<>(listener, Objects.requireNonNull(executor)));
+    }
+    
+    /**
+     * Unregister a listener.
+     * 
+     * @param listener The listener to remove
+     */
+    public void removeChangeListener(DataChangeListener<T> listener) {
+        listeners.removeIf(registration -> registration.listener == listener);
+    }
+    
+    /**
+     * Mark the start of a batch of changes, such as a reload. Listeners get a
+     * BATCH_BEGIN event, then the individual changes, then BATCH_END when the
+     * matching {@link #endBatch()} is called. Batches nest; only the
+     * outermost one sends events.
+     * <p>
+     * A batch belongs to the thread that began it and must be ended on that
+     * thread. If another thread has a batch open, this waits until that
+     * batch ends, so batches from different threads never interleave.
+     * <p>
+     * Sorted views are not maintained item by item during a batch; each one
+     * is re-sorted once when the outermost batch ends, or when it is next
+     * asked for.
+     */
+    public void beginBatch() {
+        batchLock.lock();
+        if (batchLock.getHoldCount() == 1) {
+            fireChange(DataChangeEvent.Type.BATCH_BEGIN, null, null, version);
+        }
+    }
+    
+    /**
+     * Mark the end of a batch of changes started with {@link #beginBatch()}.
+     * 
+     * @throws IllegalStateException if the current thread has no batch open
+     */
+    public void endBatch() {
+        if (!batchLock.isHeldByCurrentThread()) {
+            throw new IllegalStateException("endBatch called without beginBatch");
+        }
+        try {
+            if (batchLock.getHoldCount() == 1) {
+                long stamp = lockWrite();
+                try {
+                    for (SortedView<T> view : sortedViews.values()) {
+                        if (view.isStale()) {
+                            view.rebuild(dataCollection);
+                        }
+                    }
+                } finally {
+                    unlockWrite(stamp);
+                }
+                fireChange(DataChangeEvent.Type.BATCH_END, null, null, version);
+            }
+        } finally {
+            batchLock.unlock();
+        }
+    }
+    
+    /**
+     * Check whether a batch is open, on any thread.
+     * 
+     * @return true if a batch has begun and not yet ended
+     */
+    protected boolean isBatchOpen() {
+        return batchLock.isLocked();
+    }
+    
+    private void fireChange(DataChangeEvent.Type type, T item, T previous, long changeVersion) {
+        if (listeners.isEmpty()) {
+            return;
+        }
+        DataChangeEvent<T> event = new DataChangeEvent<>(this, type, item, previous, changeVersion);
+        for (ListenerRegistration<T> registration : listeners) {
+            registration.deliver(event);
+        }
+    }
+    
+    /**
+     * A registered listener, and for asynchronous listeners the queue of
+     * events not yet delivered. At most one drain of the queue is scheduled
+     * on the executor at a time, which keeps the events in order.
+     */
+    private static final class ListenerRegistration<T extends Identifiable> {
+        final DataChangeListener<T> listener;
+        private final Executor executor;
+        private final Queue<DataChangeEvent<T>> pending = new ConcurrentLinkedQueue<>();
+        private final AtomicBoolean scheduled = new AtomicBoolean();
+        
+        ListenerRegistration(DataChangeListener<T> listener, Executor executor) {
+            this.listener = listener;
+            this.executor = executor;
+        }
+        
+        void deliver(DataChangeEvent<T> event) {
+            if (executor == null) {
+                notifyListener(event);
+                return;
+            }
+            pending.add(event);
+            if (scheduled.compareAndSet(false, true)) {
+                executor.execute(this::drain);
+            }
+        }
+        
+        private void drain() {
+            DataChangeEvent<T> event;
+            while ((event = pending.poll()) != null) {
+                notifyListener(event);
+            }
+            scheduled.set(false);
+            
+            // An event may have been queued after the last poll but before the flag was cleared
+            if (!pending.isEmpty() && scheduled.compareAndSet(false, true)) {
+                executor.execute(this::drain);
+            }
+        }
+        
+        private void notifyListener(DataChangeEvent<T> event) {
+            try {
+                listener.dataChanged(event);
+            } catch (RuntimeException e) {
+                System.err.println("Error in change listener: " + e.getMessage());
+            }
+        }
+    }
+    
+    /**
+     * Register a secondary index on a field of the items.
+     * Must be called before any items are added.
+     * 
+     * @param <K> The type of the indexed field
+     * @param keyExtractor Function that reads the indexed field from an item
+     * @return The new index
+     */
+    protected <K> SecondaryIndex<K, T> createIndex(Function<T, K> keyExtractor) {
+        SecondaryIndex<K, T> index = new SecondaryIndex<>(keyExtractor);
+        secondaryIndexes.add(index);
+        return index;
+    }
+    
+    /**
+     * Called after an item has been added to the collection.
+     * Subclasses can override this to maintain derived state.
+     * In concurrent mode the hooks run under the write lock, so they must not
+     * call back into locking methods of the manager.
+     * 
+     * @param item The item that was added
+     */
+    protected void onItemAdded(T item) {
+        for (SecondaryIndex<?, T> index : secondaryIndexes) {
+            index.add(item);
+        }
+        for (SortedView<T> view : sortedViews.values()) {
+            if (isBatchOpen()) {
+                view.invalidate();
+            } else if (!view.isStale()) {
+                view.add(item);
+            }
+        }
+    }
+    
+    /**
+     * Called after an item has been removed from the collection,
+     * including the old version of an updated item.
+     * Subclasses can override this to maintain derived state.
+     * 
+     * @param item The item that was removed
+     */
+    protected void onItemRemoved(T item) {
+        for (SecondaryIndex<?, T> index : secondaryIndexes) {
+            index.remove(item);
+        }
+        for (SortedView<T> view : sortedViews.values()) {
+            if (isBatchOpen()) {
+                view.invalidate();
+            } else if (!view.isStale()) {
+                view.remove(item);
+            }
+        }
+    }
+    
+    /**
+     * Called after all items have been removed from the collection.
+     * Subclasses can override this to reset derived state.
+     */
+    protected void onCleared() {
+        for (SecondaryIndex<?, T> index : secondaryIndexes) {
+            index.clear();
+        }
+        for (SortedView<T> view : sortedViews.values()) {
+            view.clear();
+        }
     }
     
     /**
@@ -28,54 +441,257 @@ public abstract class DataManager<T> {
     
     /**
      * Add an item to the collection.
-     *
+     * 
      * @param item The item to add
-     * @return true if the item was added, false otherwise
+     * @return true if the item was added, false if an item with the same ID is already present
      */
     public boolean add(T item) {
-        return dataCollection.add(item);
+        long changeVersion;
+        long stamp = lockWrite();
+        try {
+            if (dataIndex.putIfAbsent(item.getId(), item) != null) {
+                return false;
+            }
+            changeVersion = ++version;
+            onItemAdded(item);
+        } finally {
+            unlockWrite(stamp);
+        }
+        fireChange(DataChangeEvent.Type.ADDED, item, null, changeVersion);
+        return true;
+    }
+    
+    /**
+     * Replace the whole collection with the given items, as one batch of
+     * changes. Used by the loaders.
+     * 
+     * @param items The new items, in order
+     */
+    protected void replaceAll(Collection<T> items) {
+        beginBatch();
+        try {
+            clear();
+            for (T item : items) {
+                add(item);
+            }
+        } finally {
+            endBatch();
+        }
+    }
+    
+    /**
+     * Replace the item with the same ID, keeping its position in the collection.
+     * 
+     * @param item The new version of the item
+     * @return true if an item with that ID was present and replaced, false otherwise
+     */
+    public boolean update(T item) {
+        T previous;
+        long changeVersion;
+        long stamp = lockWrite();
+        try {
+            previous = dataIndex.replace(item.getId(), item);
+            if (previous == null) {
+                return false;
+            }
+            changeVersion = ++version;
+            onItemRemoved(previous);
+            onItemAdded(item);
+        } finally {
+            unlockWrite(stamp);
+        }
+        fireChange(DataChangeEvent.Type.UPDATED, item, previous, changeVersion);
+        return true;
     }
     
     /**
      * Remove an item from the collection.
-     *
+     * 
      * @param item The item to remove
      * @return true if the item was removed, false otherwise
      */
     public boolean remove(T item) {
-        return dataCollection.remove(item);
+        return removeById(item.getId()) != null;
+    }
+    
+    /**
+     * Remove the item with the given ID from the collection.
+     * 
+     * @param id The ID of the item to remove
+     * @return The removed item, or null if no item has that ID
+     */
+    public T removeById(int id) {
+        T removed;
+        long changeVersion;
+        long stamp = lockWrite();
+        try {
+            removed = dataIndex.remove(id);
+            if (removed == null) {
+                return null;
+            }
+            changeVersion = ++version;
+            onItemRemoved(removed);
+        } finally {
+            unlockWrite(stamp);
+        }
+        fireChange(DataChangeEvent.Type.REMOVED, removed, null, changeVersion);
+        return removed;
+    }
+    
+    /**
+     * Get the item with the given ID.
+     * 
+     * @param id The ID to look for
+     * @return The item, or null if no item has that ID
+     */
+    public T getById(int id) {
+        return readOptimistic(() -> dataIndex.get(id));
+    }
+    
+    /**
+     * Check whether an item with the given ID is in the collection.
+     * 
+     * @param id The ID to look for
+     * @return true if an item has that ID, false otherwise
+     */
+    public boolean containsId(int id) {
+        return readOptimistic(() -> dataIndex.containsKey(id));
     }
     
     /**
      * Get all items in the collection.
-     *
+     * Callers that only read the items should use {@link #getSnapshot()}, which does not copy.
+     * 
      * @return A new list containing all items
      */
     public List<T> getAll() {
-        return new ArrayList<>(dataCollection);
+        return new ArrayList<>(items());
+    }
+    
+    /**
+     * Get an immutable snapshot of all items, in collection order.
+     * The snapshot is copied at most once per change to the collection and
+     * shared by every caller until the next change, so repeated reads cost
+     * nothing. A snapshot never changes: later adds, updates and removals are
+     * only seen by snapshots taken after them.
+     * 
+     * @return A read-only list of all items
+     */
+    public List<T> getSnapshot() {
+        Snapshot<T> current = snapshot;
+        if (current != null && current.version == version) {
+            return current.items;
+        }
+        
+        long stamp = (lock != null) ? lock.readLock() : 0L;
+        try {
+            current = snapshot;
+            if (current == null || current.version != version) {
+                @SuppressWarnings("unchecked")
+                T[] items = (T[]) dataCollection.toArray(new Identifiable[0]);
+                current = new Snapshot<>(Collections.unmodifiableList(Arrays.asList(items)), version);
+                snapshot = current;
+            }
+            return current.items;
+        } finally {
+            if (lock != null) {
+                lock.unlockRead(stamp);
+            }
+        }
+    }
+    
+    /**
+     * An immutable copy of the items and the version it was taken at.
+     */
+    private static final class Snapshot<T> {
+        final List<T> items;
+        final long version;
+        
+        Snapshot(List<T> items, long version) {
+            this.items = items;
+            this.version = version;
+        }
+    }
+    
+    /**
+     * Get the items for a bulk read: the live collection, or in concurrent
+     * mode a snapshot, which cannot change while it is being read.
+     */
+    private Collection<T> items() {
+        return (lock != null) ? getSnapshot() : dataCollection;
     }
     
     /**
      * Sort the items according to the provided comparator.
-     *
+     * 
      * @param comparator The comparator to use for sorting
      * @return A sorted list of items
      */
     public List<T> sort(Comparator<T> comparator) {
-        List<T> sortedList = new ArrayList<>(dataCollection);
+        List<T> sortedList = new ArrayList<>(items());
         sortedList.sort(comparator);
         return sortedList;
     }
     
+    /**
+     * Get the items sorted by a comparator, as a read-only view that stays
+     * sorted as items are added, updated and removed. The view is built the
+     * first time a comparator is used and kept up to date by binary-search
+     * insertion, so asking again for the same comparator costs nothing.
+     * Items that compare equal are ordered by ID.
+     * <p>
+     * Views are looked up by comparator instance, so callers should reuse
+     * the same comparator object, such as the ones returned by the managers'
+     * comparator getters. Only the most recently used views are maintained.
+     * <p>
+     * In concurrent mode a live view could change while it is read, so an
+     * immutable snapshot of the view is returned instead. Like
+     * {@link #getSnapshot()}, it is copied at most once per change and shared
+     * by every caller until the next change, without taking a lock.
+     * 
+     * @param comparator The comparator that defines the order
+     * @return A live, read-only sorted list of the items, or a snapshot in concurrent mode
+     */
+    public List<T> getSortedView(Comparator<T> comparator) {
+        if (lock != null) {
+            Snapshot<T> current = sortedSnapshots.get(comparator);
+            if (current != null && current.version == version) {
+                return current.items;
+            }
+        }
+        
+        // Looking a view up reorders the LRU map, so it counts as a write
+        long stamp = lockWrite();
+        try {
+            SortedView<T> view = sortedViews.get(comparator);
+            if (view == null) {
+                view = new SortedView<>(comparator, dataCollection);
+                sortedViews.put(comparator, view);
+            } else if (view.isStale()) {
+                view.rebuild(dataCollection);
+            }
+            if (lock == null) {
+                return view.items();
+            }
+            
+            Snapshot<T> current = new Snapshot<>(Collections.unmodifiableList(new ArrayList<>(view.items())), version);
+            sortedSnapshots.put(comparator, current);
+            sortedSnapshots.keySet().retainAll(sortedViews.keySet());
+            return current.items;
+        } finally {
+            unlockWrite(stamp);
+        }
+    }
+    
     /**
      * Filter the items according to the provided predicate.
-     *
+     * 
      * @param predicate The predicate to use for filtering
      * @return A filtered list of items
      */
     public List<T> filter(Predicate<T> predicate) {
         List<T> filteredList = new ArrayList<>();
-        for (T item : dataCollection) {
+        for (T item : items()) {
             if (predicate.test(item)) {
                 filteredList.add(item);
             }
@@ -83,28 +699,245 @@ public abstract class DataManager<T> {
         return filteredList;
     }
     
+    /**
+     * Get the items a composite filter accepts, in collection order.
+     * Each field predicate of the filter is evaluated to a bitmap over the
+     * collection, which is cached and reused by later calls and patched for
+     * the items changed since, so repeated queries combining the same
+     * predicates cost a few bitset operations.
+     * 
+     * @param filter The filter to apply
+     * @return A filtered list of items
+     */
+    public List<T> select(Filter<T> filter) {
+        return filterEngine.select(filter);
+    }
+    
+    /**
+     * Count the items a composite filter accepts.
+     * 
+     * @param filter The filter to apply
+     * @return The number of matching items
+     * @see #select(Filter)
+     */
+    public int count(Filter<T> filter) {
+        return filterEngine.count(filter);
+    }
+    
+    /**
+     * Get the version of the collection, which changes whenever an item is
+     * added, updated or removed. Lets callers tell whether state derived from
+     * the collection is still current.
+     * 
+     * @return The current version
+     */
+    public long getVersion() {
+        return version;
+    }
+    
+    /**
+     * Sort the items on multiple threads. The sort is stable and the result is
+     * the same as {@link #sort(Comparator)}; collections smaller than
+     * {@link #PARALLEL_THRESHOLD} are sorted sequentially.
+     * The comparator must be safe to call from several threads at once.
+     * 
+     * @param comparator The comparator to use for sorting
+     * @return A sorted list of items
+     */
+    @SuppressWarnings("unchecked")
+    public List<T> parallelSort(Comparator<T> comparator) {
+        if (size() < PARALLEL_THRESHOLD) {
+            return sort(comparator);
+        }
+        T[] items = (T[]) items().toArray(new Identifiable[0]);
+        Arrays.parallelSort(items, comparator);
+        return new ArrayList<>(Arrays.asList(items));
+    }
+    
+    /**
+     * Filter the items on multiple threads. The result is the same as
+     * {@link #filter(Predicate)}, in the same order; collections smaller than
+     * {@link #PARALLEL_THRESHOLD} are filtered sequentially.
+     * The predicate must be safe to call from several threads at once.
+     * 
+     * @param predicate The predicate to use for filtering
+     * @return A filtered list of items
+     */
+    @SuppressWarnings("unchecked")
+    public List<T> parallelFilter(Predicate<T> predicate) {
+        if (size() < PARALLEL_THRESHOLD) {
+            return filter(predicate);
+        }
+        T[] items = (T[]) items().toArray(new Identifiable[0]);
+        return ForkJoinPool.commonPool().invoke(new FilterTask<>(items, 0, items.length, predicate));
+    }
+    
+    /**
+     * Fork/join task that filters a range of an array, keeping the original order.
+     */
+    @SuppressWarnings("serial")
+    private static class FilterTask<T> extends RecursiveTask<List<T>> {
+        private final T[] items;
+        private final int from;
+        private final int to;
+        private final Predicate<T> predicate;
+        
+        FilterTask(T[] items, int from, int to, Predicate<T> predicate) {
+            this.items = items;
+            this.from = from;
+            this.to = to;
+            this.predicate = predicate;
+        }
+        
+        @Override
+        protected List<T> compute() {
+            if (to - from <= PARALLEL_THRESHOLD) {
+                List<T> matches = new ArrayList<>();
+                for (int i = from; i < to; i++) {
+                    if (predicate.test(items[i])) {
+                        matches.add(items[i]);
+                    }
+                }
+                return matches;
+            }
+            
+            int middle = (from + to) >>> 1;
+            FilterTask<T> left = new FilterTask<>(items, from, middle, predicate);
+            FilterTask<T> right = new FilterTask<>(items, middle, to, predicate);
+            left.fork();
+            List<T> rightMatches = right.compute();
+            List<T> matches = left.join();
+            matches.addAll(rightMatches);
+            return matches;
+        }
+    }
+    
+    /**
+     * Get the k greatest items according to a comparator, greatest first.
+     * The result is the same as sorting in descending order and keeping the
+     * first k items, but takes O(n log k) time and O(k) extra space.
+     * 
+     * @param comparator The comparator to rank the items by
+     * @param k The number of items to return
+     * @return A list of at most k items
+     */
+    public List<T> topK(Comparator<T> comparator, int k) {
+        return topK(items(), comparator, k);
+    }
+    
+    /**
+     * Get the k least items according to a comparator, least first.
+     * 
+     * @param comparator The comparator to rank the items by
+     * @param k The number of items to return
+     * @return A list of at most k items
+     * @see #topK(Comparator, int)
+     */
+    public List<T> bottomK(Comparator<T> comparator, int k) {
+        return topK(items(), comparator.reversed(), k);
+    }
+    
+    /**
+     * Get the k greatest items of a collection according to a comparator,
+     * greatest first. Items that compare equal keep their collection order.
+     * Collections of at least {@link #PARALLEL_THRESHOLD} items are copied to
+     * an array and split across threads, each keeping its own k best, and the
+     * partial results merged; the comparator must then be safe to call from
+     * several threads.
+     * 
+     * @param <E> The type of item ranked
+     * @param items The items to rank
+     * @param comparator The comparator to rank the items by
+     * @param k The number of items to return
+     * @return A list of at most k items
+     */
+    @SuppressWarnings("unchecked")
+    public static <E> List<E> topK(Collection<E> items, Comparator<? super E> comparator, int k) {
+        int capacity = Math.max(0, Math.min(k, items.size()));
+        if (items.size() < PARALLEL_THRESHOLD) {
+            BoundedHeap<E> heap = new BoundedHeap<>(comparator, capacity);
+            long position = 0;
+            for (E item : items) {
+                heap.offer(item, position++);
+            }
+            return heap.drainSorted();
+        }
+        E[] array = (E[]) items.toArray();
+        return ForkJoinPool.commonPool()
+            .invoke(new TopKTask<>(array, 0, array.length, comparator, capacity))
+            .drainSorted();
+    }
+    
+    /**
+     * Fork/join task that keeps the k greatest items of a range of an array.
+     */
+    @SuppressWarnings("serial")
+    private static class TopKTask<E> extends RecursiveTask<BoundedHeap<E>> {
+        private final E[] items;
+        private final int from;
+        private final int to;
+        private final Comparator<? super E> comparator;
+        private final int k;
+        
+        TopKTask(E[] items, int from, int to, Comparator<? super E> comparator, int k) {
+            this.items = items;
+            this.from = from;
+            this.to = to;
+            this.comparator = comparator;
+            this.k = k;
+        }
+        
+        @Override
+        protected BoundedHeap<E> compute() {
+            if (to - from <= PARALLEL_THRESHOLD) {
+                BoundedHeap<E> heap = new BoundedHeap<>(comparator, k);
+                for (int i = from; i < to; i++) {
+                    heap.offer(items[i], i);
+                }
+                return heap;
+            }
+            
+            int middle = (from + to) >>> 1;
+            TopKTask<E> left = new TopKTask<>(items, from, middle, comparator, k);
+            TopKTask<E> right = new TopKTask<>(items, middle, to, comparator, k);
+            left.fork();
+            BoundedHeap<E> heap = right.compute();
+            heap.merge(left.join());
+            return heap;
+        }
+    }
+    
     /**
      * Get an iterator for the collection.
-     *
+     * 
      * @return An iterator over the elements in the collection
      */
     public Iterator<T> iterator() {
-        return dataCollection.iterator();
+        return items().iterator();
     }
     
     /**
      * Clear all items from the collection.
      */
     public void clear() {
-        dataCollection.clear();
+        long changeVersion;
+        long stamp = lockWrite();
+        try {
+            dataIndex.clear();
+            changeVersion = ++version;
+            onCleared();
+        } finally {
+            unlockWrite(stamp);
+        }
+        fireChange(DataChangeEvent.Type.CLEARED, null, null, changeVersion);
     }
     
     /**
      * Get the number of items in the collection.
-     *
+     * 
      * @return The number of items
      */
     public int size() {
-        return dataCollection.size();
+        return readOptimistic(dataIndex::size);
     }
-} 
\ No newline at end of file
+}
@@ -1,12 +1,24 @@
 package logic;
 
 import dao.ExpenseDAO;
+import dao.DBConnection;
+import model.Category;
 import model.Expense;
+import model.Money;
+import utils.IntLongMap;
 
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.Comparator;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.IntFunction;
 
 /**
  * Manager class for Expense data that extends the generic DataManager.
@@ -14,37 +26,446 @@ import java.util.Map;
  */
 public class ExpenseManager extends DataManager<Expense> {
     
+    // Shared comparator instances, so sorted views can be reused (see getSortedView)
+    private static final Comparator<Expense> ID_ORDER = Comparator.comparingInt(Expense::getId);
+    private static final Comparator<Expense> TITLE_ORDER = Comparator.comparing(Expense::getTitle);
+    private static final Comparator<Expense> MODE_ORDER = Comparator.comparing(Expense::getMode);
+    private static final Comparator<Expense> RECURRING_ORDER = Comparator.comparing(Expense::isRecurring);
+    private static final Comparator<Expense> DATE_ORDER = Comparator.comparingLong(Expense::getSpentAt);
+    
     private final ExpenseDAO expenseDAO;
     
+    // Secondary indexes over the loaded expenses
+    private final SecondaryIndex<Integer, Expense> categoryIndex;
+    private final SecondaryIndex<Character, Expense> modeIndex;
+    private final SecondaryIndex<Boolean, Expense> recurringIndex;
+    
+    // Converts amounts into the reporting currency, which all aggregates below are kept in
+    private volatile ConvertedAmounts reportingAmounts =
+            new ConvertedAmounts(CurrencyRates.identity(Money.DEFAULT_CURRENCY).converterTo(Money.DEFAULT_CURRENCY));
+    
+    // Amount comparators in the reporting currency, shared so sorted views can be reused
+    private final Comparator<Expense> amountAscending = reportingAmountOrder(true);
+    private final Comparator<Expense> amountDescending = reportingAmountOrder(false);
+    
+    // Running aggregates over the loaded expenses, maintained on every change
+    private long totalAmount;
+    private long recurringAmount;
+    private int recurringCount;
+    private final long[] modeTotals;
+    private final int[] modeCounts;
+    private final IntLongMap categoryTotals;
+    
+    // Number of loaded expenses in each currency the reporting converter has no rate for
+    private final Map<String, Integer> unconvertedCounts;
+    
+    // Spending over time, bucketed by day, week, month and year
+    private final SpendingRollup spendingRollup;
+    
+    // Per-category forecasting models over the same history
+    private final SpendingForecaster spendingForecaster;
+    
+    // When set, every change recomputes the aggregates from scratch and checks them
+    private boolean verifyAggregates;
+    
     /**
-     * Constructor that initializes the ExpenseManager.
+     * Constructor that initializes the ExpenseManager for the default user.
      */
     public ExpenseManager() {
-        super();
-        this.expenseDAO = new ExpenseDAO();
+        this(DBConnection.DEFAULT_USER_ID);
     }
     
     /**
-     * Load all expenses from the database into the collection.
+     * Constructor that initializes the ExpenseManager for a specific user.
+     * 
+     * @param userId The ID of the user whose data is managed
+     */
+    public ExpenseManager(int userId) {
+        this(userId, false);
+    }
+    
+    /**
+     * Constructor that initializes the ExpenseManager for a specific user,
+     * optionally for use from several threads.
+     * 
+     * @param userId The ID of the user whose data is managed
+     * @param concurrent true to make the manager safe to share between threads
+     * @see DataManager#isConcurrent()
      */
+    public ExpenseManager(int userId, boolean concurrent) {
+        super(concurrent);
+        this.expenseDAO = new ExpenseDAO(userId);
+        this.categoryIndex = createIndex(Expense::getCategoryId);
+        this.modeIndex = createIndex(Expense::getMode);
+        this.recurringIndex = createIndex(Expense::isRecurring);
+        this.modeTotals = new long[Expense.MODE_CODES.length()];
+        this.modeCounts = new int[Expense.MODE_CODES.length()];
+        this.categoryTotals = new IntLongMap();
+        this.unconvertedCounts = new TreeMap<>();
+        this.spendingRollup = new SpendingRollup();
+        this.spendingForecaster = new SpendingForecaster();
+        this.verifyAggregates = Boolean.getBoolean("expenseflow.verifyAggregates");
+    }
+    
     @Override
-    public void loadData() {
-        clear();
-        List<Expense> expenses = expenseDAO.getAllExpenses();
+    protected void onItemAdded(Expense item) {
+        super.onItemAdded(item);
+        applyToAggregates(item, 1);
+    }
+    
+    @Override
+    protected void onItemRemoved(Expense item) {
+        super.onItemRemoved(item);
+        applyToAggregates(item, -1);
+    }
+    
+    @Override
+    protected void onCleared() {
+        super.onCleared();
+        resetAggregates();
+    }
+    
+    private void resetAggregates() {
+        totalAmount = 0;
+        recurringAmount = 0;
+        recurringCount = 0;
+        Arrays.fill(modeTotals, 0);
+        Arrays.fill(modeCounts, 0);
+        categoryTotals.clear();
+        unconvertedCounts.clear();
+        spendingRollup.clear();
+        spendingForecaster.clear();
+    }
+    
+    @Override
+    public boolean add(Expense item) {
+        boolean added = super.add(item);
+        checkAfterChange();
+        return added;
+    }
+    
+    @Override
+    public boolean update(Expense item) {
+        boolean updated = super.update(item);
+        checkAfterChange();
+        return updated;
+    }
+    
+    @Override
+    public Expense removeById(int id) {
+        Expense removed = super.removeById(id);
+        checkAfterChange();
+        return removed;
+    }
+    
+    @Override
+    public void endBatch() {
+        super.endBatch();
+        checkAfterChange();
+    }
+    
+    /**
+     * Verify the running aggregates if verification is on. Called once a change
+     * is complete, since an update passes through a state where the old version
+     * has been taken out of the aggregates but the new one not yet added.
+     * Changes inside a batch are verified once, when the batch ends, so a
+     * verified reload stays O(n).
+     */
+    private void checkAfterChange() {
+        if (verifyAggregates && !isBatchOpen()) {
+            verifyAggregates();
+        }
+    }
+    
+    /**
+     * Add an expense to the running aggregates, or take it out of them.
+     * The amount is converted into the reporting currency first; an expense
+     * in a currency without a rate is only counted as unconverted.
+     * 
+     * @param expense The expense
+     * @param sign 1 to add the expense, -1 to remove it
+     */
+    private void applyToAggregates(Expense expense, int sign) {
+        if (!canReport(expense)) {
+            unconvertedCounts.merge(expense.getCurrency(), sign, (count, change) -> (count + change == 0) ? null : count + change);
+            return;
+        }
+        long amount = Math.multiplyExact(sign, toReportingAmount(expense));
+        totalAmount = Money.add(totalAmount, amount);
+        if (expense.isRecurring()) {
+            recurringAmount = Money.add(recurringAmount, amount);
+            recurringCount += sign;
+        }
+        int mode = Expense.modeIndex(expense.getMode());
+        if (mode >= 0) {
+            modeTotals[mode] = Money.add(modeTotals[mode], amount);
+            modeCounts[mode] += sign;
+        }
+        categoryTotals.add(expense.getCategoryId(), amount);
+        spendingRollup.apply(expense, amount);
+        spendingForecaster.apply(expense, amount);
+    }
+    
+    /**
+     * Set the exchange rates and the currency that totals, time buckets,
+     * forecasts and groupings are reported in. Expenses keep the currency they
+     * were entered in; each is converted once as it enters the aggregates, so
+     * changing the rates recomputes all aggregates, and re-sorts and
+     * re-filters the views that compare amounts. Expenses in a currency
+     * the rates do not include are left out of the aggregates and reported by
+     * {@link #getUnconvertedCount()}. Listeners see the change
+     * as an empty batch and should re-read any totals they keep.
+     * The default is {@link Money#DEFAULT_CURRENCY} with no other currencies.
+     * 
+     * @param rates The exchange rates
+     * @param currency The ISO 4217 code of the reporting currency
+     * @throws IllegalArgumentException if the rates do not include the currency
+     */
+    public void setReportingCurrency(CurrencyRates rates, String currency) {
+        CurrencyRates.Converter converter = rates.converterTo(currency);
+        beginBatch();
+        try {
+            write(() -> {
+                reportingAmounts = new ConvertedAmounts(converter);
+                resetAggregates();
+                for (Expense expense : dataCollection) {
+                    applyToAggregates(expense, 1);
+                }
+                invalidateDerivedViews();
+            });
+        } finally {
+            endBatch();
+        }
+    }
+    
+    /**
+     * Get the currency totals are reported in.
+     * 
+     * @return The ISO 4217 code of the reporting currency
+     */
+    public String getReportingCurrency() {
+        return reportingAmounts.getConverter().getTarget();
+    }
+    
+    /**
+     * Get the converter into the reporting currency, for totalling expenses
+     * outside the manager the same way the running aggregates do.
+     * 
+     * @return The converter
+     */
+    public CurrencyRates.Converter getReportingConverter() {
+        return reportingAmounts.getConverter();
+    }
+    
+    /**
+     * Check whether an expense's amount can be converted into the reporting currency.
+     * 
+     * @param expense The expense
+     * @return true if the expense's currency has a rate, false otherwise
+     */
+    public boolean canReport(Expense expense) {
+        return reportingAmounts.canConvert(expense);
+    }
+    
+    /**
+     * Convert an expense's amount into the reporting currency.
+     * 
+     * @param expense The expense
+     * @return The amount in minor units of the reporting currency
+     * @throws IllegalArgumentException if the expense's currency has no rate
+     * @see #canReport(Expense)
+     */
+    public long toReportingAmount(Expense expense) {
+        return reportingAmounts.applyAsLong(expense);
+    }
+    
+    /**
+     * Convert a category's monthly limit into the reporting currency, so it
+     * can be compared with the category's totals. A limit in a currency
+     * without a rate cannot be compared and counts as no limit.
+     * 
+     * @param category The category
+     * @return The limit in minor units of the reporting currency, or 0 if there is none
+     */
+    public long toReportingLimit(Category category) {
+        return convertLimit(category, reportingAmounts.getConverter());
+    }
+    
+    /**
+     * Convert a category's monthly limit into a converter's currency. A limit
+     * in a currency without a rate counts as no limit.
+     * 
+     * @param category The category
+     * @param converter Converts into the currency of the result
+     * @return The limit in minor units of the converter's currency, or 0 if there is none
+     */
+    public static long convertLimit(Category category, CurrencyRates.Converter converter) {
+        if (category.getMonthlyLimit() <= 0 || !converter.canConvert(category.getCurrency())) {
+            return 0;
+        }
+        return converter.convert(category.getMonthlyLimit(), category.getCurrency());
+    }
+    
+    /**
+     * Get the number of loaded expenses left out of the aggregates because
+     * their currency has no rate into the reporting currency.
+     * 
+     * @return The number of unconverted expenses
+     */
+    public int getUnconvertedCount() {
+        return read(() -> {
+            int count = 0;
+            for (int currencyCount : unconvertedCounts.values()) {
+                count += currencyCount;
+            }
+            return count;
+        });
+    }
+    
+    /**
+     * Get the currencies of the loaded expenses that have no rate into the
+     * reporting currency.
+     * 
+     * @return The ISO 4217 codes, in alphabetical order
+     */
+    public List<String> getUnconvertedCurrencies() {
+        return read(() -> new ArrayList<>(unconvertedCounts.keySet()));
+    }
+    
+    /**
+     * Select the expenses whose amounts a converter can convert, so that
+     * totals and rankings in the target currency can leave the others out.
+     * 
+     * @param expenses The expenses
+     * @param converter The converter into the target currency
+     * @return The convertible expenses, in their original order
+     */
+    public static List<Expense> selectConvertible(Collection<Expense> expenses, CurrencyRates.Converter converter) {
+        return selectConvertible(expenses, new ConvertedAmounts(converter));
+    }
+    
+    private static List<Expense> selectConvertible(Collection<Expense> expenses, ConvertedAmounts amounts) {
+        List<Expense> convertible = new ArrayList<>(expenses.size());
         for (Expense expense : expenses) {
-            add(expense);
+            if (amounts.canConvert(expense)) {
+                convertible.add(expense);
+            }
+        }
+        return convertible;
+    }
+    
+    /**
+     * Turn verification of the running aggregates on or off. While on, every
+     * change recomputes the aggregates from the collection and compares them
+     * with the running values, which makes each change O(n). A batch of
+     * changes, such as a reload, is verified once when it ends.
+     * Verification can also be turned on with -Dexpenseflow.verifyAggregates=true.
+     * 
+     * @param enabled true to verify after every change, false otherwise
+     */
+    public void setVerifyAggregates(boolean enabled) {
+        this.verifyAggregates = enabled;
+        if (enabled) {
+            verifyAggregates();
+        }
+    }
+    
+    /**
+     * Recompute all aggregates from the collection and check that they agree
+     * exactly with the running values.
+     * 
+     * @throws IllegalStateException if any aggregate disagrees
+     */
+    public void verifyAggregates() {
+        read(() -> {
+            checkAggregates();
+            return null;
+        });
+    }
+    
+    private void checkAggregates() {
+        long expectedTotal = 0;
+        long expectedRecurring = 0;
+        int expectedRecurringCount = 0;
+        long[] expectedModeTotals = new long[modeTotals.length];
+        int[] expectedModeCounts = new int[modeCounts.length];
+        IntLongMap expectedCategoryTotals = new IntLongMap();
+        Map<String, Integer> expectedUnconverted = new TreeMap<>();
+        
+        for (Expense expense : dataCollection) {
+            if (!canReport(expense)) {
+                expectedUnconverted.merge(expense.getCurrency(), 1, Integer::sum);
+                continue;
+            }
+            long amount = toReportingAmount(expense);
+            expectedTotal = Money.add(expectedTotal, amount);
+            if (expense.isRecurring()) {
+                expectedRecurring = Money.add(expectedRecurring, amount);
+                expectedRecurringCount++;
+            }
+            int mode = Expense.modeIndex(expense.getMode());
+            if (mode >= 0) {
+                expectedModeTotals[mode] = Money.add(expectedModeTotals[mode], amount);
+                expectedModeCounts[mode]++;
+            }
+            expectedCategoryTotals.add(expense.getCategoryId(), amount);
+        }
+        
+        checkAggregate("total amount", expectedTotal, totalAmount);
+        checkAggregate("recurring amount", expectedRecurring, recurringAmount);
+        checkAggregate("recurring count", expectedRecurringCount, recurringCount);
+        if (!expectedUnconverted.equals(unconvertedCounts)) {
+            throw new IllegalStateException("Running unconverted counts are " + unconvertedCounts
+                    + " but recomputed counts are " + expectedUnconverted);
+        }
+        for (int i = 0; i < modeTotals.length; i++) {
+            char mode = Expense.MODE_CODES.charAt(i);
+            checkAggregate("total for mode " + mode, expectedModeTotals[i], modeTotals[i]);
+            checkAggregate("count for mode " + mode, expectedModeCounts[i], modeCounts[i]);
+        }
+        for (int i = 0; i < categoryTotals.size(); i++) {
+            int categoryId = categoryTotals.keyAt(i);
+            checkAggregate("total for category " + categoryId,
+                    expectedCategoryTotals.get(categoryId, 0), categoryTotals.valueAt(i));
         }
+        for (int i = 0; i < expectedCategoryTotals.size(); i++) {
+            if (!categoryTotals.containsKey(expectedCategoryTotals.keyAt(i))) {
+                throw new IllegalStateException("Missing running total for category " + expectedCategoryTotals.keyAt(i));
+            }
+        }
+        IntLongMap rolledUpTotals = spendingRollup.getTotalsByCategory();
+        for (int i = 0; i < rolledUpTotals.size(); i++) {
+            int categoryId = rolledUpTotals.keyAt(i);
+            checkAggregate("rolled up total for category " + categoryId,
+                    expectedCategoryTotals.get(categoryId, 0), rolledUpTotals.valueAt(i));
+        }
+        for (int i = 0; i < expectedCategoryTotals.size(); i++) {
+            int categoryId = expectedCategoryTotals.keyAt(i);
+            if (expectedCategoryTotals.valueAt(i) != 0 && !rolledUpTotals.containsKey(categoryId)) {
+                throw new IllegalStateException("Missing rolled up total for category " + categoryId);
+            }
+        }
+    }
+    
+    private static void checkAggregate(String name, long expected, long actual) {
+        if (expected != actual) {
+            throw new IllegalStateException("Running " + name + " is " + actual + " but recomputed value is " + expected);
+        }
+    }
+    
+    /**
+     * Load all expenses from the database into the collection.
+     */
+    @Override
+    public void loadData() {
+        replaceAll(expenseDAO.getAllExpenses());
     }
     
     /**
      * Load only recurring expenses from the database into the collection.
      */
     public void loadRecurringExpenses() {
-        clear();
-        List<Expense> expenses = expenseDAO.getRecurringExpenses();
-        for (Expense expense : expenses) {
-            add(expense);
-        }
+        replaceAll(expenseDAO.getRecurringExpenses());
     }
     
     /**
@@ -53,22 +474,14 @@ public class ExpenseManager extends DataManager<Expense> {
      * @param categoryId The ID of the category to load expenses for
      */
     public void loadExpensesByCategory(int categoryId) {
-        clear();
-        List<Expense> expenses = expenseDAO.getExpensesByCategory(categoryId);
-        for (Expense expense : expenses) {
-            add(expense);
-        }
+        replaceAll(expenseDAO.getExpensesByCategory(categoryId));
     }
     
     /**
      * Load only non-recurring expenses from the database into the collection.
      */
     public void loadNonRecurringExpenses() {
-        clear();
-        List<Expense> expenses = expenseDAO.getNonRecurringExpenses();
-        for (Expense expense : expenses) {
-            add(expense);
-        }
+        replaceAll(expenseDAO.getNonRecurringExpenses());
     }
     
     /**
@@ -77,46 +490,584 @@ public class ExpenseManager extends DataManager<Expense> {
      * @param mode The payment mode ('C'=Cash, 'D'=Digital, 'B'=Bank Transfer)
      */
     public void loadExpensesByPaymentMode(char mode) {
-        clear();
-        List<Expense> expenses = expenseDAO.getExpensesByPaymentMode(mode);
+        replaceAll(expenseDAO.getExpensesByPaymentMode(mode));
+    }
+    
+    /**
+     * Stream all expenses from the database into a new columnar store,
+     * without creating Expense objects or touching the collection. Amounts
+     * are kept in their own currencies.
+     * 
+     * @return A columnar store holding all of the user's expenses
+     * @see ColumnarExpenseStore#convertTo(CurrencyRates.Converter)
+     */
+    public ColumnarExpenseStore loadColumnarStore() {
+        return ColumnarExpenseStore.load(expenseDAO);
+    }
+    
+    /**
+     * Copy the loaded expenses into a new columnar store, with amounts in the
+     * reporting currency. Expenses in a currency without a rate are left out.
+     * 
+     * @return A columnar store holding the loaded expenses
+     */
+    public ColumnarExpenseStore toColumnarStore() {
+        ConvertedAmounts amounts = reportingAmounts;
+        return ColumnarExpenseStore.fromExpenses(selectConvertible(getSnapshot(), amounts)).convertTo(amounts.getConverter());
+    }
+    
+    /**
+     * Group the loaded expenses and compute count, sum, minimum, maximum and
+     * average of each group in a single pass, in the reporting currency.
+     * Expenses in a currency without a rate are left out.
+     * 
+     * @param categoryLookup Finds a category by ID, used to join the priority
+     * @param dimensions The dimensions to group by
+     * @return The groups, in order of first appearance
+     */
+    public List<GroupByEngine.Group> groupBy(IntFunction<Category> categoryLookup, GroupByEngine.Dimension... dimensions) {
+        ConvertedAmounts amounts = reportingAmounts;
+        return new GroupByEngine(categoryLookup, amounts).groupBy(selectConvertible(getSnapshot(), amounts), dimensions);
+    }
+    
+    /**
+     * Compute every grouping of the loaded expenses at once, so that
+     * drill-downs are lookups instead of scans. Expenses in a currency
+     * without a rate are left out.
+     * 
+     * @param categoryLookup Finds a category by ID, used to join the priority
+     * @return The cube of all groupings
+     */
+    public GroupByEngine.Cube cube(IntFunction<Category> categoryLookup) {
+        ConvertedAmounts amounts = reportingAmounts;
+        return new GroupByEngine(categoryLookup, amounts).cube(selectConvertible(getSnapshot(), amounts));
+    }
+    
+    /**
+     * Get the loaded expenses in a category, without querying the database.
+     * 
+     * @param categoryId The ID of the category
+     * @return A new list of the matching expenses
+     */
+    public List<Expense> getExpensesByCategory(int categoryId) {
+        return read(() -> categoryIndex.get(categoryId));
+    }
+    
+    /**
+     * Get the loaded expenses with a payment mode, without querying the database.
+     * 
+     * @param mode The payment mode ('C'=Cash, 'D'=Digital, 'B'=Bank Transfer)
+     * @return A new list of the matching expenses
+     */
+    public List<Expense> getExpensesByPaymentMode(char mode) {
+        return read(() -> modeIndex.get(mode));
+    }
+    
+    /**
+     * Get the loaded recurring or non-recurring expenses, without querying the database.
+     * 
+     * @param recurring true for recurring expenses, false for one-time expenses
+     * @return A new list of the matching expenses
+     */
+    public List<Expense> getExpensesByRecurring(boolean recurring) {
+        return read(() -> recurringIndex.get(recurring));
+    }
+    
+    /**
+     * Check whether any loaded expense belongs to a category.
+     * 
+     * @param categoryId The ID of the category
+     * @return true if at least one expense is in the category, false otherwise
+     */
+    public boolean hasExpensesInCategory(int categoryId) {
+        return read(() -> categoryIndex.count(categoryId) > 0);
+    }
+    
+    /**
+     * Get the total amount spent across all expenses, from the running aggregates.
+     * 
+     * @return The total amount in minor units of the reporting currency
+     */
+    public long calculateTotalAmount() {
+        return readOptimistic(() -> totalAmount);
+    }
+    
+    /**
+     * Get the total amount of the recurring expenses.
+     * 
+     * @return The total amount of recurring expenses in minor units
+     */
+    public long getRecurringTotal() {
+        return readOptimistic(() -> recurringAmount);
+    }
+    
+    /**
+     * Get the total amount of the one-time expenses.
+     * 
+     * @return The total amount of one-time expenses in minor units
+     */
+    public long getOneTimeTotal() {
+        return readOptimistic(() -> Money.subtract(totalAmount, recurringAmount));
+    }
+    
+    /**
+     * Get the number of recurring expenses.
+     * 
+     * @return The number of recurring expenses
+     */
+    public int getRecurringCount() {
+        return readOptimistic(() -> recurringCount);
+    }
+    
+    /**
+     * Get the total amount spent with a payment mode.
+     * 
+     * @param mode The payment mode ('C'=Cash, 'D'=Digital, 'B'=Bank Transfer)
+     * @return The total amount in minor units, or 0 for an unknown mode
+     */
+    public long getModeTotal(char mode) {
+        int index = Expense.modeIndex(mode);
+        return index < 0 ? 0 : readOptimistic(() -> modeTotals[index]);
+    }
+    
+    /**
+     * Get the number of expenses with a payment mode.
+     * 
+     * @param mode The payment mode ('C'=Cash, 'D'=Digital, 'B'=Bank Transfer)
+     * @return The number of expenses, or 0 for an unknown mode
+     */
+    public int getModeCount(char mode) {
+        int index = Expense.modeIndex(mode);
+        return index < 0 ? 0 : readOptimistic(() -> modeCounts[index]);
+    }
+    
+    /**
+     * Get the total amount spent in a category.
+     * 
+     * @param categoryId The ID of the category
+     * @return The total amount in minor units
+     */
+    public long getCategoryTotal(int categoryId) {
+        return read(() -> categoryTotals.get(categoryId, 0));
+    }
+    
+    /**
+     * Get the total amount spent between two dates, read from the time buckets.
+     * 
+     * @param from The first day of the range
+     * @param to The last day of the range, inclusive
+     * @return The total amount in minor units
+     */
+    public long getTotalBetween(LocalDate from, LocalDate to) {
+        return read(() -> spendingRollup.getTotal(from, to));
+    }
+    
+    /**
+     * Get the amount spent in a category between two dates.
+     * 
+     * @param categoryId The ID of the category
+     * @param from The first day of the range
+     * @param to The last day of the range, inclusive
+     * @return The total amount in minor units
+     */
+    public long getCategoryTotalBetween(int categoryId, LocalDate from, LocalDate to) {
+        return read(() -> spendingRollup.getCategoryTotal(categoryId, from, to));
+    }
+    
+    /**
+     * Get the amount spent per category between two dates, such as the last
+     * 90 days, read from the time buckets rather than the expenses.
+     * 
+     * @param from The first day of the range
+     * @param to The last day of the range, inclusive
+     * @return A map of category IDs to totals in minor units
+     */
+    public IntLongMap getTotalsByCategoryBetween(LocalDate from, LocalDate to) {
+        return read(() -> spendingRollup.getTotalsByCategory(from, to));
+    }
+    
+    /**
+     * Get the amount spent per payment mode between two dates.
+     * 
+     * @param from The first day of the range
+     * @param to The last day of the range, inclusive
+     * @return The totals in minor units, indexed like {@link Expense#MODE_CODES}
+     */
+    public long[] getTotalsByModeBetween(LocalDate from, LocalDate to) {
+        return read(() -> spendingRollup.getTotalsByMode(from, to));
+    }
+    
+    /**
+     * Get the amount spent per day, week, month or year.
+     * 
+     * @param granularity The bucket size
+     * @param from A date in the first bucket
+     * @param to A date in the last bucket
+     * @return The total of each bucket in minor units, oldest first
+     */
+    public long[] getSpendingSeries(SpendingRollup.Granularity granularity, LocalDate from, LocalDate to) {
+        return read(() -> spendingRollup.getSeries(granularity, from, to));
+    }
+    
+    /**
+     * Get the amount spent in a category per day, week, month or year.
+     * 
+     * @param categoryId The ID of the category
+     * @param granularity The bucket size
+     * @param from A date in the first bucket
+     * @param to A date in the last bucket
+     * @return The total of each bucket in minor units, oldest first
+     */
+    public long[] getCategorySpendingSeries(int categoryId, SpendingRollup.Granularity granularity, LocalDate from, LocalDate to) {
+        return read(() -> spendingRollup.getCategorySeries(categoryId, granularity, from, to));
+    }
+    
+    /**
+     * Forecast a category's spending for the whole of the current month: the
+     * amount spent so far plus the model's forecast for the remaining days.
+     * 
+     * @param categoryId The ID of the category
+     * @param model The forecasting model
+     * @return The projected month-end total in minor units
+     */
+    public long getMonthEndForecast(int categoryId, SpendingForecaster.Model model) {
+        LocalDate today = LocalDate.now();
+        int remainingDays = today.lengthOfMonth() - today.getDayOfMonth();
+        return read(() -> Money.add(
+                spendingRollup.getCategoryTotal(categoryId, today.withDayOfMonth(1), today),
+                spendingForecaster.forecast(categoryId, model, today, remainingDays)));
+    }
+    
+    /**
+     * Forecast every category's spending for the whole of the current month.
+     * 
+     * @param model The forecasting model
+     * @return A map of category IDs to projected month-end totals in minor units
+     * @see #getMonthEndForecast(int, SpendingForecaster.Model)
+     */
+    public IntLongMap getMonthEndForecasts(SpendingForecaster.Model model) {
+        LocalDate today = LocalDate.now();
+        int remainingDays = today.lengthOfMonth() - today.getDayOfMonth();
+        return read(() -> {
+            IntLongMap forecasts = spendingForecaster.forecastAll(model, today, remainingDays);
+            IntLongMap spent = spendingRollup.getTotalsByCategory(today.withDayOfMonth(1), today);
+            for (int i = 0; i < spent.size(); i++) {
+                forecasts.add(spent.keyAt(i), spent.valueAt(i));
+            }
+            return forecasts;
+        });
+    }
+    
+    /**
+     * Calculate total amount spent across the given expenses, which must all
+     * be in the same currency. Expenses in several currencies are totalled
+     * with {@link #calculateTotalAmount(Collection, CurrencyRates.Converter)}.
+     * 
+     * @param expenses The expenses to total
+     * @return The total amount in minor units of the expenses' currency
+     * @throws IllegalArgumentException if the expenses are in more than one currency
+     * @throws ArithmeticException if the total overflows
+     */
+    public static long calculateTotalAmount(Collection<Expense> expenses) {
+        long total = 0;
+        String currency = null;
         for (Expense expense : expenses) {
-            add(expense);
+            currency = checkCurrency(currency, expense);
+            total = Money.add(total, expense.getAmount());
         }
+        return total;
     }
     
     /**
-     * Calculate total amount spent across all expenses.
+     * Calculate total amount spent across the given expenses in one currency.
+     * Each amount is converted before it is added, as the running aggregates
+     * are, so totals of filtered and unfiltered expenses agree exactly.
      * 
-     * @return The total amount
+     * @param expenses The expenses to total
+     * @param converter Converts into the currency of the result
+     * @return The total amount in minor units of the converter's currency
+     * @throws IllegalArgumentException if an expense's currency has no rate
+     * @throws ArithmeticException if the total overflows
+     * @see #selectConvertible(Collection, CurrencyRates.Converter)
      */
-    public float calculateTotalAmount() {
-        float total = 0;
-        for (Expense expense : dataCollection) {
-            total += expense.getAmount();
+    public static long calculateTotalAmount(Collection<Expense> expenses, CurrencyRates.Converter converter) {
+        ConvertedAmounts amounts = new ConvertedAmounts(converter);
+        long total = 0;
+        for (Expense expense : expenses) {
+            total = Money.add(total, amounts.applyAsLong(expense));
         }
         return total;
     }
     
     /**
-     * Calculate the total spending by payment mode.
+     * Check that an expense is in the same currency as those before it.
+     * 
+     * @param currency The currency of the expenses so far, or null for the first
+     * @param expense The next expense
+     * @return The currency of the expenses
+     * @throws IllegalArgumentException if the expense is in a different currency
+     */
+    private static String checkCurrency(String currency, Expense expense) {
+        if (currency != null && !currency.equals(expense.getCurrency())) {
+            throw new IllegalArgumentException("Expenses are in more than one currency: "
+                    + currency + " and " + expense.getCurrency() + "; total them with a converter");
+        }
+        return expense.getCurrency();
+    }
+    
+    /**
+     * Get the total spending by payment mode, from the running aggregates.
+     * 
+     * @return A new array of totals in minor units, indexed like {@link Expense#MODE_CODES}
+     */
+    public long[] calculateTotalByMode() {
+        return read(modeTotals::clone);
+    }
+    
+    /**
+     * Calculate the total spending by payment mode across the given expenses,
+     * which must all be in the same currency. Expenses with an unknown mode
+     * are left out.
+     * 
+     * @param expenses The expenses to total
+     * @return An array of totals in minor units, indexed like {@link Expense#MODE_CODES}
+     * @throws IllegalArgumentException if the expenses are in more than one currency
+     * @throws ArithmeticException if a total overflows
+     */
+    public static long[] calculateTotalByMode(Collection<Expense> expenses) {
+        long[] totals = new long[Expense.MODE_CODES.length()];
+        String currency = null;
+        for (Expense expense : expenses) {
+            currency = checkCurrency(currency, expense);
+            int mode = Expense.modeIndex(expense.getMode());
+            if (mode >= 0) {
+                totals[mode] = Money.add(totals[mode], expense.getAmount());
+            }
+        }
+        return totals;
+    }
+    
+    /**
+     * Calculate the total spending by payment mode across the given expenses
+     * in one currency. Each amount is converted before it is added, as the
+     * running aggregates are.
+     * 
+     * @param expenses The expenses to total
+     * @param converter Converts into the currency of the result
+     * @return An array of totals in minor units, indexed like {@link Expense#MODE_CODES}
+     * @throws IllegalArgumentException if an expense's currency has no rate
+     * @throws ArithmeticException if a total overflows
+     */
+    public static long[] calculateTotalByMode(Collection<Expense> expenses, CurrencyRates.Converter converter) {
+        ConvertedAmounts amounts = new ConvertedAmounts(converter);
+        long[] totals = new long[Expense.MODE_CODES.length()];
+        for (Expense expense : expenses) {
+            int mode = Expense.modeIndex(expense.getMode());
+            if (mode >= 0) {
+                totals[mode] = Money.add(totals[mode], amounts.applyAsLong(expense));
+            }
+        }
+        return totals;
+    }
+    
+    /**
+     * Get the total spending by category, from the running aggregates.
      * 
-     * @return A map of payment modes to their total amounts
+     * @return A new map of category IDs to their total amounts in minor units
      */
-    public Map<Character, Float> calculateTotalByMode() {
-        Map<Character, Float> totals = new HashMap<>();
+    public IntLongMap calculateTotalByCategory() {
+        return read(() -> {
+            IntLongMap totals = new IntLongMap(categoryTotals.size());
+            for (int i = 0; i < categoryTotals.size(); i++) {
+                totals.put(categoryTotals.keyAt(i), categoryTotals.valueAt(i));
+            }
+            return totals;
+        });
+    }
+    
+    /**
+     * Calculate the total spending by category across the given expenses,
+     * which must all be in the same currency.
+     * 
+     * @param expenses The expenses to total
+     * @return A map of category IDs to their total amounts in minor units, in order of first appearance
+     * @throws IllegalArgumentException if the expenses are in more than one currency
+     * @throws ArithmeticException if a total overflows
+     */
+    public static IntLongMap calculateTotalByCategory(Collection<Expense> expenses) {
+        IntLongMap totals = new IntLongMap();
+        String currency = null;
+        for (Expense expense : expenses) {
+            currency = checkCurrency(currency, expense);
+            totals.add(expense.getCategoryId(), expense.getAmount());
+        }
+        return totals;
+    }
+    
+    /**
+     * Calculate the total spending by category across the given expenses in
+     * one currency. Each amount is converted before it is added, as the
+     * running aggregates are.
+     * 
+     * @param expenses The expenses to total
+     * @param converter Converts into the currency of the result
+     * @return A map of category IDs to their total amounts in minor units of the converter's currency
+     * @throws IllegalArgumentException if an expense's currency has no rate
+     * @throws ArithmeticException if a total overflows
+     */
+    public static IntLongMap calculateTotalByCategory(Collection<Expense> expenses, CurrencyRates.Converter converter) {
+        ConvertedAmounts amounts = new ConvertedAmounts(converter);
+        IntLongMap totals = new IntLongMap();
+        for (Expense expense : expenses) {
+            totals.add(expense.getCategoryId(), amounts.applyAsLong(expense));
+        }
+        return totals;
+    }
+    
+    /**
+     * Calculate total amount spent across the given expenses on multiple threads.
+     * Inputs smaller than {@link DataManager#PARALLEL_THRESHOLD} are totalled
+     * sequentially. Amounts are exact integers, so the result is the same as
+     * {@link #calculateTotalAmount(Collection)}, and like it the expenses must
+     * all be in the same currency.
+     * 
+     * @param expenses The expenses to total
+     * @return The total amount in minor units of the expenses' currency
+     * @throws IllegalArgumentException if the expenses are in more than one currency
+     * @throws ArithmeticException if the total overflows
+     */
+    public static long parallelCalculateTotalAmount(Collection<Expense> expenses) {
+        if (expenses.size() < PARALLEL_THRESHOLD) {
+            return calculateTotalAmount(expenses);
+        }
+        Expense[] items = expenses.toArray(new Expense[0]);
+        return ForkJoinPool.commonPool().invoke(new TotalsTask(items, items[0].getCurrency(), 0, items.length))[0];
+    }
+    
+    /**
+     * Calculate the total spending by payment mode across the given expenses on
+     * multiple threads. The result is the same as {@link #calculateTotalByMode(Collection)},
+     * and like it the expenses must all be in the same currency.
+     * 
+     * @param expenses The expenses to total
+     * @return An array of totals in minor units, indexed like {@link Expense#MODE_CODES}
+     * @throws IllegalArgumentException if the expenses are in more than one currency
+     * @throws ArithmeticException if a total overflows
+     */
+    public static long[] parallelCalculateTotalByMode(Collection<Expense> expenses) {
+        if (expenses.size() < PARALLEL_THRESHOLD) {
+            return calculateTotalByMode(expenses);
+        }
+        Expense[] items = expenses.toArray(new Expense[0]);
+        long[] totals = ForkJoinPool.commonPool().invoke(new TotalsTask(items, items[0].getCurrency(), 0, items.length));
+        return Arrays.copyOfRange(totals, 1, totals.length);
+    }
+    
+    /**
+     * Calculate the total spending by category across the given expenses on
+     * multiple threads. The result, including the order of categories, is the
+     * same as {@link #calculateTotalByCategory(Collection)}, and like it the
+     * expenses must all be in the same currency.
+     * 
+     * @param expenses The expenses to total
+     * @return A map of category IDs to their total amounts in minor units
+     * @throws IllegalArgumentException if the expenses are in more than one currency
+     * @throws ArithmeticException if a total overflows
+     */
+    public static IntLongMap parallelCalculateTotalByCategory(Collection<Expense> expenses) {
+        if (expenses.size() < PARALLEL_THRESHOLD) {
+            return calculateTotalByCategory(expenses);
+        }
+        Expense[] items = expenses.toArray(new Expense[0]);
+        return ForkJoinPool.commonPool().invoke(new CategoryTotalsTask(items, items[0].getCurrency(), 0, items.length));
+    }
+    
+    /**
+     * Fork/join task that totals a range of expenses in one currency. The
+     * result holds the overall total followed by the per-mode totals.
+     */
+    @SuppressWarnings("serial")
+    private static class TotalsTask extends RecursiveTask<long[]> {
+        private final Expense[] items;
+        private final String currency;
+        private final int from;
+        private final int to;
         
-        // Initialize the map with all modes
-        totals.put('C', 0f); // Cash
-        totals.put('D', 0f); // Digital
-        totals.put('B', 0f); // Bank Transfer
+        TotalsTask(Expense[] items, String currency, int from, int to) {
+            this.items = items;
+            this.currency = currency;
+            this.from = from;
+            this.to = to;
+        }
         
-        for (Expense expense : dataCollection) {
-            char mode = expense.getMode();
-            float currentTotal = totals.getOrDefault(mode, 0f);
-            totals.put(mode, currentTotal + expense.getAmount());
+        @Override
+        protected long[] compute() {
+            if (to - from <= PARALLEL_THRESHOLD) {
+                long[] totals = new long[1 + Expense.MODE_CODES.length()];
+                for (int i = from; i < to; i++) {
+                    checkCurrency(currency, items[i]);
+                    long amount = items[i].getAmount();
+                    totals[0] = Money.add(totals[0], amount);
+                    int mode = Expense.modeIndex(items[i].getMode());
+                    if (mode >= 0) {
+                        totals[1 + mode] = Money.add(totals[1 + mode], amount);
+                    }
+                }
+                return totals;
+            }
+            
+            int middle = (from + to) >>> 1;
+            TotalsTask left = new TotalsTask(items, currency, from, middle);
+            left.fork();
+            long[] totals = new TotalsTask(items, currency, middle, to).compute();
+            long[] leftTotals = left.join();
+            for (int i = 0; i < totals.length; i++) {
+                totals[i] = Money.add(totals[i], leftTotals[i]);
+            }
+            return totals;
         }
+    }
+    
+    /**
+     * Fork/join task that totals a range of expenses in one currency by category.
+     */
+    @SuppressWarnings("serial")
+    private static class CategoryTotalsTask extends RecursiveTask<IntLongMap> {
+        private final Expense[] items;
+        private final String currency;
+        private final int from;
+        private final int to;
         
-        return totals;
+        CategoryTotalsTask(Expense[] items, String currency, int from, int to) {
+            this.items = items;
+            this.currency = currency;
+            this.from = from;
+            this.to = to;
+        }
+        
+        @Override
+        protected IntLongMap compute() {
+            if (to - from <= PARALLEL_THRESHOLD) {
+                IntLongMap totals = new IntLongMap();
+                for (int i = from; i < to; i++) {
+                    checkCurrency(currency, items[i]);
+                    totals.add(items[i].getCategoryId(), items[i].getAmount());
+                }
+                return totals;
+            }
+            
+            int middle = (from + to) >>> 1;
+            CategoryTotalsTask left = new CategoryTotalsTask(items, currency, from, middle);
+            left.fork();
+            IntLongMap rightTotals = new CategoryTotalsTask(items, currency, middle, to).compute();
+            
+            // Merge into the left half so categories keep their order of first appearance
+            IntLongMap totals = left.join();
+            for (int i = 0; i < rightTotals.size(); i++) {
+                totals.add(rightTotals.keyAt(i), rightTotals.valueAt(i));
+            }
+            return totals;
+        }
     }
     
     /**
@@ -134,6 +1085,83 @@ public class ExpenseManager extends DataManager<Expense> {
         return false;
     }
     
+    /**
+     * Save several new expenses to the database in batched inserts and add
+     * them to the collection. Nothing is saved if any insert fails.
+     * 
+     * @param expenses The expenses to save
+     * @return true if all expenses were saved, false otherwise
+     */
+    public boolean saveExpenses(List<Expense> expenses) {
+        if (!expenseDAO.insertExpenses(expenses)) {
+            return false;
+        }
+        for (Expense expense : expenses) {
+            add(expense);
+        }
+        return true;
+    }
+    
+    /**
+     * Save new expenses that may already be stored, such as the occurrences
+     * of recurring expenses, and add the ones saved to the collection. They
+     * are inserted in one batch when possible; if the batch fails, each is
+     * inserted on its own and those that duplicate a stored row are skipped.
+     * 
+     * @param expenses The expenses to save
+     * @return The number of expenses saved, or -1 if any insert failed for another reason
+     */
+    public int saveExpensesIfAbsent(List<Expense> expenses) {
+        return saveExpensesIfAbsent(expenses, Runnable::run);
+    }
+    
+    /**
+     * Save new expenses that may already be stored, writing the database on
+     * the calling thread and adding the ones saved to the collection on an
+     * executor, such as SwingUtilities::invokeLater, so a background thread
+     * can do the inserts for a collection owned by the event thread.
+     * 
+     * @param expenses The expenses to save
+     * @param executor The executor the collection is updated on
+     * @return The number of expenses saved, or -1 if any insert failed for another reason
+     * @see #saveExpensesIfAbsent(List)
+     */
+    public int saveExpensesIfAbsent(List<Expense> expenses, Executor executor) {
+        List<Expense> saved = new ArrayList<>(expenses.size());
+        boolean failed = false;
+        if (expenseDAO.insertExpenses(expenses)) {
+            saved.addAll(expenses);
+        } else {
+            for (Expense expense : expenses) {
+                int id = expenseDAO.insertExpenseIfAbsent(expense);
+                if (id > 0) {
+                    saved.add(expense);
+                } else if (id < 0) {
+                    failed = true;
+                }
+            }
+        }
+        if (!saved.isEmpty()) {
+            executor.execute(() -> {
+                for (Expense expense : saved) {
+                    add(expense);
+                }
+            });
+        }
+        return failed ? -1 : saved.size();
+    }
+    
+    /**
+     * Get the date of the latest stored occurrence of each recurring expense,
+     * read from the database so it also covers expenses the current loader
+     * left out.
+     * 
+     * @return A map of template IDs to epoch milliseconds, or null if the database could not be read
+     */
+    public IntLongMap getLatestStoredOccurrences() {
+        return expenseDAO.getLatestOccurrences();
+    }
+    
     /**
      * Update an existing expense in the database and the collection.
      * 
@@ -142,14 +1170,7 @@ public class ExpenseManager extends DataManager<Expense> {
      */
     public boolean updateExpense(Expense expense) {
         boolean success = expenseDAO.updateExpense(expense);
-        if (success) {
-            // Remove and re-add to update the collection
-            for (Expense e : dataCollection) {
-                if (e.getId() == expense.getId()) {
-                    remove(e);
-                    break;
-                }
-            }
+        if (success && !update(expense)) {
             add(expense);
         }
         return success;
@@ -169,25 +1190,187 @@ public class ExpenseManager extends DataManager<Expense> {
         return success;
     }
     
+    /**
+     * Get the largest expenses, largest first, comparing amounts in the
+     * reporting currency. Expenses in a currency without a rate are left out.
+     * 
+     * @param count The maximum number of expenses to return
+     * @return A list of at most count expenses
+     */
+    public List<Expense> getLargestExpenses(int count) {
+        ConvertedAmounts amounts = reportingAmounts;
+        return topK(selectConvertible(getSnapshot(), amounts), Comparator.comparingLong(amounts), count);
+    }
+    
+    /**
+     * Get the smallest expenses, smallest first, comparing amounts in the
+     * reporting currency. Expenses in a currency without a rate are left out.
+     * 
+     * @param count The maximum number of expenses to return
+     * @return A list of at most count expenses
+     */
+    public List<Expense> getSmallestExpenses(int count) {
+        ConvertedAmounts amounts = reportingAmounts;
+        return topK(selectConvertible(getSnapshot(), amounts), Comparator.comparingLong(amounts).reversed(), count);
+    }
+    
+    /**
+     * Get the largest of the given expenses, largest first. The expenses must
+     * all be in the same currency; expenses in several currencies are ranked
+     * with {@link #getLargestExpenses(Collection, CurrencyRates.Converter, int)}.
+     * 
+     * @param expenses The expenses to rank
+     * @param count The maximum number of expenses to return
+     * @return A list of at most count expenses
+     * @throws IllegalArgumentException if the expenses are in more than one currency
+     */
+    public static List<Expense> getLargestExpenses(Collection<Expense> expenses, int count) {
+        String currency = null;
+        for (Expense expense : expenses) {
+            currency = checkCurrency(currency, expense);
+        }
+        return topK(expenses, Comparator.comparingLong(Expense::getAmount), count);
+    }
+    
+    /**
+     * Get the largest of the given expenses, largest first, comparing amounts
+     * converted into one currency. Expenses the converter cannot convert are
+     * left out.
+     * 
+     * @param expenses The expenses to rank
+     * @param converter Converts into the currency amounts are compared in
+     * @param count The maximum number of expenses to return
+     * @return A list of at most count expenses
+     */
+    public static List<Expense> getLargestExpenses(Collection<Expense> expenses, CurrencyRates.Converter converter, int count) {
+        ConvertedAmounts amounts = new ConvertedAmounts(converter);
+        return topK(selectConvertible(expenses, amounts), Comparator.comparingLong(amounts), count);
+    }
+    
+    /**
+     * Get a filter that accepts expenses paid with the given mode.
+     * 
+     * @param mode The payment mode ('C', 'D', or 'B')
+     * @return A filter for use with {@link #select(Filter)}
+     */
+    public static Filter<Expense> modeIs(char mode) {
+        return Filter.where("mode=" + mode, expense -> expense.getMode() == mode);
+    }
+    
+    /**
+     * Get a filter that accepts expenses in the given category.
+     * 
+     * @param categoryId The category ID
+     * @return A filter for use with {@link #select(Filter)}
+     */
+    public static Filter<Expense> categoryIs(int categoryId) {
+        return Filter.where("category=" + categoryId, expense -> expense.getCategoryId() == categoryId);
+    }
+    
+    /**
+     * Get a filter that accepts recurring or one-time expenses.
+     * 
+     * @param recurring true for recurring expenses, false for one-time expenses
+     * @return A filter for use with {@link #select(Filter)}
+     */
+    public static Filter<Expense> recurringIs(boolean recurring) {
+        return Filter.where("recurring=" + recurring, expense -> expense.isRecurring() == recurring);
+    }
+    
+    /**
+     * Get a filter that accepts expenses of at least the given amount in the
+     * reporting currency. Expenses in a currency without a rate are rejected.
+     * The filter follows later changes of the reporting currency.
+     * 
+     * @param minimum The smallest amount accepted, in minor units of the reporting currency
+     * @return A filter for use with {@link #select(Filter)} on this manager
+     */
+    public Filter<Expense> amountAtLeast(long minimum) {
+        return Filter.where("amount>=" + minimum, expense -> isReportingAmountWithin(expense, minimum, Long.MAX_VALUE));
+    }
+    
+    /**
+     * Get a filter that accepts expenses of at most the given amount in the
+     * reporting currency. Expenses in a currency without a rate are rejected.
+     * The filter follows later changes of the reporting currency.
+     * 
+     * @param maximum The largest amount accepted, in minor units of the reporting currency
+     * @return A filter for use with {@link #select(Filter)} on this manager
+     */
+    public Filter<Expense> amountAtMost(long maximum) {
+        return Filter.where("amount<=" + maximum, expense -> isReportingAmountWithin(expense, Long.MIN_VALUE, maximum));
+    }
+    
+    private boolean isReportingAmountWithin(Expense expense, long minimum, long maximum) {
+        ConvertedAmounts amounts = reportingAmounts;
+        if (!amounts.canConvert(expense)) {
+            return false;
+        }
+        long amount = amounts.applyAsLong(expense);
+        return amount >= minimum && amount <= maximum;
+    }
+    
+    /**
+     * Get a filter that accepts expenses whose title contains the given text, ignoring case.
+     * 
+     * @param text The text to look for
+     * @return A filter for use with {@link #select(Filter)}
+     */
+    public static Filter<Expense> titleContains(String text) {
+        String needle = text.toLowerCase();
+        return Filter.where("title~" + needle, expense -> expense.getTitle().toLowerCase().contains(needle));
+    }
+    
+    /**
+     * Get a comparator for sorting expenses by ID.
+     * 
+     * @return A comparator for sorting by ID
+     */
+    public static Comparator<Expense> getIdComparator() {
+        return ID_ORDER;
+    }
+    
     /**
      * Get a comparator for sorting expenses by title.
      * 
      * @return A comparator for sorting by title
      */
     public static Comparator<Expense> getTitleComparator() {
-        return Comparator.comparing(Expense::getTitle);
+        return TITLE_ORDER;
     }
     
     /**
-     * Get a comparator for sorting expenses by amount.
+     * Get a comparator for sorting expenses by amount in the reporting
+     * currency. Expenses in a currency without a rate sort after all others
+     * in either order, by currency and then amount. The comparator follows
+     * later changes of the reporting currency.
      * 
      * @param ascending true for ascending order, false for descending
      * @return A comparator for sorting by amount
      */
-    public static Comparator<Expense> getAmountComparator(boolean ascending) {
-        return ascending 
-            ? Comparator.comparing(Expense::getAmount)
-            : Comparator.comparing(Expense::getAmount).reversed();
+    public Comparator<Expense> getAmountComparator(boolean ascending) {
+        return ascending ? amountAscending : amountDescending;
+    }
+    
+    private Comparator<Expense> reportingAmountOrder(boolean ascending) {
+        return (first, second) -> {
+            ConvertedAmounts amounts = reportingAmounts;
+            boolean firstConverts = amounts.canConvert(first);
+            boolean secondConverts = amounts.canConvert(second);
+            if (firstConverts != secondConverts) {
+                return firstConverts ? -1 : 1;
+            }
+            int order;
+            if (firstConverts) {
+                order = Long.compare(amounts.applyAsLong(first), amounts.applyAsLong(second));
+            } else {
+                order = first.getCurrency().compareTo(second.getCurrency());
+                if (order == 0) {
+                    order = Long.compare(first.getAmount(), second.getAmount());
+                }
+            }
+            return ascending ? order : -order;
+        };
     }
     
     /**
@@ -196,7 +1379,7 @@ public class ExpenseManager extends DataManager<Expense> {
      * @return A comparator for sorting by mode
      */
     public static Comparator<Expense> getModeComparator() {
-        return Comparator.comparing(Expense::getMode);
+        return MODE_ORDER;
     }
     
     /**
@@ -205,6 +1388,15 @@ public class ExpenseManager extends DataManager<Expense> {
      * @return A comparator for sorting by recurring status
      */
     public static Comparator<Expense> getRecurringComparator() {
-        return Comparator.comparing(Expense::isRecurring);
+        return RECURRING_ORDER;
+    }
+    
+    /**
+     * Get a comparator for sorting expenses by when they were incurred, oldest first.
+     * 
+     * @return A comparator for sorting by date
+     */
+    public static Comparator<Expense> getDateComparator() {
+        return DATE_ORDER;
     }
 } 
\ No newline at end of file
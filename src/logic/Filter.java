@@ -0,0 +1,206 @@
+package logic;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.function.Predicate;
+
+/**
+ * A filter over the items of a DataManager: a tree of field predicates
+ * combined with AND, OR and NOT. Filters are immutable and are evaluated with
+ * {@link DataManager#select(Filter)}, which turns each predicate into a cached
+ * bitmap over the collection.
+ * <p>
+ * Every field predicate has a key that names what it tests, such as
+ * "mode=C". Two predicates with the same key must accept the same items,
+ * since the key identifies the cached bitmap.
+ * 
+ * @param <T> The type of item filtered
+ */
+public abstract class Filter<T> {
+    
+    // Only the nested node types extend Filter
+    private Filter() {
+    }
+    
+    /**
+     * Create a filter from a single field predicate.
+     * 
+     * @param <T> The type of item filtered
+     * @param key A key that uniquely describes the predicate, such as "mode=C"
+     * @param predicate The predicate
+     * @return A filter that accepts the items the predicate accepts
+     */
+    public static <T> Filter<T> where(String key, Predicate<T> predicate) {
+        return new Leaf<>(Objects.requireNonNull(key), Objects.requireNonNull(predicate));
+    }
+    
+    /**
+     * Create a filter that accepts the items every given filter accepts.
+     * With no filters, it accepts every item.
+     * 
+     * @param <T> The type of item filtered
+     * @param filters The filters to combine
+     * @return The combined filter
+     */
+    @SafeVarargs
+    @SuppressWarnings("varargs")
+    public static <T> Filter<T> and(Filter<T>... filters) {
+        return new And<>(Arrays.asList(filters));
+    }
+    
+    /**
+     * Create a filter that accepts the items every given filter accepts.
+     * With no filters, it accepts every item.
+     * 
+     * @param <T> The type of item filtered
+     * @param filters The filters to combine
+     * @return The combined filter
+     */
+    public static <T> Filter<T> and(List<Filter<T>> filters) {
+        return new And<>(filters);
+    }
+    
+    /**
+     * Create a filter that accepts the items any given filter accepts.
+     * With no filters, it accepts no items.
+     * 
+     * @param <T> The type of item filtered
+     * @param filters The filters to combine
+     * @return The combined filter
+     */
+    @SafeVarargs
+    @SuppressWarnings("varargs")
+    public static <T> Filter<T> or(Filter<T>... filters) {
+        return new Or<>(Arrays.asList(filters));
+    }
+    
+    /**
+     * Create a filter that accepts the items any given filter accepts.
+     * With no filters, it accepts no items.
+     * 
+     * @param <T> The type of item filtered
+     * @param filters The filters to combine
+     * @return The combined filter
+     */
+    public static <T> Filter<T> or(List<Filter<T>> filters) {
+        return new Or<>(filters);
+    }
+    
+    /**
+     * Create a filter that accepts the items the given filter rejects.
+     * 
+     * @param <T> The type of item filtered
+     * @param filter The filter to negate
+     * @return The negated filter
+     */
+    public static <T> Filter<T> not(Filter<T> filter) {
+        return new Not<>(Objects.requireNonNull(filter));
+    }
+    
+    /**
+     * Test a single item against the filter, without using any bitmaps.
+     * 
+     * @param item The item to test
+     * @return true if the filter accepts the item, false otherwise
+     */
+    public abstract boolean test(T item);
+    
+    /**
+     * A single field predicate.
+     */
+    static final class Leaf<T> extends Filter<T> {
+        final String key;
+        final Predicate<T> predicate;
+        
+        Leaf(String key, Predicate<T> predicate) {
+            this.key = key;
+            this.predicate = predicate;
+        }
+        
+        @Override
+        public boolean test(T item) {
+            return predicate.test(item);
+        }
+        
+        @Override
+        public String toString() {
+            return key;
+        }
+    }
+    
+    /**
+     * Conjunction of filters.
+     */
+    static final class And<T> extends Filter<T> {
+        final List<Filter<T>> children;
+        
+        And(List<Filter<T>> children) {
+            this.children = Collections.unmodifiableList(new ArrayList<>(children));
+        }
+        
+        @Override
+        public boolean test(T item) {
+            for (Filter<T> child : children) {
+                if (!child.test(item)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        
+        @Override
+        public String toString() {
+            return "AND" + children;
+        }
+    }
+    
+    /**
+     * Disjunction of filters.
+     */
+    static final class Or<T> extends Filter<T> {
+        final List<Filter<T>> children;
+        
+        Or(List<Filter<T>> children) {
+            this.children = Collections.unmodifiableList(new ArrayList<>(children));
+        }
+        
+        @Override
+        public boolean test(T item) {
+            for (Filter<T> child : children) {
+                if (child.test(item)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+        
+        @Override
+        public String toString() {
+            return "OR" + children;
+        }
+    }
+    
+    /**
+     * Negation of a filter.
+     */
+    static final class Not<T> extends Filter<T> {
+        final Filter<T> child;
+        
+        Not(Filter<T> child) {
+            this.child = child;
+        }
+        
+        @Override
+        public boolean test(T item) {
+            return !child.test(item);
+        }
+        
+        @Override
+        public String toString() {
+            return "NOT[" + child + "]";
+        }
+    }
+}
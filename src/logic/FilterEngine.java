@@ -0,0 +1,296 @@
+package logic;
+
+import model.Identifiable;
+
+import java.util.*;
+import java.util.function.Predicate;
+
+/**
+ * Evaluates {@link Filter} trees over the items of a DataManager as bitsets.
+ * Bit i stands for the item at position i of the collection. The full bitmap
+ * of each field predicate is cached by key and reused by later queries.
+ * <p>
+ * When the collection changes, the cached bitmaps are carried over to the new
+ * snapshot instead of being dropped: items keep their relative order and are
+ * never modified in place, so the old and new snapshots are matched up in one
+ * pass, the bits of unchanged items are moved to their new positions, and
+ * only added and updated items are tested again. After a change that touches
+ * most of the items, such as a reload, the cache is dropped instead.
+ * <p>
+ * Conjuncts are evaluated from the most to the least selective, judged by the
+ * cardinality of their cached bitmaps, and each child of an AND or OR only
+ * looks at the rows still undecided. A predicate whose bitmap is not cached
+ * is scanned over the whole collection and cached if many rows are still
+ * candidates, and scanned over just the candidates otherwise.
+ * <p>
+ * Queries are serialized, since they share the cache; each one works on an
+ * immutable snapshot of the collection.
+ * 
+ * @param <T> The type of item filtered
+ */
+class FilterEngine<T extends Identifiable> {
+    
+    // Maximum number of predicate bitmaps kept between queries
+    private static final int MAX_CACHED_BITMAPS = 64;
+    
+    // A predicate is scanned over all rows, and cached, when at least 1/4 of them are candidates
+    private static final int FULL_SCAN_FRACTION = 4;
+    
+    // The cache is dropped rather than carried over when at least 1/2 of the rows are new
+    private static final int REBUILD_FRACTION = 2;
+    
+    private final DataManager<T> manager;
+    
+    // Snapshot of the collection the cached bitmaps refer to
+    private long snapshotVersion = -1;
+    private List<T> rows = Collections.emptyList();
+    
+    // Cached predicate bitmaps by key, least recently used first
+    private final Map<String, CachedBitmap<T>> bitmaps;
+    
+    // Set when the cached bitmaps may no longer match their predicates; not a
+    // monitor, since it is set by writers that hold the manager's write lock
+    private volatile boolean invalidated;
+    
+    FilterEngine(DataManager<T> manager) {
+        this.manager = manager;
+        this.bitmaps = new LinkedHashMap<String, CachedBitmap<T>>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CachedBitmap<T>> eldest) {
+                return size() > MAX_CACHED_BITMAPS;
+            }
+        };
+    }
+    
+    /**
+     * Get the items a filter accepts, in collection order.
+     */
+    synchronized List<T> select(Filter<T> filter) {
+        BitSet matches = evaluate(filter);
+        List<T> result = new ArrayList<>(matches.cardinality());
+        for (int row = matches.nextSetBit(0); row >= 0; row = matches.nextSetBit(row + 1)) {
+            result.add(rows.get(row));
+        }
+        return result;
+    }
+    
+    /**
+     * Count the items a filter accepts.
+     */
+    synchronized int count(Filter<T> filter) {
+        return evaluate(filter).cardinality();
+    }
+    
+    /**
+     * Evaluate a filter over the whole collection.
+     * 
+     * @return A bitset of the positions of the accepted items
+     */
+    synchronized BitSet evaluate(Filter<T> filter) {
+        refresh();
+        BitSet all = new BitSet(rows.size());
+        all.set(0, rows.size());
+        return evaluate(filter, all);
+    }
+    
+    /**
+     * Evaluate a filter over the candidate rows only.
+     * Never modifies candidates or a cached bitmap.
+     * 
+     * @return The candidate rows the filter accepts
+     */
+    private BitSet evaluate(Filter<T> filter, BitSet candidates) {
+        if (filter instanceof Filter.Leaf) {
+            return evaluateLeaf((Filter.Leaf<T>) filter, candidates);
+        }
+        
+        if (filter instanceof Filter.Not) {
+            BitSet result = (BitSet) candidates.clone();
+            result.andNot(evaluate(((Filter.Not<T>) filter).child, candidates));
+            return result;
+        }
+        
+        if (filter instanceof Filter.And) {
+            List<Filter<T>> children = new ArrayList<>(((Filter.And<T>) filter).children);
+            children.sort(Comparator.comparingInt(this::estimateMatches));
+            BitSet result = candidates;
+            for (Filter<T> child : children) {
+                if (result.isEmpty()) {
+                    break;
+                }
+                result = evaluate(child, result);
+            }
+            return (result == candidates) ? (BitSet) candidates.clone() : result;
+        }
+        
+        // Each disjunct only needs to look at the rows no earlier disjunct accepted
+        BitSet result = new BitSet(rows.size());
+        BitSet remaining = (BitSet) candidates.clone();
+        for (Filter<T> child : ((Filter.Or<T>) filter).children) {
+            if (remaining.isEmpty()) {
+                break;
+            }
+            BitSet matches = evaluate(child, remaining);
+            result.or(matches);
+            remaining.andNot(matches);
+        }
+        return result;
+    }
+    
+    private BitSet evaluateLeaf(Filter.Leaf<T> leaf, BitSet candidates) {
+        CachedBitmap<T> cached = bitmaps.get(leaf.key);
+        
+        if (cached == null && candidates.cardinality() * FULL_SCAN_FRACTION >= rows.size()) {
+            BitSet bitmap = new BitSet(rows.size());
+            for (int row = 0; row < rows.size(); row++) {
+                if (leaf.predicate.test(rows.get(row))) {
+                    bitmap.set(row);
+                }
+            }
+            cached = new CachedBitmap<>(leaf.predicate, bitmap);
+            bitmaps.put(leaf.key, cached);
+        }
+        
+        if (cached != null) {
+            BitSet result = (BitSet) cached.bits.clone();
+            result.and(candidates);
+            return result;
+        }
+        
+        // Few candidates left: test just those rows
+        BitSet result = new BitSet(rows.size());
+        for (int row = candidates.nextSetBit(0); row >= 0; row = candidates.nextSetBit(row + 1)) {
+            if (leaf.predicate.test(rows.get(row))) {
+                result.set(row);
+            }
+        }
+        return result;
+    }
+    
+    /**
+     * Estimate how many rows a filter accepts, from the cached bitmaps.
+     * Filters with nothing cached are assumed to accept every row, so they run
+     * last, over the fewest candidates.
+     */
+    private int estimateMatches(Filter<T> filter) {
+        if (filter instanceof Filter.Leaf) {
+            CachedBitmap<T> cached = bitmaps.get(((Filter.Leaf<T>) filter).key);
+            return (cached != null) ? cached.bits.cardinality() : rows.size();
+        }
+        if (filter instanceof Filter.Not) {
+            Filter<T> child = ((Filter.Not<T>) filter).child;
+            if (child instanceof Filter.Leaf && bitmaps.containsKey(((Filter.Leaf<T>) child).key)) {
+                return rows.size() - estimateMatches(child);
+            }
+            return rows.size();
+        }
+        if (filter instanceof Filter.And) {
+            int estimate = rows.size();
+            for (Filter<T> child : ((Filter.And<T>) filter).children) {
+                estimate = Math.min(estimate, estimateMatches(child));
+            }
+            return estimate;
+        }
+        int estimate = 0;
+        for (Filter<T> child : ((Filter.Or<T>) filter).children) {
+            estimate = Math.min(rows.size(), estimate + estimateMatches(child));
+        }
+        return estimate;
+    }
+    
+    /**
+     * Drop the cached bitmaps before the next query, because the predicates
+     * they were computed from now give different answers for the same items.
+     */
+    void invalidate() {
+        invalidated = true;
+    }
+    
+    /**
+     * Take a new snapshot of the collection if it has changed, and carry the
+     * cached bitmaps over to it.
+     */
+    private void refresh() {
+        if (invalidated) {
+            invalidated = false;
+            bitmaps.clear();
+        }
+        long version = manager.getVersion();
+        if (version == snapshotVersion) {
+            return;
+        }
+        List<T> previousRows = rows;
+        rows = manager.getSnapshot();
+        snapshotVersion = version;
+        if (bitmaps.isEmpty()) {
+            return;
+        }
+        
+        // Match each row to its position in the previous snapshot. Items that
+        // survive keep their relative order and come before any added ones,
+        // so a previous row that does not match the next row was removed.
+        int[] previousRow = new int[rows.size()];
+        int retested = 0;
+        boolean shifted = false;
+        int from = 0;
+        for (int row = 0; row < rows.size(); row++) {
+            T item = rows.get(row);
+            while (from < previousRows.size() && previousRows.get(from).getId() != item.getId()) {
+                from++;
+                shifted = true;
+            }
+            if (from < previousRows.size() && previousRows.get(from) == item) {
+                previousRow[row] = from++;
+            } else {
+                // Added, or updated in place
+                previousRow[row] = -1;
+                from += (from < previousRows.size()) ? 1 : 0;
+                retested++;
+            }
+        }
+        
+        if (retested * REBUILD_FRACTION >= rows.size()) {
+            bitmaps.clear();
+            return;
+        }
+        for (CachedBitmap<T> cached : bitmaps.values()) {
+            cached.bits = carryOver(cached, previousRow, shifted);
+        }
+    }
+    
+    private BitSet carryOver(CachedBitmap<T> cached, int[] previousRow, boolean shifted) {
+        BitSet bits;
+        if (shifted) {
+            bits = new BitSet(rows.size());
+            for (int row = 0; row < rows.size(); row++) {
+                if (previousRow[row] >= 0 && cached.bits.get(previousRow[row])) {
+                    bits.set(row);
+                }
+            }
+        } else {
+            // Every previous row kept its position
+            bits = cached.bits;
+            bits.clear(rows.size(), Math.max(rows.size(), bits.length()));
+        }
+        for (int row = 0; row < rows.size(); row++) {
+            if (previousRow[row] < 0) {
+                bits.set(row, cached.predicate.test(rows.get(row)));
+            }
+        }
+        return bits;
+    }
+    
+    /**
+     * A cached bitmap and the predicate it was computed from, kept to test
+     * the items added or updated since.
+     */
+    private static final class CachedBitmap<T> {
+        final Predicate<T> predicate;
+        BitSet bits;
+        
+        CachedBitmap(Predicate<T> predicate, BitSet bits) {
+            this.predicate = predicate;
+            this.bits = bits;
+        }
+    }
+}
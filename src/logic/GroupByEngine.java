@@ -0,0 +1,377 @@
+package logic;
+
+import model.Category;
+import model.Expense;
+import utils.IntLongMap;
+
+import java.util.*;
+import java.util.function.IntFunction;
+import java.util.function.ToLongFunction;
+
+/**
+ * Groups expenses by any combination of category, payment mode, recurring
+ * status and category priority, and computes count, sum, minimum, maximum and
+ * average of each group in a single pass.
+ * <p>
+ * Each expense is reduced to a packed int key holding a code per dimension,
+ * and groups are accumulated in primitive arrays, so no objects are created
+ * per expense. The full cube, every one of the 16 combinations of dimensions,
+ * can also be computed in one pass, after which any drill-down is a lookup.
+ */
+public class GroupByEngine {
+    
+    /**
+     * The dimensions expenses can be grouped by.
+     */
+    public enum Dimension {
+        CATEGORY,
+        MODE,
+        RECURRING,
+        /** Priority of the expense's category, joined from the categories. */
+        PRIORITY
+    }
+    
+    // Key layout: priority in bits 0-1, recurring in bit 2, mode in bits 3-4, category code above
+    private static final int PRIORITY_SHIFT = 0;
+    private static final int RECURRING_SHIFT = 2;
+    private static final int MODE_SHIFT = 3;
+    private static final int CATEGORY_SHIFT = 5;
+    
+    private static final String PRIORITY_CODES = "HML";
+    
+    // Code of a mode or priority outside the known values
+    private static final int UNKNOWN_CODE = 3;
+    
+    private final IntFunction<Category> categoryLookup;
+    private final ToLongFunction<Expense> amountOf;
+    
+    /**
+     * Create an engine that joins the priority from the given categories and
+     * aggregates amounts as entered.
+     * 
+     * @param categoryLookup Finds a category by ID, returning null if there is none,
+     *                       such as {@code categoryManager::getById}
+     */
+    public GroupByEngine(IntFunction<Category> categoryLookup) {
+        this(categoryLookup, Expense::getAmount);
+    }
+    
+    /**
+     * Create an engine that joins the priority from the given categories and
+     * aggregates the amounts given by a function, such as amounts converted
+     * into a reporting currency.
+     * 
+     * @param categoryLookup Finds a category by ID, returning null if there is none
+     * @param amountOf Gets the amount of an expense to aggregate, in minor units
+     */
+    public GroupByEngine(IntFunction<Category> categoryLookup, ToLongFunction<Expense> amountOf) {
+        this.categoryLookup = categoryLookup;
+        this.amountOf = amountOf;
+    }
+    
+    /**
+     * Group expenses by the given dimensions.
+     * With no dimensions, the result is a single group of all expenses.
+     * 
+     * @param expenses The expenses to group
+     * @param dimensions The dimensions to group by
+     * @return The groups, in order of first appearance
+     */
+    public List<Group> groupBy(Collection<Expense> expenses, Dimension... dimensions) {
+        int keyMask = keyMask(dimensionsOf(setOf(Arrays.asList(dimensions))));
+        
+        Encoder encoder = new Encoder();
+        Accumulator accumulator = new Accumulator();
+        for (Expense expense : expenses) {
+            accumulator.add(encoder.key(expense) & keyMask, amountOf.applyAsLong(expense));
+        }
+        return accumulator.toGroups(encoder, keyMask);
+    }
+    
+    /**
+     * Compute every grouping of the expenses at once.
+     * 
+     * @param expenses The expenses to aggregate
+     * @return The cube of all groupings
+     */
+    public Cube cube(Collection<Expense> expenses) {
+        int cuboidCount = 1 << Dimension.values().length;
+        int[] keyMasks = new int[cuboidCount];
+        Accumulator[] cuboids = new Accumulator[cuboidCount];
+        for (int set = 0; set < cuboidCount; set++) {
+            keyMasks[set] = keyMask(dimensionsOf(set));
+            cuboids[set] = new Accumulator();
+        }
+        
+        Encoder encoder = new Encoder();
+        for (Expense expense : expenses) {
+            int key = encoder.key(expense);
+            long amount = amountOf.applyAsLong(expense);
+            for (int set = 0; set < cuboidCount; set++) {
+                cuboids[set].add(key & keyMasks[set], amount);
+            }
+        }
+        return new Cube(encoder, keyMasks, cuboids);
+    }
+    
+    private static EnumSet<Dimension> dimensionsOf(int set) {
+        EnumSet<Dimension> dimensions = EnumSet.noneOf(Dimension.class);
+        for (Dimension dimension : Dimension.values()) {
+            if ((set & (1 << dimension.ordinal())) != 0) {
+                dimensions.add(dimension);
+            }
+        }
+        return dimensions;
+    }
+    
+    private static int setOf(Collection<Dimension> dimensions) {
+        int set = 0;
+        for (Dimension dimension : dimensions) {
+            set |= 1 << dimension.ordinal();
+        }
+        return set;
+    }
+    
+    /**
+     * Get the bits of the packed key that hold the given dimensions.
+     */
+    private static int keyMask(Set<Dimension> dimensions) {
+        int mask = 0;
+        if (dimensions.contains(Dimension.CATEGORY)) mask |= -1 << CATEGORY_SHIFT;
+        if (dimensions.contains(Dimension.MODE)) mask |= 3 << MODE_SHIFT;
+        if (dimensions.contains(Dimension.RECURRING)) mask |= 1 << RECURRING_SHIFT;
+        if (dimensions.contains(Dimension.PRIORITY)) mask |= 3 << PRIORITY_SHIFT;
+        return mask;
+    }
+    
+    /**
+     * Turns expenses into packed keys, numbering categories densely as they
+     * are first seen and caching each category's priority code.
+     */
+    private final class Encoder {
+        private final IntLongMap categoryCodes = new IntLongMap();
+        private int[] categoryIds = new int[16];
+        private int[] priorityCodes = new int[16];
+        
+        int key(Expense expense) {
+            int categoryCode = categoryCode(expense.getCategoryId());
+            int mode = Expense.modeIndex(expense.getMode());
+            return (categoryCode << CATEGORY_SHIFT)
+                    | ((mode < 0 ? UNKNOWN_CODE : mode) << MODE_SHIFT)
+                    | ((expense.isRecurring() ? 1 : 0) << RECURRING_SHIFT)
+                    | (priorityCodes[categoryCode] << PRIORITY_SHIFT);
+        }
+        
+        private int categoryCode(int categoryId) {
+            int code = (int) categoryCodes.get(categoryId, -1);
+            if (code < 0) {
+                code = categoryCodes.size();
+                categoryCodes.put(categoryId, code);
+                if (code == categoryIds.length) {
+                    categoryIds = Arrays.copyOf(categoryIds, code * 2);
+                    priorityCodes = Arrays.copyOf(priorityCodes, code * 2);
+                }
+                Category category = categoryLookup.apply(categoryId);
+                int priority = (category == null) ? -1 : PRIORITY_CODES.indexOf(category.getPriority());
+                categoryIds[code] = categoryId;
+                priorityCodes[code] = (priority < 0) ? UNKNOWN_CODE : priority;
+            }
+            return code;
+        }
+        
+        /**
+         * Get the packed key of a group, or -1 if one of its values never appeared.
+         */
+        int key(int categoryId, char mode, boolean recurring, char priority, int keyMask) {
+            int categoryCode = 0;
+            if ((keyMask & (-1 << CATEGORY_SHIFT)) != 0) {
+                categoryCode = (int) categoryCodes.get(categoryId, -1);
+                if (categoryCode < 0) {
+                    return -1;
+                }
+            }
+            int modeCode = Expense.modeIndex(mode);
+            int priorityCode = PRIORITY_CODES.indexOf(priority);
+            int key = (categoryCode << CATEGORY_SHIFT)
+                    | ((modeCode < 0 ? UNKNOWN_CODE : modeCode) << MODE_SHIFT)
+                    | ((recurring ? 1 : 0) << RECURRING_SHIFT)
+                    | ((priorityCode < 0 ? UNKNOWN_CODE : priorityCode) << PRIORITY_SHIFT);
+            return key & keyMask;
+        }
+        
+        Group decode(int key, int keyMask, AmountStats stats) {
+            int modeCode = (key >>> MODE_SHIFT) & 3;
+            int priorityCode = (key >>> PRIORITY_SHIFT) & 3;
+            return new Group(
+                    (keyMask & (-1 << CATEGORY_SHIFT)) != 0 ? categoryIds[key >>> CATEGORY_SHIFT] : Group.ALL_CATEGORIES,
+                    (keyMask & (3 << MODE_SHIFT)) != 0 ? (modeCode == UNKNOWN_CODE ? '?' : Expense.MODE_CODES.charAt(modeCode)) : Group.ALL,
+                    (keyMask & (1 << RECURRING_SHIFT)) != 0 ? Boolean.valueOf(((key >>> RECURRING_SHIFT) & 1) != 0) : null,
+                    (keyMask & (3 << PRIORITY_SHIFT)) != 0 ? (priorityCode == UNKNOWN_CODE ? '?' : PRIORITY_CODES.charAt(priorityCode)) : Group.ALL,
+                    stats);
+        }
+    }
+    
+    /**
+     * Count, sum, minimum and maximum per packed key, in parallel arrays.
+     */
+    private static final class Accumulator {
+        private final IntLongMap slots = new IntLongMap();
+        private int[] keys = new int[16];
+        private long[] counts = new long[16];
+        private long[] sums = new long[16];
+        private long[] mins = new long[16];
+        private long[] maxes = new long[16];
+        private int size;
+        
+        void add(int key, long amount) {
+            int slot = (int) slots.get(key, -1);
+            if (slot < 0) {
+                slot = size++;
+                slots.put(key, slot);
+                if (slot == keys.length) {
+                    int capacity = slot * 2;
+                    keys = Arrays.copyOf(keys, capacity);
+                    counts = Arrays.copyOf(counts, capacity);
+                    sums = Arrays.copyOf(sums, capacity);
+                    mins = Arrays.copyOf(mins, capacity);
+                    maxes = Arrays.copyOf(maxes, capacity);
+                }
+                keys[slot] = key;
+                mins[slot] = amount;
+                maxes[slot] = amount;
+            }
+            counts[slot]++;
+            sums[slot] = Math.addExact(sums[slot], amount);
+            mins[slot] = Math.min(mins[slot], amount);
+            maxes[slot] = Math.max(maxes[slot], amount);
+        }
+        
+        AmountStats stats(int key) {
+            int slot = (int) slots.get(key, -1);
+            return (slot < 0) ? AmountStats.EMPTY : statsAt(slot);
+        }
+        
+        AmountStats statsAt(int slot) {
+            return new AmountStats(counts[slot], sums[slot], mins[slot], maxes[slot]);
+        }
+        
+        List<Group> toGroups(Encoder encoder, int keyMask) {
+            List<Group> groups = new ArrayList<>(size);
+            for (int slot = 0; slot < size; slot++) {
+                groups.add(encoder.decode(keys[slot], keyMask, statsAt(slot)));
+            }
+            return groups;
+        }
+    }
+    
+    /**
+     * One group of expenses and its statistics. Dimensions the group was not
+     * formed by hold {@link #ALL_CATEGORIES}, {@link #ALL} or null.
+     */
+    public static final class Group {
+        
+        /** Category ID of a group not formed by category. */
+        public static final int ALL_CATEGORIES = -1;
+        
+        /** Mode or priority of a group not formed by that dimension. */
+        public static final char ALL = '*';
+        
+        private final int categoryId;
+        private final char mode;
+        private final Boolean recurring;
+        private final char priority;
+        private final AmountStats stats;
+        
+        Group(int categoryId, char mode, Boolean recurring, char priority, AmountStats stats) {
+            this.categoryId = categoryId;
+            this.mode = mode;
+            this.recurring = recurring;
+            this.priority = priority;
+            this.stats = stats;
+        }
+        
+        public int getCategoryId() {
+            return categoryId;
+        }
+        
+        public char getMode() {
+            return mode;
+        }
+        
+        /**
+         * @return Whether the group's expenses are recurring, or null if the group was not formed by recurring status
+         */
+        public Boolean getRecurring() {
+            return recurring;
+        }
+        
+        /**
+         * @return The priority of the group's category, '?' for expenses with no known category
+         */
+        public char getPriority() {
+            return priority;
+        }
+        
+        public AmountStats getStats() {
+            return stats;
+        }
+        
+        @Override
+        public String toString() {
+            return "Group[category=" + (categoryId == ALL_CATEGORIES ? "*" : String.valueOf(categoryId))
+                    + ", mode=" + mode + ", recurring=" + (recurring == null ? "*" : recurring)
+                    + ", priority=" + priority + ", " + stats + "]";
+        }
+    }
+    
+    /**
+     * Precomputed statistics for every combination of dimensions.
+     */
+    public static final class Cube {
+        private final Encoder encoder;
+        private final int[] keyMasks;
+        private final Accumulator[] cuboids;
+        
+        private Cube(Encoder encoder, int[] keyMasks, Accumulator[] cuboids) {
+            this.encoder = encoder;
+            this.keyMasks = keyMasks;
+            this.cuboids = cuboids;
+        }
+        
+        /**
+         * Get all groups for a combination of dimensions.
+         * 
+         * @param dimensions The dimensions the groups are formed by
+         * @return The groups, in order of first appearance
+         */
+        public List<Group> groups(Dimension... dimensions) {
+            int set = setOf(Arrays.asList(dimensions));
+            return cuboids[set].toGroups(encoder, keyMasks[set]);
+        }
+        
+        /**
+         * Look up the statistics of one group. Values of dimensions not listed are ignored.
+         * 
+         * @param dimensions The dimensions the group is formed by
+         * @param categoryId The category ID
+         * @param mode The payment mode ('C', 'D', or 'B')
+         * @param recurring The recurring status
+         * @param priority The category priority ('H', 'M', or 'L')
+         * @return The statistics, or {@link AmountStats#EMPTY} if the group has no expenses
+         */
+        public AmountStats get(Set<Dimension> dimensions, int categoryId, char mode, boolean recurring, char priority) {
+            int set = setOf(dimensions);
+            int key = encoder.key(categoryId, mode, recurring, priority, keyMasks[set]);
+            return (key < 0) ? AmountStats.EMPTY : cuboids[set].stats(key);
+        }
+        
+        /**
+         * Get the statistics of all expenses.
+         * 
+         * @return The grand total statistics
+         */
+        public AmountStats total() {
+            return cuboids[0].stats(0);
+        }
+    }
+}
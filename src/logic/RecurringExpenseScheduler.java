@@ -0,0 +1,371 @@
+package logic;
+
+import model.Expense;
+import utils.IntLongMap;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.Period;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.PriorityQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Materializes the occurrences of recurring expenses as they fall due.
+ * <p>
+ * A recurring expense that is not itself an occurrence is the template of
+ * a series. Its n-th occurrence is a copy dated n intervals after the
+ * template and linked to it through {@link Expense#getRecurrenceOf()}.
+ * Each template's next occurrence is held in a priority queue ordered by
+ * due time, so a tick only looks at the series that are due. All
+ * occurrences due in a tick are saved in one batched insert; if that fails,
+ * they are saved one at a time and any the database already holds are
+ * skipped, so one duplicate cannot hold back the rest.
+ * <p>
+ * The schedule is rebuilt whenever a reload changes the expenses. The series
+ * are the recurring templates that are loaded, and each one continues
+ * after its latest stored occurrence, which is read from the database so
+ * occurrences a filtered load left out still count. If the database cannot
+ * be read, only the loaded occurrences are considered; the database's one
+ * row per occurrence then keeps duplicates from being stored. Deleting the
+ * latest occurrence of a series lets it be created again; to end a series,
+ * delete the template or clear its recurring flag.
+ * <p>
+ * Once started, the checks and the rebuilds run on the scheduler's own
+ * thread, which does the database work; only the changes to the expense
+ * collection are handed to the executor given to {@link #start}. The
+ * expense manager must then be safe to read from several threads.
+ */
+public class RecurringExpenseScheduler {
+    
+    private final ExpenseManager expenseManager;
+    private final Period interval;
+    private final Duration lookahead;
+    private final ZoneId zone = ZoneId.systemDefault();
+    
+    // Next occurrence of each series, by due time; entries no longer in pending are stale
+    private final PriorityQueue<Occurrence> queue = new PriorityQueue<>();
+    private final Map<Integer, Occurrence> pending = new HashMap<>();
+    
+    // Date of the latest stored occurrence of each series, by template ID
+    private final IntLongMap latestOccurrences = new IntLongMap();
+    
+    // Set while the expense manager is in a batch of changes, such as a reload,
+    // and whether any expense changed during it
+    private boolean batchOpen;
+    private boolean batchChanged;
+    
+    // Runs the checks and rebuilds once started, and the executor that updates the collection
+    private ScheduledExecutorService timer;
+    private Executor updater = Runnable::run;
+    
+    /**
+     * Create a scheduler for monthly series that materializes occurrences once they are due.
+     * 
+     * @param expenseManager The expenses to schedule
+     */
+    public RecurringExpenseScheduler(ExpenseManager expenseManager) {
+        this(expenseManager, Period.ofMonths(1), Duration.ZERO);
+    }
+    
+    /**
+     * Create a scheduler.
+     * 
+     * @param expenseManager The expenses to schedule
+     * @param interval The time between occurrences of a series
+     * @param lookahead How far ahead of their date occurrences are materialized
+     */
+    public RecurringExpenseScheduler(ExpenseManager expenseManager, Period interval, Duration lookahead) {
+        if (interval.isZero() || interval.isNegative()) {
+            throw new IllegalArgumentException("Recurrence interval must be positive: " + interval);
+        }
+        this.expenseManager = expenseManager;
+        this.interval = interval;
+        this.lookahead = lookahead;
+        rebuild();
+        expenseManager.addChangeListener(this::expensesChanged);
+    }
+    
+    /**
+     * Check for due occurrences on a fixed cadence until {@link #stop()} is called.
+     * 
+     * @param cadence The time between checks
+     * @param executor The executor the expense collection is updated on, such as SwingUtilities::invokeLater
+     */
+    public synchronized void start(Duration cadence, Executor executor) {
+        stop();
+        updater = Objects.requireNonNull(executor);
+        timer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "recurring-expense-scheduler");
+            thread.setDaemon(true);
+            return thread;
+        });
+        timer.scheduleWithFixedDelay(this::materializeDue, 0, cadence.toMillis(), TimeUnit.MILLISECONDS);
+    }
+    
+    /**
+     * Stop the checks started by {@link #start(Duration, Executor)}.
+     */
+    public synchronized void stop() {
+        if (timer != null) {
+            timer.shutdownNow();
+            timer = null;
+        }
+        updater = Runnable::run;
+    }
+    
+    /**
+     * Save every occurrence due now.
+     * 
+     * @return The number of occurrences saved
+     */
+    public int materializeDue() {
+        return materializeDue(System.currentTimeMillis());
+    }
+    
+    /**
+     * Save every occurrence due by a given time, catching up series that
+     * have missed several occurrences. Once started, the saved occurrences
+     * are added to the collection on the executor given to {@link #start}.
+     * 
+     * @param now The current time, in epoch milliseconds
+     * @return The number of occurrences saved, not counting any that were already stored
+     */
+    public int materializeDue(long now) {
+        List<Expense> due = new ArrayList<>();
+        Executor executor;
+        synchronized (this) {
+            executor = updater;
+            long horizon = now + lookahead.toMillis();
+            while (!queue.isEmpty() && queue.peek().dueAt <= horizon) {
+                Occurrence occurrence = queue.poll();
+                if (pending.get(occurrence.templateId) != occurrence) {
+                    continue;
+                }
+                Expense template = expenseManager.getById(occurrence.templateId);
+                if (template == null || !template.isRecurringTemplate()) {
+                    pending.remove(occurrence.templateId);
+                    continue;
+                }
+                due.add(materialize(template, occurrence.dueAt));
+                enqueue(template, occurrence.index + 1);
+            }
+        }
+        
+        if (due.isEmpty()) {
+            return 0;
+        }
+        int saved = expenseManager.saveExpensesIfAbsent(due, executor);
+        if (saved < 0) {
+            System.err.println("Error saving recurring expense occurrences; unsaved ones will be retried");
+            rebuild();
+            return 0;
+        }
+        return saved;
+    }
+    
+    /**
+     * Get the number of series being scheduled.
+     * 
+     * @return The number of recurring templates
+     */
+    public synchronized int getScheduledCount() {
+        return pending.size();
+    }
+    
+    /**
+     * Get when the next occurrence of any series falls due.
+     * 
+     * @return The due time in epoch milliseconds, or -1 if nothing is scheduled
+     */
+    public synchronized long getNextDueTime() {
+        while (!queue.isEmpty() && pending.get(queue.peek().templateId) != queue.peek()) {
+            queue.poll();
+        }
+        return queue.isEmpty() ? -1 : queue.peek().dueAt;
+    }
+    
+    private void expensesChanged(DataChangeEvent<Expense> event) {
+        if (event.getType() == DataChangeEvent.Type.BATCH_END) {
+            boolean changed;
+            ScheduledExecutorService rebuilder;
+            synchronized (this) {
+                changed = batchChanged;
+                batchOpen = false;
+                batchChanged = false;
+                rebuilder = timer;
+            }
+            // A batch without changes, such as a new reporting currency, leaves the series as they are
+            if (!changed) {
+                return;
+            }
+            if (rebuilder == null) {
+                rebuild();
+                return;
+            }
+            try {
+                rebuilder.execute(this::rebuild);
+            } catch (RejectedExecutionException e) {
+                // Stopped meanwhile, so there is no scheduler thread to hand it to
+                rebuild();
+            }
+            return;
+        }
+        synchronized (this) {
+            applyChange(event);
+        }
+    }
+    
+    private void applyChange(DataChangeEvent<Expense> event) {
+        if (event.getType() == DataChangeEvent.Type.BATCH_BEGIN) {
+            batchOpen = true;
+            return;
+        }
+        if (batchOpen) {
+            batchChanged = true;
+            return;
+        }
+        
+        switch (event.getType()) {
+            case ADDED:
+                added(event.getItem());
+                break;
+            case UPDATED:
+                // The series restarts from the new version, after its latest occurrence
+                pending.remove(event.getPrevious().getId());
+                added(event.getItem());
+                break;
+            case REMOVED:
+                pending.remove(event.getItem().getId());
+                break;
+            case CLEARED:
+                queue.clear();
+                pending.clear();
+                latestOccurrences.clear();
+                break;
+            default:
+                break;
+        }
+    }
+    
+    private void added(Expense expense) {
+        if (expense.isRecurringTemplate()) {
+            schedule(expense);
+        } else if (expense.getRecurrenceOf() != 0) {
+            int templateId = expense.getRecurrenceOf();
+            if (expense.getSpentAt() > latestOccurrences.get(templateId, Long.MIN_VALUE)) {
+                latestOccurrences.put(templateId, expense.getSpentAt());
+            }
+            // An occurrence saved elsewhere moves its series past it
+            Occurrence next = pending.get(templateId);
+            if (next != null && next.dueAt <= expense.getSpentAt()) {
+                Expense template = expenseManager.getById(templateId);
+                if (template != null) {
+                    schedule(template);
+                }
+            }
+        }
+    }
+    
+    /**
+     * Recreate the whole schedule from the loaded templates and the latest
+     * stored occurrence of each series. The database is read before taking
+     * the scheduler's lock; the loaded expenses are read under it, so changes
+     * made after the read are applied on top by the listener.
+     */
+    private void rebuild() {
+        IntLongMap stored = expenseManager.getLatestStoredOccurrences();
+        
+        synchronized (this) {
+            queue.clear();
+            pending.clear();
+            latestOccurrences.clear();
+            
+            if (stored != null) {
+                for (int i = 0; i < stored.size(); i++) {
+                    latestOccurrences.put(stored.keyAt(i), stored.valueAt(i));
+                }
+            }
+            
+            List<Expense> expenses = expenseManager.getSnapshot();
+            for (Expense expense : expenses) {
+                int templateId = expense.getRecurrenceOf();
+                if (templateId != 0 && expense.getSpentAt() > latestOccurrences.get(templateId, Long.MIN_VALUE)) {
+                    latestOccurrences.put(templateId, expense.getSpentAt());
+                }
+            }
+            for (Expense expense : expenses) {
+                if (expense.isRecurringTemplate()) {
+                    schedule(expense);
+                }
+            }
+        }
+    }
+    
+    /**
+     * Queue the first occurrence of a series after its latest stored occurrence.
+     */
+    private void schedule(Expense template) {
+        long after = Math.max(template.getSpentAt(), latestOccurrences.get(template.getId(), Long.MIN_VALUE));
+        int index = 1;
+        while (occurrenceTime(template, index) <= after) {
+            index++;
+        }
+        enqueue(template, index);
+    }
+    
+    private void enqueue(Expense template, int index) {
+        Occurrence occurrence = new Occurrence(template.getId(), index, occurrenceTime(template, index));
+        pending.put(template.getId(), occurrence);
+        queue.add(occurrence);
+    }
+    
+    /**
+     * Get the date of a series' n-th occurrence. Each date is counted from the
+     * template, so month ends do not drift (Jan 31, Feb 28, Mar 31).
+     */
+    private long occurrenceTime(Expense template, int index) {
+        return Instant.ofEpochMilli(template.getSpentAt()).atZone(zone)
+                .plus(interval.multipliedBy(index))
+                .toInstant().toEpochMilli();
+    }
+    
+    private static Expense materialize(Expense template, long spentAt) {
+        Expense occurrence = new Expense(template.getTitle(), template.getAmount(), template.getMode(),
+                true, template.getCategoryId());
+        occurrence.setCurrency(template.getCurrency());
+        occurrence.setSpentAt(spentAt);
+        occurrence.setRecurrenceOf(template.getId());
+        return occurrence;
+    }
+    
+    /**
+     * The next occurrence of one series.
+     */
+    private static final class Occurrence implements Comparable<Occurrence> {
+        final int templateId;
+        final int index;
+        final long dueAt;
+        
+        Occurrence(int templateId, int index, long dueAt) {
+            this.templateId = templateId;
+            this.index = index;
+            this.dueAt = dueAt;
+        }
+        
+        @Override
+        public int compareTo(Occurrence other) {
+            int byTime = Long.compare(dueAt, other.dueAt);
+            return (byTime != 0) ? byTime : Integer.compare(templateId, other.templateId);
+        }
+    }
+}
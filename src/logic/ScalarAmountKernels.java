@@ -0,0 +1,64 @@
+package logic;
+
+/**
+ * Plain-loop implementation of {@link AmountKernels}, used when the Vector API
+ * backend is not available.
+ */
+public final class ScalarAmountKernels implements AmountKernels {
+    
+    public static final ScalarAmountKernels INSTANCE = new ScalarAmountKernels();
+    
+    private ScalarAmountKernels() {
+    }
+    
+    @Override
+    public String getName() {
+        return "scalar";
+    }
+    
+    @Override
+    public long sum(long[] amounts, int length) {
+        long total = 0;
+        for (int i = 0; i < length; i++) {
+            total = Math.addExact(total, amounts[i]);
+        }
+        return total;
+    }
+    
+    @Override
+    public long min(long[] amounts, int length) {
+        long min = Long.MAX_VALUE;
+        for (int i = 0; i < length; i++) {
+            min = Math.min(min, amounts[i]);
+        }
+        return min;
+    }
+    
+    @Override
+    public long max(long[] amounts, int length) {
+        long max = Long.MIN_VALUE;
+        for (int i = 0; i < length; i++) {
+            max = Math.max(max, amounts[i]);
+        }
+        return max;
+    }
+    
+    @Override
+    public int countAtLeast(long[] amounts, int length, long threshold) {
+        int count = 0;
+        for (int i = 0; i < length; i++) {
+            count += (amounts[i] >= threshold) ? 1 : 0;
+        }
+        return count;
+    }
+    
+    @Override
+    public void sumByCode(long[] amounts, byte[] codes, int codeMask, int length, long[] totals) {
+        for (int i = 0; i < length; i++) {
+            int code = codes[i] & codeMask;
+            if (code < totals.length) {
+                totals[code] = Math.addExact(totals[code], amounts[i]);
+            }
+        }
+    }
+}
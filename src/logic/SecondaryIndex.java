@@ -0,0 +1,84 @@
+package logic;
+
+import model.Identifiable;
+
+import java.util.*;
+import java.util.function.Function;
+
+/**
+ * In-memory index that groups the items of a DataManager by one of their fields.
+ * Each group keeps its items in the order they were added.
+ * 
+ * @param <K> The type of the indexed field
+ * @param <T> The type of the indexed items
+ */
+class SecondaryIndex<K, T extends Identifiable> {
+    
+    private final Function<T, K> keyExtractor;
+    private final Map<K, Map<Integer, T>> groups;
+    
+    /**
+     * Create an empty index.
+     * 
+     * @param keyExtractor Function that reads the indexed field from an item
+     */
+    SecondaryIndex(Function<T, K> keyExtractor) {
+        this.keyExtractor = keyExtractor;
+        this.groups = new HashMap<>();
+    }
+    
+    /**
+     * Add an item to the group for its current key.
+     * 
+     * @param item The item to add
+     */
+    void add(T item) {
+        groups.computeIfAbsent(keyExtractor.apply(item), key -> new LinkedHashMap<>())
+              .put(item.getId(), item);
+    }
+    
+    /**
+     * Remove an item from the group for its current key.
+     * 
+     * @param item The item to remove
+     */
+    void remove(T item) {
+        K key = keyExtractor.apply(item);
+        Map<Integer, T> group = groups.get(key);
+        if (group != null) {
+            group.remove(item.getId());
+            if (group.isEmpty()) {
+                groups.remove(key);
+            }
+        }
+    }
+    
+    /**
+     * Remove all items from the index.
+     */
+    void clear() {
+        groups.clear();
+    }
+    
+    /**
+     * Get the items filed under a key.
+     * 
+     * @param key The key to look up
+     * @return A new list of the matching items
+     */
+    List<T> get(K key) {
+        Map<Integer, T> group = groups.get(key);
+        return group == null ? new ArrayList<>() : new ArrayList<>(group.values());
+    }
+    
+    /**
+     * Count the items filed under a key.
+     * 
+     * @param key The key to look up
+     * @return The number of matching items
+     */
+    int count(K key) {
+        Map<Integer, T> group = groups.get(key);
+        return group == null ? 0 : group.size();
+    }
+}
@@ -0,0 +1,105 @@
+package logic;
+
+import model.Identifiable;
+
+import java.util.*;
+
+/**
+ * The items of a DataManager kept sorted by a comparator.
+ * Items that compare equal are ordered by ID, so every item has exactly one
+ * position and can be found by binary search. Adding or removing an item
+ * costs a binary search plus shifting the tail of an array, instead of a
+ * full re-sort. For many changes at once, such as a reload, the view is
+ * marked stale instead and rebuilt with a single sort afterwards.
+ * 
+ * @param <T> The type of the sorted items
+ */
+class SortedView<T extends Identifiable> {
+    
+    private final Comparator<T> order;
+    private final List<T> items;
+    private final List<T> readOnlyItems;
+    
+    // Set while changes are not being applied to the view
+    private boolean stale;
+    
+    /**
+     * Create a view over the given items.
+     * 
+     * @param comparator The comparator that defines the order
+     * @param initialItems The items to sort into the view
+     */
+    SortedView(Comparator<T> comparator, Collection<T> initialItems) {
+        this.order = comparator.thenComparingInt(Identifiable::getId);
+        this.items = new ArrayList<>(initialItems);
+        this.items.sort(order);
+        this.readOnlyItems = Collections.unmodifiableList(items);
+    }
+    
+    /**
+     * Stop applying changes to the view until it is rebuilt.
+     */
+    void invalidate() {
+        stale = true;
+    }
+    
+    /**
+     * Check whether the view has missed changes since it was last built.
+     * 
+     * @return true if the view must be rebuilt before it is read
+     */
+    boolean isStale() {
+        return stale;
+    }
+    
+    /**
+     * Replace the contents of the view with the given items, sorted once.
+     * 
+     * @param currentItems All items of the collection
+     */
+    void rebuild(Collection<T> currentItems) {
+        items.clear();
+        items.addAll(currentItems);
+        items.sort(order);
+        stale = false;
+    }
+    
+    /**
+     * Insert an item at its sorted position.
+     * 
+     * @param item The item to add
+     */
+    void add(T item) {
+        int position = Collections.binarySearch(items, item, order);
+        items.add(position < 0 ? -position - 1 : position, item);
+    }
+    
+    /**
+     * Remove an item from its sorted position.
+     * 
+     * @param item The item to remove, as it was when it was added
+     */
+    void remove(T item) {
+        int position = Collections.binarySearch(items, item, order);
+        if (position >= 0) {
+            items.remove(position);
+        }
+    }
+    
+    /**
+     * Remove all items from the view.
+     */
+    void clear() {
+        items.clear();
+        stale = false;
+    }
+    
+    /**
+     * Get the sorted items.
+     * 
+     * @return A read-only list that follows later changes
+     */
+    List<T> items() {
+        return readOnlyItems;
+    }
+}
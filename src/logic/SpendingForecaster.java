@@ -0,0 +1,248 @@
+package logic;
+
+import model.Expense;
+import utils.IntLongMap;
+
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.zone.ZoneRules;
+import java.util.Arrays;
+
+/**
+ * Forecasts each category's daily spending from its history with two
+ * exponentially weighted models: simple exponential smoothing, which
+ * projects the weighted average daily spend, and a linear trend fitted by
+ * discounted least squares (Brown's linear exponential smoothing), which
+ * also follows spending that is rising or falling.
+ * <p>
+ * A day {@code k} days ago has weight {@code (1 - alpha)^k}. Both models
+ * only need a category's weighted sums of amounts and of amounts times age.
+ * Those sums are kept relative to a fixed anchor day, so adding or removing
+ * an expense is O(1). Removing subtracts what adding added, which undoes it
+ * up to floating-point rounding; a category's first day is kept. The sums
+ * over days, including days with no spending, have closed forms. A forecast
+ * for any number of categories therefore never rescans history.
+ * <p>
+ * A day's weight relative to the anchor is {@code (1 - alpha)^-age}, which
+ * only fits in a double for a limited number of days, fewer the larger
+ * alpha is: about 9 years with the default and 256 days with alpha 0.5.
+ * Expenses further than that from the anchor are left out, and forecasts
+ * for days further than that are 0. {@link #clear()} moves the anchor to
+ * today, which {@link ExpenseManager} does on every reload.
+ * <p>
+ * This class is not thread-safe; {@link ExpenseManager} guards it with its own lock.
+ */
+public class SpendingForecaster {
+    
+    /**
+     * The forecasting models.
+     */
+    public enum Model {
+        /** Simple exponential smoothing: a flat daily rate. */
+        SMOOTHING,
+        /** Linear trend: a daily rate that changes by a fitted slope each day. */
+        TREND
+    }
+    
+    /** Smoothing constant used unless another is given. */
+    public static final double DEFAULT_ALPHA = 0.05;
+    
+    // Largest power of two a growth factor may reach, so that a stored factor
+    // times the forecast's rescaling, the amount, the age and the sum over
+    // many expenses still fit in a double
+    private static final int MAX_GROWTH_EXPONENT = 256;
+    
+    private final double alpha;
+    private final double decay;
+    
+    // Number of days from the anchor at which the growth factor reaches its limit
+    private final long maxAge;
+    private final ZoneId zone;
+    private final ZoneRules zoneRules;
+    
+    // Dense category codes, so the sums can be array indexes
+    private final IntLongMap categoryCodes = new IntLongMap();
+    private int[] categoryIds = new int[16];
+    
+    // Per category: sum of amount * growth^(day - anchor), the same times (day - anchor),
+    // and the first day seen, which starts the category's history
+    private double[] weightedAmounts = new double[16];
+    private double[] weightedAgedAmounts = new double[16];
+    private long[] firstDays = new long[16];
+    private long anchorDay;
+    
+    /**
+     * Create a forecaster with the default smoothing constant in the system time zone.
+     */
+    public SpendingForecaster() {
+        this(DEFAULT_ALPHA, ZoneId.systemDefault());
+    }
+    
+    /**
+     * Create a forecaster.
+     * 
+     * @param alpha The smoothing constant, between 0 and 1 exclusive; larger values follow recent days more closely
+     * @param zone The time zone that decides which day an expense falls on
+     */
+    public SpendingForecaster(double alpha, ZoneId zone) {
+        if (!(alpha > 0 && alpha < 1)) {
+            throw new IllegalArgumentException("Smoothing constant must be between 0 and 1: " + alpha);
+        }
+        this.alpha = alpha;
+        this.decay = 1 - alpha;
+        this.maxAge = (long) (MAX_GROWTH_EXPONENT / -(Math.log(decay) / Math.log(2)));
+        this.zone = zone;
+        this.zoneRules = zone.getRules();
+        this.anchorDay = LocalDate.now(zone).toEpochDay();
+    }
+    
+    /**
+     * Get the smoothing constant.
+     * 
+     * @return The smoothing constant
+     */
+    public double getAlpha() {
+        return alpha;
+    }
+    
+    /**
+     * Add an expense to the history, or take it out. Expenses too far from
+     * the anchor day for their weight to fit in a double are left out.
+     * 
+     * @param expense The expense
+     * @param amount The amount to add in minor units, negative to take the expense out
+     */
+    public void apply(Expense expense, long amount) {
+        long day = SpendingRollup.epochDay(zoneRules, expense.getSpentAt());
+        long age = day - anchorDay;
+        if (Math.abs(age) > maxAge) {
+            return;
+        }
+        int code = categoryCode(expense.getCategoryId());
+        double weighted = amount * Math.pow(decay, -age);
+        weightedAmounts[code] += weighted;
+        weightedAgedAmounts[code] += weighted * age;
+        if (day < firstDays[code]) {
+            firstDays[code] = day;
+        }
+    }
+    
+    /**
+     * Forget all history and move the anchor to today.
+     */
+    public void clear() {
+        categoryCodes.clear();
+        anchorDay = LocalDate.now(zone).toEpochDay();
+    }
+    
+    /**
+     * Forecast a category's total spending over the days after a given day.
+     * 
+     * @param categoryId The ID of the category
+     * @param model The model to forecast with
+     * @param today The last day of history; it counts as a full day
+     * @param days The number of days to forecast
+     * @return The forecast total in minor units, never negative
+     */
+    public long forecast(int categoryId, Model model, LocalDate today, int days) {
+        int code = (int) categoryCodes.get(categoryId, -1);
+        return (code < 0) ? 0 : forecastCode(code, model, today.toEpochDay(), days);
+    }
+    
+    /**
+     * Forecast every category's total spending over the days after a given day.
+     * 
+     * @param model The model to forecast with
+     * @param today The last day of history; it counts as a full day
+     * @param days The number of days to forecast
+     * @return A map of category IDs to forecast totals in minor units
+     */
+    public IntLongMap forecastAll(Model model, LocalDate today, int days) {
+        long day = today.toEpochDay();
+        IntLongMap forecasts = new IntLongMap(categoryCodes.size());
+        for (int code = 0; code < categoryCodes.size(); code++) {
+            forecasts.put(categoryIds[code], forecastCode(code, model, day, days));
+        }
+        return forecasts;
+    }
+    
+    private long forecastCode(int code, Model model, long today, int days) {
+        if (days <= 0 || today < firstDays[code] || Math.abs(today - anchorDay) > maxAge) {
+            return 0;
+        }
+        
+        // Weighted sums over the history, in terms of each day's age k = today - day
+        double scale = Math.pow(decay, today - anchorDay);
+        double sumY = weightedAmounts[code] * scale;
+        double sumKY = ((today - anchorDay) * weightedAmounts[code] - weightedAgedAmounts[code]) * scale;
+        long historyDays = today - firstDays[code];
+        double sumW = weightSum(historyDays);
+        
+        double level;
+        double slope = 0;
+        if (model == Model.SMOOTHING) {
+            level = sumY / sumW;
+        } else {
+            // Fit y = level - slope * k by least squares with weights decay^k
+            double sumK = agedWeightSum(historyDays);
+            double sumKK = squaredAgeWeightSum(historyDays);
+            double denominator = sumW * sumKK - sumK * sumK;
+            if (Math.abs(denominator) < 1e-12 * sumW * sumKK) {
+                // A single day of history has no trend
+                level = sumY / sumW;
+            } else {
+                slope = (sumK * sumY - sumW * sumKY) / denominator;
+                level = (sumY + slope * sumK) / sumW;
+            }
+        }
+        
+        // Sum of level + slope * h for h = 1..days
+        double total = days * level + slope * days * (days + 1) / 2.0;
+        return Math.max(0, Math.round(total));
+    }
+    
+    /**
+     * Sum of decay^k for k = 0..n.
+     */
+    private double weightSum(long n) {
+        return (1 - Math.pow(decay, n + 1)) / alpha;
+    }
+    
+    /**
+     * Sum of k * decay^k for k = 0..n.
+     */
+    private double agedWeightSum(long n) {
+        double dn = Math.pow(decay, n);
+        return decay * (1 - (n + 1) * dn + n * dn * decay) / (alpha * alpha);
+    }
+    
+    /**
+     * Sum of k^2 * decay^k for k = 0..n.
+     */
+    private double squaredAgeWeightSum(long n) {
+        double dn = Math.pow(decay, n);
+        double n2 = (double) n * n;
+        return decay * (1 + decay - (n + 1) * (n + 1) * dn + (2 * n2 + 2 * n - 1) * dn * decay - n2 * dn * decay * decay)
+                / (alpha * alpha * alpha);
+    }
+    
+    private int categoryCode(int categoryId) {
+        int code = (int) categoryCodes.get(categoryId, -1);
+        if (code < 0) {
+            code = categoryCodes.size();
+            categoryCodes.put(categoryId, code);
+            if (code == categoryIds.length) {
+                int capacity = code * 2;
+                categoryIds = Arrays.copyOf(categoryIds, capacity);
+                weightedAmounts = Arrays.copyOf(weightedAmounts, capacity);
+                weightedAgedAmounts = Arrays.copyOf(weightedAgedAmounts, capacity);
+                firstDays = Arrays.copyOf(firstDays, capacity);
+            }
+            categoryIds[code] = categoryId;
+            weightedAmounts[code] = 0;
+            weightedAgedAmounts[code] = 0;
+            firstDays[code] = Long.MAX_VALUE;
+        }
+        return code;
+    }
+}
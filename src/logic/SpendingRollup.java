@@ -0,0 +1,415 @@
+package logic;
+
+import model.Expense;
+import model.Money;
+import utils.IntLongMap;
+
+import java.time.DayOfWeek;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.zone.ZoneRules;
+import java.util.Arrays;
+
+/**
+ * Spending over time, kept as buckets of daily, weekly, monthly and yearly
+ * totals per category and payment mode.
+ * <p>
+ * Every bucket level is updated on each change, so a range query reads a
+ * handful of buckets instead of scanning expenses: the range is split into
+ * whole years, whole months and whole weeks where possible, and days only at
+ * the edges. Buckets are primitive arrays per series, where a series is one
+ * combination of category and mode. Weeks start on Monday and days are
+ * taken in the time zone the rollup was created with.
+ * <p>
+ * This class is not thread-safe; {@link ExpenseManager} guards it with its own lock.
+ */
+public class SpendingRollup {
+    
+    /**
+     * The bucket sizes spending is rolled up to.
+     */
+    public enum Granularity {
+        DAY,
+        WEEK,
+        MONTH,
+        YEAR
+    }
+    
+    private static final long MILLIS_PER_DAY = 24L * 60 * 60 * 1000;
+    
+    // Series per category: one per mode plus one for unknown modes
+    private static final int MODES = Expense.MODE_CODES.length() + 1;
+    
+    private final ZoneId zone;
+    private final ZoneRules zoneRules;
+    
+    // Dense category codes, so series can be array indexes
+    private final IntLongMap categoryCodes = new IntLongMap();
+    private int[] categoryIds = new int[16];
+    
+    private final Level[] levels = new Level[Granularity.values().length];
+    
+    /**
+     * Create an empty rollup that buckets days in the system time zone.
+     */
+    public SpendingRollup() {
+        this(ZoneId.systemDefault());
+    }
+    
+    /**
+     * Create an empty rollup.
+     * 
+     * @param zone The time zone that decides which day an expense falls on
+     */
+    public SpendingRollup(ZoneId zone) {
+        this.zone = zone;
+        this.zoneRules = zone.getRules();
+        for (int i = 0; i < levels.length; i++) {
+            levels[i] = new Level();
+        }
+    }
+    
+    /**
+     * Get the time zone days are taken in.
+     * 
+     * @return The time zone
+     */
+    public ZoneId getZone() {
+        return zone;
+    }
+    
+    /**
+     * Add an expense's amount to its buckets, or take it out of them. The
+     * amount is passed separately so it can be converted to the currency the
+     * buckets are kept in.
+     * 
+     * @param expense The expense
+     * @param amount The amount to add in minor units, negative to take the expense out
+     */
+    public void apply(Expense expense, long amount) {
+        int mode = Expense.modeIndex(expense.getMode());
+        int series = categoryCode(expense.getCategoryId()) * MODES + (mode < 0 ? MODES - 1 : mode);
+        
+        long day = epochDay(expense.getSpentAt());
+        LocalDate date = LocalDate.ofEpochDay(day);
+        levels[Granularity.DAY.ordinal()].add(series, day, amount);
+        levels[Granularity.WEEK.ordinal()].add(series, weekOf(day), amount);
+        levels[Granularity.MONTH.ordinal()].add(series, monthOf(date), amount);
+        levels[Granularity.YEAR.ordinal()].add(series, date.getYear(), amount);
+    }
+    
+    /**
+     * Remove all buckets.
+     */
+    public void clear() {
+        categoryCodes.clear();
+        for (Level level : levels) {
+            level.clear();
+        }
+    }
+    
+    /**
+     * Get the total spending between two dates.
+     * 
+     * @param from The first day of the range
+     * @param to The last day of the range, inclusive
+     * @return The total in minor units
+     */
+    public long getTotal(LocalDate from, LocalDate to) {
+        Range range = new Range(from, to);
+        long total = 0;
+        for (int series = 0; series < seriesCount(); series++) {
+            total = Money.add(total, range.sum(series));
+        }
+        return total;
+    }
+    
+    /**
+     * Get the spending in a category between two dates.
+     * 
+     * @param categoryId The ID of the category
+     * @param from The first day of the range
+     * @param to The last day of the range, inclusive
+     * @return The total in minor units
+     */
+    public long getCategoryTotal(int categoryId, LocalDate from, LocalDate to) {
+        int code = (int) categoryCodes.get(categoryId, -1);
+        if (code < 0) {
+            return 0;
+        }
+        Range range = new Range(from, to);
+        long total = 0;
+        for (int mode = 0; mode < MODES; mode++) {
+            total = Money.add(total, range.sum(code * MODES + mode));
+        }
+        return total;
+    }
+    
+    /**
+     * Get the spending per category between two dates.
+     * 
+     * @param from The first day of the range
+     * @param to The last day of the range, inclusive
+     * @return A map of category IDs to totals in minor units, for every category that has had expenses
+     */
+    public IntLongMap getTotalsByCategory(LocalDate from, LocalDate to) {
+        Range range = new Range(from, to);
+        IntLongMap totals = new IntLongMap(categoryCodes.size());
+        for (int series = 0; series < seriesCount(); series++) {
+            totals.add(categoryIds[series / MODES], range.sum(series));
+        }
+        return totals;
+    }
+    
+    /**
+     * Get the spending per payment mode between two dates.
+     * 
+     * @param from The first day of the range
+     * @param to The last day of the range, inclusive
+     * @return The totals in minor units, indexed like {@link Expense#MODE_CODES}
+     */
+    public long[] getTotalsByMode(LocalDate from, LocalDate to) {
+        Range range = new Range(from, to);
+        long[] totals = new long[Expense.MODE_CODES.length()];
+        for (int series = 0; series < seriesCount(); series++) {
+            int mode = series % MODES;
+            if (mode < totals.length) {
+                totals[mode] = Money.add(totals[mode], range.sum(series));
+            }
+        }
+        return totals;
+    }
+    
+    /**
+     * Get the spending per bucket from the bucket holding one date to the
+     * bucket holding another. The buckets at either end are included whole.
+     * 
+     * @param granularity The bucket size
+     * @param from A date in the first bucket
+     * @param to A date in the last bucket
+     * @return The total of each bucket in minor units, oldest first
+     */
+    public long[] getSeries(Granularity granularity, LocalDate from, LocalDate to) {
+        return getSeries(granularity, from, to, 0, seriesCount());
+    }
+    
+    /**
+     * Get the spending in a category per bucket.
+     * 
+     * @param categoryId The ID of the category
+     * @param granularity The bucket size
+     * @param from A date in the first bucket
+     * @param to A date in the last bucket
+     * @return The total of each bucket in minor units, oldest first
+     * @see #getSeries(Granularity, LocalDate, LocalDate)
+     */
+    public long[] getCategorySeries(int categoryId, Granularity granularity, LocalDate from, LocalDate to) {
+        int code = (int) categoryCodes.get(categoryId, -1);
+        if (code < 0) {
+            return getSeries(granularity, from, to, 0, 0);
+        }
+        return getSeries(granularity, from, to, code * MODES, (code + 1) * MODES);
+    }
+    
+    /**
+     * Get the spending per category over all time, read from the yearly buckets.
+     * 
+     * @return A map of category IDs to totals in minor units
+     */
+    public IntLongMap getTotalsByCategory() {
+        Level years = levels[Granularity.YEAR.ordinal()];
+        IntLongMap totals = new IntLongMap(categoryCodes.size());
+        for (int series = 0; series < seriesCount(); series++) {
+            totals.add(categoryIds[series / MODES], years.sum(series));
+        }
+        return totals;
+    }
+    
+    private long[] getSeries(Granularity granularity, LocalDate from, LocalDate to, int firstSeries, int endSeries) {
+        long first = periodOf(granularity, from);
+        long last = periodOf(granularity, to);
+        if (last < first) {
+            return new long[0];
+        }
+        Level level = levels[granularity.ordinal()];
+        long[] totals = new long[Math.toIntExact(last - first + 1)];
+        for (int series = firstSeries; series < endSeries; series++) {
+            for (int i = 0; i < totals.length; i++) {
+                totals[i] = Money.add(totals[i], level.get(series, first + i));
+            }
+        }
+        return totals;
+    }
+    
+    private int seriesCount() {
+        return categoryCodes.size() * MODES;
+    }
+    
+    private int categoryCode(int categoryId) {
+        int code = (int) categoryCodes.get(categoryId, -1);
+        if (code < 0) {
+            code = categoryCodes.size();
+            categoryCodes.put(categoryId, code);
+            if (code == categoryIds.length) {
+                categoryIds = Arrays.copyOf(categoryIds, code * 2);
+            }
+            categoryIds[code] = categoryId;
+        }
+        return code;
+    }
+    
+    /**
+     * Get the day a moment falls on in the rollup's time zone.
+     */
+    private long epochDay(long epochMillis) {
+        return epochDay(zoneRules, epochMillis);
+    }
+    
+    /**
+     * Get the day a moment falls on in a time zone.
+     * 
+     * @param zoneRules The rules of the time zone
+     * @param epochMillis The moment, in epoch milliseconds
+     * @return The epoch day
+     */
+    static long epochDay(ZoneRules zoneRules, long epochMillis) {
+        long offsetMillis = zoneRules.getOffset(Instant.ofEpochMilli(epochMillis)).getTotalSeconds() * 1000L;
+        return Math.floorDiv(epochMillis + offsetMillis, MILLIS_PER_DAY);
+    }
+    
+    private static long periodOf(Granularity granularity, LocalDate date) {
+        switch (granularity) {
+            case DAY: return date.toEpochDay();
+            case WEEK: return weekOf(date.toEpochDay());
+            case MONTH: return monthOf(date);
+            default: return date.getYear();
+        }
+    }
+    
+    // Day 0, 1970-01-01, was a Thursday, so weeks are shifted to start on Monday
+    private static long weekOf(long epochDay) {
+        return Math.floorDiv(epochDay + 3, 7);
+    }
+    
+    private static long monthOf(LocalDate date) {
+        return date.getYear() * 12L + date.getMonthValue() - 1;
+    }
+    
+    /**
+     * A date range split into the fewest whole buckets, largest first.
+     */
+    private final class Range {
+        private Level[] rangeLevels = new Level[8];
+        private long[] periods = new long[8];
+        private int size;
+        
+        Range(LocalDate from, LocalDate to) {
+            long day = from.toEpochDay();
+            long last = to.toEpochDay();
+            while (day <= last) {
+                LocalDate date = LocalDate.ofEpochDay(day);
+                long end;
+                if (date.getDayOfYear() == 1 && (end = date.plusYears(1).toEpochDay()) <= last + 1) {
+                    addBucket(Granularity.YEAR, date.getYear());
+                } else if (date.getDayOfMonth() == 1 && (end = date.plusMonths(1).toEpochDay()) <= last + 1) {
+                    addBucket(Granularity.MONTH, monthOf(date));
+                } else if (date.getDayOfWeek() == DayOfWeek.MONDAY && (end = day + 7) <= last + 1
+                        && end <= date.withDayOfMonth(1).plusMonths(1).toEpochDay()) {
+                    // Only weeks inside one month, so the range can reach the next whole month
+                    addBucket(Granularity.WEEK, weekOf(day));
+                } else {
+                    end = day + 1;
+                    addBucket(Granularity.DAY, day);
+                }
+                day = end;
+            }
+        }
+        
+        private void addBucket(Granularity granularity, long period) {
+            if (size == periods.length) {
+                rangeLevels = Arrays.copyOf(rangeLevels, size * 2);
+                periods = Arrays.copyOf(periods, size * 2);
+            }
+            rangeLevels[size] = levels[granularity.ordinal()];
+            periods[size] = period;
+            size++;
+        }
+        
+        long sum(int series) {
+            long total = 0;
+            for (int i = 0; i < size; i++) {
+                total = Money.add(total, rangeLevels[i].get(series, periods[i]));
+            }
+            return total;
+        }
+    }
+    
+    /**
+     * The buckets of one granularity: for each series, an array of totals
+     * covering the same span of periods, grown in either direction as needed.
+     */
+    private static final class Level {
+        private long base;
+        private int length;
+        private long[][] buckets = new long[0][];
+        
+        void add(int series, long period, long amount) {
+            ensurePeriod(period);
+            if (series >= buckets.length) {
+                buckets = Arrays.copyOf(buckets, Math.max(series + 1, buckets.length * 2));
+            }
+            if (buckets[series] == null) {
+                buckets[series] = new long[length];
+            }
+            int index = (int) (period - base);
+            buckets[series][index] = Money.add(buckets[series][index], amount);
+        }
+        
+        long get(int series, long period) {
+            if (series >= buckets.length || buckets[series] == null || period < base || period >= base + length) {
+                return 0;
+            }
+            return buckets[series][(int) (period - base)];
+        }
+        
+        long sum(int series) {
+            long total = 0;
+            if (series < buckets.length && buckets[series] != null) {
+                for (long amount : buckets[series]) {
+                    total = Money.add(total, amount);
+                }
+            }
+            return total;
+        }
+        
+        void clear() {
+            base = 0;
+            length = 0;
+            buckets = new long[0][];
+        }
+        
+        private void ensurePeriod(long period) {
+            if (length == 0) {
+                resize(period, 16);
+            } else if (period < base) {
+                resize(Math.min(period, base - length), (int) (base + length - Math.min(period, base - length)));
+            } else if (period >= base + length) {
+                resize(base, Math.toIntExact(Math.max(period - base + 1, 2L * length)));
+            }
+        }
+        
+        private void resize(long newBase, int newLength) {
+            int offset = (int) (base - newBase);
+            for (int series = 0; series < buckets.length; series++) {
+                if (buckets[series] != null) {
+                    long[] grown = new long[newLength];
+                    System.arraycopy(buckets[series], 0, grown, offset, length);
+                    buckets[series] = grown;
+                }
+            }
+            base = newBase;
+            length = newLength;
+        }
+    }
+}
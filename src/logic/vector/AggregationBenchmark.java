@@ -0,0 +1,149 @@
+package logic.vector;
+
+import logic.AmountKernels;
+import logic.ColumnarExpenseStore;
+import logic.ScalarAmountKernels;
+import model.Expense;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.function.DoubleSupplier;
+
+/**
+ * Micro-benchmark comparing the analytics aggregations on boxed Expense lists,
+ * the scalar columnar kernels and the Vector API kernels.
+ * <p>
+ * Usage: {@code java --add-modules jdk.incubator.vector -cp build logic.vector.AggregationBenchmark [rows]}
+ */
+public class AggregationBenchmark {
+    
+    private static final int WARMUP_RUNS = 200;
+    private static final int MEASURED_RUNS = 25;
+    
+    // Keeps results alive so the JIT cannot drop the measured work
+    private static double sink;
+    
+    public static void main(String[] args) {
+        int rows = (args.length > 0) ? Integer.parseInt(args[0]) : 2_000_000;
+        
+        System.out.println("Generating " + rows + " expenses...");
+        List<Expense> expenses = generateExpenses(rows);
+        ColumnarExpenseStore scalarStore = ColumnarExpenseStore.fromExpenses(expenses);
+        scalarStore.setKernels(ScalarAmountKernels.INSTANCE);
+        ColumnarExpenseStore vectorStore = ColumnarExpenseStore.fromExpenses(expenses);
+        vectorStore.setKernels(new VectorAmountKernels());
+        System.out.println("Default backend: " + AmountKernels.DEFAULT.getName());
+        System.out.println();
+        
+        System.out.printf("%-16s %12s %12s %12s %10s %10s%n",
+                "Operation", "boxed (ms)", "scalar (ms)", "vector (ms)", "vs boxed", "vs scalar");
+        
+        compare("sum",
+                () -> boxedSum(expenses),
+                scalarStore::sumAmount,
+                vectorStore::sumAmount);
+        compare("sum by mode",
+                () -> boxedSumByMode(expenses).get('C'),
+                () -> scalarStore.sumByMode()[0],
+                () -> vectorStore.sumByMode()[0]);
+        compare("min + max",
+                () -> boxedMin(expenses) + boxedMax(expenses),
+                () -> scalarStore.minAmount() + scalarStore.maxAmount(),
+                () -> vectorStore.minAmount() + vectorStore.maxAmount());
+        compare("count >= 500.00",
+                () -> boxedCountAtLeast(expenses, 50_000),
+                () -> scalarStore.countAmountAtLeast(50_000),
+                () -> vectorStore.countAmountAtLeast(50_000));
+        
+        System.out.println();
+        System.out.println("Check: sum " + boxedSum(expenses) + " / " + scalarStore.sumAmount() + " / " + vectorStore.sumAmount());
+        System.out.println("Check: by mode " + Arrays.toString(scalarStore.sumByMode()) + " / " + Arrays.toString(vectorStore.sumByMode()));
+    }
+    
+    private static List<Expense> generateExpenses(int rows) {
+        Random random = new Random(42);
+        List<Expense> expenses = new ArrayList<>(rows);
+        for (int i = 1; i <= rows; i++) {
+            expenses.add(new Expense(i, "Expense " + (i % 500), random.nextInt(100_000),
+                    Expense.MODE_CODES.charAt(random.nextInt(Expense.MODE_CODES.length())),
+                    random.nextInt(4) == 0, 1 + random.nextInt(20)));
+        }
+        return expenses;
+    }
+    
+    private static void compare(String name, DoubleSupplier boxed, DoubleSupplier scalar, DoubleSupplier vector) {
+        double boxedMs = time(boxed);
+        double scalarMs = time(scalar);
+        double vectorMs = time(vector);
+        System.out.printf("%-16s %12.3f %12.3f %12.3f %9.1fx %9.1fx%n",
+                name, boxedMs, scalarMs, vectorMs, boxedMs / vectorMs, scalarMs / vectorMs);
+    }
+    
+    /**
+     * Run an operation repeatedly and return the median time of one run in milliseconds.
+     */
+    private static double time(DoubleSupplier operation) {
+        for (int i = 0; i < WARMUP_RUNS; i++) {
+            sink += operation.getAsDouble();
+        }
+        long[] times = new long[MEASURED_RUNS];
+        for (int i = 0; i < MEASURED_RUNS; i++) {
+            long start = System.nanoTime();
+            sink += operation.getAsDouble();
+            times[i] = System.nanoTime() - start;
+        }
+        Arrays.sort(times);
+        return times[MEASURED_RUNS / 2] / 1_000_000.0;
+    }
+    
+    // Baselines in the style of the original ExpenseManager loops
+    
+    private static double boxedSum(List<Expense> expenses) {
+        long total = 0;
+        for (Expense e : expenses) {
+            total = Math.addExact(total, e.getAmount());
+        }
+        return total;
+    }
+    
+    private static Map<Character, Long> boxedSumByMode(List<Expense> expenses) {
+        Map<Character, Long> totals = new HashMap<>();
+        totals.put('C', 0L);
+        totals.put('D', 0L);
+        totals.put('B', 0L);
+        for (Expense e : expenses) {
+            totals.put(e.getMode(), Math.addExact(totals.getOrDefault(e.getMode(), 0L), e.getAmount()));
+        }
+        return totals;
+    }
+    
+    private static double boxedMin(List<Expense> expenses) {
+        long min = Long.MAX_VALUE;
+        for (Expense e : expenses) {
+            min = Math.min(min, e.getAmount());
+        }
+        return min;
+    }
+    
+    private static double boxedMax(List<Expense> expenses) {
+        long max = Long.MIN_VALUE;
+        for (Expense e : expenses) {
+            max = Math.max(max, e.getAmount());
+        }
+        return max;
+    }
+    
+    private static double boxedCountAtLeast(List<Expense> expenses, long threshold) {
+        int count = 0;
+        for (Expense e : expenses) {
+            if (e.getAmount() >= threshold) {
+                count++;
+            }
+        }
+        return count;
+    }
+}
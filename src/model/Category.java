@@ -3,19 +3,21 @@ package model;
 /**
  * Represents a spending category in the expense tracking system.
  */
-public class Category {
+public class Category implements Identifiable {
     private int id;
     private String name;
-    private float monthlyLimit;
+    private long monthlyLimit; // Limit in minor units (paise), see Money
+    private String currency = Money.DEFAULT_CURRENCY; // ISO 4217 code of the limit's currency
     private char priority; // 'H'=High, 'M'=Medium, 'L'=Low
     private boolean isActive;
+    private int userId; // Owning user (tenant)
 
     // Default constructor
     public Category() {
     }
 
     // Parameterized constructor
-    public Category(int id, String name, float monthlyLimit, char priority, boolean isActive) {
+    public Category(int id, String name, long monthlyLimit, char priority, boolean isActive) {
         this.id = id;
         this.name = name;
         this.monthlyLimit = monthlyLimit;
@@ -24,14 +26,22 @@ public class Category {
     }
 
     // Constructor without ID for creating new entries
-    public Category(String name, float monthlyLimit, char priority, boolean isActive) {
+    public Category(String name, long monthlyLimit, char priority, boolean isActive) {
         this.name = name;
         this.monthlyLimit = monthlyLimit;
         this.priority = priority;
         this.isActive = isActive;
     }
 
+    // Copy constructor
+    public Category(Category other) {
+        this(other.id, other.name, other.monthlyLimit, other.priority, other.isActive);
+        this.currency = other.currency;
+        this.userId = other.userId;
+    }
+
     // Getters and Setters
+    @Override
     public int getId() {
         return id;
     }
@@ -48,14 +58,22 @@ public class Category {
         this.name = name;
     }
 
-    public float getMonthlyLimit() {
+    public long getMonthlyLimit() {
         return monthlyLimit;
     }
 
-    public void setMonthlyLimit(float monthlyLimit) {
+    public void setMonthlyLimit(long monthlyLimit) {
         this.monthlyLimit = monthlyLimit;
     }
 
+    public String getCurrency() {
+        return currency;
+    }
+
+    public void setCurrency(String currency) {
+        this.currency = currency;
+    }
+
     public char getPriority() {
         return priority;
     }
@@ -72,8 +90,21 @@ public class Category {
         isActive = active;
     }
 
+    public int getUserId() {
+        return userId;
+    }
+
+    public void setUserId(int userId) {
+        this.userId = userId;
+    }
+
     // Helper method to get priority as string
     public String getPriorityAsString() {
+        return getPriorityAsString(priority);
+    }
+
+    // Helper method to get a priority code as string
+    public static String getPriorityAsString(char priority) {
         switch (priority) {
             case 'H': return "High";
             case 'M': return "Medium";
@@ -87,9 +118,10 @@ public class Category {
         return "Category{" +
                 "id=" + id +
                 ", name='" + name + '\'' +
-                ", monthlyLimit=" + monthlyLimit +
+                ", monthlyLimit=" + Money.format(monthlyLimit, currency) +
                 ", priority=" + getPriorityAsString() +
                 ", isActive=" + isActive +
+                ", userId=" + userId +
                 '}';
     }
 } 
\ No newline at end of file
@@ -1,22 +1,31 @@
 package model;
 
+import java.time.Instant;
+
 /**
  * Represents an expense entry in the expense tracking system.
  */
-public class Expense {
+public class Expense implements Identifiable {
+    // Payment mode codes, in the order used by mode-indexed arrays
+    public static final String MODE_CODES = "CDB";
+
     private int id;
     private String title;
-    private float amount;
+    private long amount; // Amount in minor units (paise), see Money
+    private String currency = Money.DEFAULT_CURRENCY; // ISO 4217 code of the amount's currency
     private char mode; // 'C'=Cash, 'D'=Digital, 'B'=Bank Transfer
     private boolean isRecurring;
     private int categoryId; // Reference to the category table
+    private int userId; // Owning user (tenant)
+    private long spentAt = System.currentTimeMillis(); // When the expense was incurred, epoch milliseconds
+    private int recurrenceOf; // ID of the recurring expense this is an occurrence of, or 0
 
     // Default constructor
     public Expense() {
     }
 
     // Parameterized constructor
-    public Expense(int id, String title, float amount, char mode, boolean isRecurring, int categoryId) {
+    public Expense(int id, String title, long amount, char mode, boolean isRecurring, int categoryId) {
         this.id = id;
         this.title = title;
         this.amount = amount;
@@ -26,7 +35,7 @@ public class Expense {
     }
 
     // Constructor without ID for creating new entries
-    public Expense(String title, float amount, char mode, boolean isRecurring, int categoryId) {
+    public Expense(String title, long amount, char mode, boolean isRecurring, int categoryId) {
         this.title = title;
         this.amount = amount;
         this.mode = mode;
@@ -34,7 +43,17 @@ public class Expense {
         this.categoryId = categoryId;
     }
 
+    // Copy constructor
+    public Expense(Expense other) {
+        this(other.id, other.title, other.amount, other.mode, other.isRecurring, other.categoryId);
+        this.userId = other.userId;
+        this.spentAt = other.spentAt;
+        this.recurrenceOf = other.recurrenceOf;
+        this.currency = other.currency;
+    }
+
     // Getters and Setters
+    @Override
     public int getId() {
         return id;
     }
@@ -51,14 +70,22 @@ public class Expense {
         this.title = title;
     }
 
-    public float getAmount() {
+    public long getAmount() {
         return amount;
     }
 
-    public void setAmount(float amount) {
+    public void setAmount(long amount) {
         this.amount = amount;
     }
 
+    public String getCurrency() {
+        return currency;
+    }
+
+    public void setCurrency(String currency) {
+        this.currency = currency;
+    }
+
     public char getMode() {
         return mode;
     }
@@ -83,8 +110,47 @@ public class Expense {
         this.categoryId = categoryId;
     }
 
+    public int getUserId() {
+        return userId;
+    }
+
+    public void setUserId(int userId) {
+        this.userId = userId;
+    }
+
+    public long getSpentAt() {
+        return spentAt;
+    }
+
+    public void setSpentAt(long spentAt) {
+        this.spentAt = spentAt;
+    }
+
+    public int getRecurrenceOf() {
+        return recurrenceOf;
+    }
+
+    public void setRecurrenceOf(int recurrenceOf) {
+        this.recurrenceOf = recurrenceOf;
+    }
+
+    // Helper method to check whether this expense defines a recurring series,
+    // as opposed to being an occurrence generated from one
+    public boolean isRecurringTemplate() {
+        return isRecurring && recurrenceOf == 0;
+    }
+
+    // Helper method to get the position of a mode code in MODE_CODES, or -1 if unknown
+    public static int modeIndex(char mode) {
+        return MODE_CODES.indexOf(mode);
+    }
+
     // Helper methods to get mode as string
     public String getModeAsString() {
+        return getModeAsString(mode);
+    }
+
+    public static String getModeAsString(char mode) {
         switch (mode) {
             case 'C': return "Cash";
             case 'D': return "Digital";
@@ -98,10 +164,14 @@ public class Expense {
         return "Expense{" +
                 "id=" + id +
                 ", title='" + title + '\'' +
-                ", amount=" + amount +
+                ", amount=" + Money.format(amount) +
+                ", currency=" + currency +
                 ", mode=" + getModeAsString() +
                 ", isRecurring=" + isRecurring +
                 ", categoryId=" + categoryId +
+                ", userId=" + userId +
+                ", spentAt=" + Instant.ofEpochMilli(spentAt) +
+                ", recurrenceOf=" + recurrenceOf +
                 '}';
     }
 } 
\ No newline at end of file
@@ -0,0 +1,14 @@
+package model;
+
+/**
+ * Contract for entities that are identified by a unique integer ID.
+ */
+public interface Identifiable {
+
+    /**
+     * Get the unique ID of the entity.
+     *
+     * @return The entity's ID
+     */
+    int getId();
+}
@@ -0,0 +1,79 @@
+package model;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * Helper methods for money amounts. Amounts are held as a long number of
+ * minor units (paise for rupees, cents for dollars), so sums are exact and can be added in any
+ * order. Arithmetic throws ArithmeticException instead of overflowing.
+ */
+public final class Money {
+    // Number of decimal places in an amount
+    public static final int SCALE = 2;
+
+    // Minor units in one major unit
+    public static final long MINOR_PER_MAJOR = 100;
+
+    // ISO 4217 code of the currency expenses are in unless stated otherwise
+    public static final String DEFAULT_CURRENCY = "INR";
+
+    private Money() {
+    }
+
+    // Exact addition of two amounts
+    public static long add(long a, long b) {
+        return Math.addExact(a, b);
+    }
+
+    // Exact subtraction of two amounts
+    public static long subtract(long a, long b) {
+        return Math.subtractExact(a, b);
+    }
+
+    // Convert a decimal amount, such as a DECIMAL column value, to minor units, rounding half up
+    public static long fromBigDecimal(BigDecimal amount) {
+        return amount.setScale(SCALE, RoundingMode.HALF_UP).unscaledValue().longValueExact();
+    }
+
+    // Convert minor units to a decimal amount with two decimal places
+    public static BigDecimal toBigDecimal(long minorUnits) {
+        return BigDecimal.valueOf(minorUnits, SCALE);
+    }
+
+    // Parse user input such as "1234.5" into minor units
+    public static long parse(String text) {
+        try {
+            return fromBigDecimal(new BigDecimal(text.trim()));
+        } catch (ArithmeticException e) {
+            throw new NumberFormatException("Amount out of range: " + text);
+        }
+    }
+
+    // Format minor units as a plain decimal string such as "1234.50"
+    public static String format(long minorUnits) {
+        return toBigDecimal(minorUnits).toPlainString();
+    }
+
+    // Format minor units with a currency symbol, such as "₹1234.50" or "CHF 1234.50"
+    public static String format(long minorUnits, String currency) {
+        return symbol(currency) + format(minorUnits);
+    }
+
+    // Get the symbol shown before amounts in a currency, or the code and a space if it has none
+    public static String symbol(String currency) {
+        switch (currency) {
+            case "INR": return "₹";
+            case "USD": return "$";
+            case "EUR": return "€";
+            case "GBP": return "£";
+            case "JPY": return "¥";
+            default: return currency + " ";
+        }
+    }
+
+    // Convert minor units to an approximate major amount, for ratios and charts only
+    public static double toMajor(long minorUnits) {
+        return minorUnits / (double) MINOR_PER_MAJOR;
+    }
+}
@@ -1,9 +1,21 @@
 package ui;
 
+import dao.DBConnection;
+import logic.BudgetAlert;
+import logic.BudgetAlertEngine;
 import logic.CategoryManager;
+import logic.ConvertedAmounts;
+import logic.CurrencyRates;
+import logic.DataChangeEvent;
+import logic.DataManager;
 import logic.ExpenseManager;
+import logic.Filter;
+import logic.RecurringExpenseScheduler;
+import logic.SpendingForecaster;
 import model.Category;
 import model.Expense;
+import model.Money;
+import utils.IntLongMap;
 
 import javax.swing.*;
 import javax.swing.border.EmptyBorder;
@@ -17,9 +29,15 @@ import java.awt.event.MouseAdapter;
 import java.awt.event.MouseEvent;
 import java.awt.event.MouseMotionAdapter;
 import java.io.File;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
 import java.util.Comparator;
 import java.util.List;
-import java.util.Map;
+import java.util.function.IntUnaryOperator;
 import java.awt.image.BufferedImage;
 import java.awt.BasicStroke;
 import java.awt.RenderingHints;
@@ -29,7 +47,12 @@ import javax.imageio.ImageIO;
  * Main application class that implements the Swing UI for the Expense Tracker application.
  */
 public class MainApp extends JFrame {
-
+    
+    // Number of days, including today, covered by the recent spending card
+    private static final int RECENT_SPENDING_DAYS = 30;
+    
+    private static final DateTimeFormatter DATE_FORMAT = DateTimeFormatter.ISO_LOCAL_DATE;
+    
     // UI Components
     private JComboBox<String> tableComboBox;
     private JComboBox<String> sortByComboBox;
@@ -60,10 +83,24 @@ public class MainApp extends JFrame {
     // Managers
     private ExpenseManager expenseManager;
     private CategoryManager categoryManager;
+    private BudgetAlertEngine budgetAlerts;
+    private RecurringExpenseScheduler recurringScheduler;
+    
+    // Exchange rates for the currencies expenses can be entered in
+    private CurrencyRates currencyRates;
     
     // Current state
     private String selectedTable;
     private String selectedSortColumn;
+    private Comparator<Expense> expenseOrder = ExpenseManager.getIdComparator();
+    private Comparator<Category> categoryOrder = CategoryManager.getIdComparator();
+    
+    // Set while a manager is in a batch of changes, such as a reload
+    private boolean expenseBatchOpen;
+    private boolean categoryBatchOpen;
+    
+    // Set while a summary refresh is queued on the event thread
+    private boolean summaryUpdatePending;
     
     // New summary panel
     private JPanel mainSummaryPanel;
@@ -72,9 +109,35 @@ public class MainApp extends JFrame {
      * Constructor that initializes the application.
      */
     public MainApp() {
-        // Initialize managers
-        expenseManager = new ExpenseManager();
-        categoryManager = new CategoryManager();
+        // Initialize managers for the selected user
+        int userId = Integer.getInteger("expenseflow.user", DBConnection.DEFAULT_USER_ID);
+        // Concurrent, since the recurring expense scheduler reads it from its own thread
+        expenseManager = new ExpenseManager(userId, true);
+        categoryManager = new CategoryManager(userId);
+        
+        // Report totals in the configured currency, or the rates' base currency
+        currencyRates = CurrencyRates.load();
+        String reportingCurrency = System.getProperty("expenseflow.reportingCurrency", currencyRates.getBase());
+        if (!currencyRates.contains(reportingCurrency)) {
+            System.err.println("No rate for reporting currency " + reportingCurrency + ", using " + currencyRates.getBase());
+            reportingCurrency = currencyRates.getBase();
+        }
+        expenseManager.setReportingCurrency(currencyRates, reportingCurrency);
+        
+        // Track monthly spending against category limits; created first so
+        // its totals are current when the listeners below redraw the summary
+        budgetAlerts = new BudgetAlertEngine(expenseManager, categoryManager);
+        budgetAlerts.addAlertListener(this::budgetAlertRaised);
+        
+        // Add the occurrences of recurring expenses as they fall due; the scheduler
+        // saves them on its own thread and adds them to the table on the event thread
+        recurringScheduler = new RecurringExpenseScheduler(expenseManager);
+        recurringScheduler.start(Duration.ofMinutes(Long.getLong("expenseflow.recurringCheckMinutes", 60)),
+                SwingUtilities::invokeLater);
+        
+        // Keep the table and summary in step with every change to the data
+        expenseManager.addChangeListener(this::expensesChanged);
+        categoryManager.addChangeListener(this::categoriesChanged);
         
         // Set up the JFrame
         setTitle("Expense Tracker");
@@ -401,7 +464,7 @@ public class MainApp extends JFrame {
     
     /**
      * Apply styling to a button.
-     *
+     * 
      * @param button The button to style
      * @param color The main color for the button
      */
@@ -428,7 +491,7 @@ public class MainApp extends JFrame {
     
     /**
      * Apply styling to a checkbox.
-     *
+     * 
      * @param checkBox The checkbox to style
      */
     private void styleCheckBox(JCheckBox checkBox) {
@@ -440,7 +503,7 @@ public class MainApp extends JFrame {
     
     /**
      * Lighten a color by a factor.
-     *
+     * 
      * @param color The color to lighten
      * @param factor The factor to lighten by (0.0 to 1.0)
      * @return The lightened color
@@ -548,52 +611,107 @@ public class MainApp extends JFrame {
     
     /**
      * Handle expense filter checkbox changes.
-     * Ensures only one filter is active at a time and resets to all expenses when a filter is unchecked.
+     * Any combination of filters can be checked; see {@link #getVisibleExpenses()}.
      */
     private void handleFilterChange(JCheckBox changedCheckBox, String filterType) {
         if (!"Expenses".equals(selectedTable)) return;
         
-        // If the filter is being checked, uncheck all other filters
-        if (changedCheckBox.isSelected()) {
-            uncheckAllExpenseFiltersExcept(changedCheckBox);
-            
-            // Apply the selected filter
-            switch (filterType) {
-                case "recurring":
-                    expenseManager.loadRecurringExpenses();
-                    break;
-                case "non-recurring":
-                    expenseManager.loadNonRecurringExpenses();
-                    break;
-                case "cash":
-                    expenseManager.loadExpensesByPaymentMode('C');
-                    break;
-                case "digital":
-                    expenseManager.loadExpensesByPaymentMode('D');
-                    break;
-                case "bank":
-                    expenseManager.loadExpensesByPaymentMode('B');
-                    break;
-            }
-        } else {
-            // If the filter is being unchecked, load all expenses
-            expenseManager.loadData();
-        }
-        
-        // Update display and sorting
-        displayData();
+        // Re-sort and redisplay the filtered data, then update its summary
         sortData();
+        updateSummary();
+    }
+    
+    /**
+     * Build the filter for the checked expense filter boxes.
+     * Checked options of the same kind are combined with OR and the recurring
+     * and payment mode groups with AND, so "Recurring" with "Cash" and "Digital"
+     * shows recurring expenses paid in cash or digitally.
+     * 
+     * @return The filter, or null if no filter is active
+     */
+    private Filter<Expense> getExpenseFilter() {
+        List<Filter<Expense>> recurring = new ArrayList<>();
+        if (recurringCheckBox.isSelected()) recurring.add(ExpenseManager.recurringIs(true));
+        if (nonRecurringCheckBox.isSelected()) recurring.add(ExpenseManager.recurringIs(false));
+        
+        List<Filter<Expense>> modes = new ArrayList<>();
+        if (cashPaymentCheckBox.isSelected()) modes.add(ExpenseManager.modeIs('C'));
+        if (digitalPaymentCheckBox.isSelected()) modes.add(ExpenseManager.modeIs('D'));
+        if (bankTransferCheckBox.isSelected()) modes.add(ExpenseManager.modeIs('B'));
+        
+        List<Filter<Expense>> groups = new ArrayList<>();
+        if (!recurring.isEmpty()) groups.add(Filter.or(recurring));
+        if (!modes.isEmpty()) groups.add(Filter.or(modes));
+        
+        return groups.isEmpty() ? null : Filter.and(groups);
+    }
+    
+    /**
+     * Get the expenses that pass the active expense filters.
+     * 
+     * @return The filtered expenses, or a read-only snapshot of all expenses if no filter is active
+     * @see #getExpenseFilter()
+     */
+    private List<Expense> getVisibleExpenses() {
+        Filter<Expense> filter = getExpenseFilter();
+        return (filter == null) ? expenseManager.getSnapshot() : expenseManager.select(filter);
+    }
+    
+    /**
+     * Check whether any expense filter is active.
+     * 
+     * @return true if an expense filter checkbox is selected, false otherwise
+     */
+    private boolean isExpenseFilterActive() {
+        return recurringCheckBox.isSelected() || nonRecurringCheckBox.isSelected()
+            || cashPaymentCheckBox.isSelected() || digitalPaymentCheckBox.isSelected()
+            || bankTransferCheckBox.isSelected();
     }
     
     /**
-     * Uncheck all expense filter checkboxes except the specified one.
+     * Build the filter for the checked category filter boxes.
+     * Checked options of the same kind are combined with OR and the priority
+     * and status groups with AND.
+     * 
+     * @return The filter, or null if no filter is active
      */
-    private void uncheckAllExpenseFiltersExcept(JCheckBox exceptCheckBox) {
-        if (recurringCheckBox != exceptCheckBox) recurringCheckBox.setSelected(false);
-        if (nonRecurringCheckBox != exceptCheckBox) nonRecurringCheckBox.setSelected(false);
-        if (cashPaymentCheckBox != exceptCheckBox) cashPaymentCheckBox.setSelected(false);
-        if (digitalPaymentCheckBox != exceptCheckBox) digitalPaymentCheckBox.setSelected(false);
-        if (bankTransferCheckBox != exceptCheckBox) bankTransferCheckBox.setSelected(false);
+    private Filter<Category> getCategoryFilter() {
+        List<Filter<Category>> priorities = new ArrayList<>();
+        if (highPriorityCheckBox.isSelected()) priorities.add(CategoryManager.priorityIs('H'));
+        if (mediumPriorityCheckBox.isSelected()) priorities.add(CategoryManager.priorityIs('M'));
+        if (lowPriorityCheckBox.isSelected()) priorities.add(CategoryManager.priorityIs('L'));
+        
+        List<Filter<Category>> statuses = new ArrayList<>();
+        if (activeCheckBox.isSelected()) statuses.add(CategoryManager.activeIs(true));
+        if (inactiveCheckBox.isSelected()) statuses.add(CategoryManager.activeIs(false));
+        
+        List<Filter<Category>> groups = new ArrayList<>();
+        if (!priorities.isEmpty()) groups.add(Filter.or(priorities));
+        if (!statuses.isEmpty()) groups.add(Filter.or(statuses));
+        
+        return groups.isEmpty() ? null : Filter.and(groups);
+    }
+    
+    /**
+     * Get the categories that pass the active category filters.
+     * 
+     * @return The filtered categories, or a read-only snapshot of all categories if no filter is active
+     * @see #getCategoryFilter()
+     */
+    private List<Category> getVisibleCategories() {
+        Filter<Category> filter = getCategoryFilter();
+        return (filter == null) ? categoryManager.getSnapshot() : categoryManager.select(filter);
+    }
+    
+    /**
+     * Check whether any category filter is active.
+     * 
+     * @return true if a category filter checkbox is selected, false otherwise
+     */
+    private boolean isCategoryFilterActive() {
+        return highPriorityCheckBox.isSelected() || mediumPriorityCheckBox.isSelected()
+            || lowPriorityCheckBox.isSelected() || activeCheckBox.isSelected()
+            || inactiveCheckBox.isSelected();
     }
     
     /**
@@ -628,6 +746,7 @@ public class MainApp extends JFrame {
             sortByComboBox.addItem("Amount");
             sortByComboBox.addItem("Payment Mode");
             sortByComboBox.addItem("Recurring");
+            sortByComboBox.addItem("Date");
         } else { // Categories
             sortByComboBox.addItem("ID");
             sortByComboBox.addItem("Name");
@@ -694,46 +813,19 @@ public class MainApp extends JFrame {
      */
     private void fetchData() {
         try {
+            // Pick the display order first, so the reload below is drawn sorted
+            updateSortOrder();
+            
             // Always load categories first regardless of which table is selected
             categoryManager.loadData();
             
+            // Load all expenses; filters are applied in memory when displaying
             if ("Expenses".equals(selectedTable)) {
-                // Apply expense filters if any are active
-                if (recurringCheckBox.isSelected()) {
-                    expenseManager.loadRecurringExpenses();
-                } else if (nonRecurringCheckBox.isSelected()) {
-                    expenseManager.loadNonRecurringExpenses();
-                } else if (cashPaymentCheckBox.isSelected()) {
-                    expenseManager.loadExpensesByPaymentMode('C');
-                } else if (digitalPaymentCheckBox.isSelected()) {
-                    expenseManager.loadExpensesByPaymentMode('D');
-                } else if (bankTransferCheckBox.isSelected()) {
-                    expenseManager.loadExpensesByPaymentMode('B');
-                } else {
-                    expenseManager.loadData(); // No filter active, load all expenses
-                }
-            } else { // Categories
-                // Apply category filters if any are active
-                if (highPriorityCheckBox.isSelected()) {
-                    loadCategoriesByPriority('H');
-                } else if (mediumPriorityCheckBox.isSelected()) {
-                    loadCategoriesByPriority('M');
-                } else if (lowPriorityCheckBox.isSelected()) {
-                    loadCategoriesByPriority('L');
-                } else if (activeCheckBox.isSelected()) {
-                    loadCategoriesByActiveStatus(true);
-                } else if (inactiveCheckBox.isSelected()) {
-                    loadCategoriesByActiveStatus(false);
-                }
-                // No else needed - categories are already loaded above
+                expenseManager.loadData();
             }
             
-            // Sort the data before displaying
-            sortData();
-            
-            // Display data and update summary
-            displayData();
-            updateSummary();
+            // Each load is a batch of changes, and the change listeners redraw
+            // the table and summary when it ends
             
         } catch (Exception ex) {
             JOptionPane.showMessageDialog(this, 
@@ -751,48 +843,84 @@ public class MainApp extends JFrame {
         
         // Set up columns based on the selected table
         if ("Expenses".equals(selectedTable)) {
-            tableModel.setColumnIdentifiers(new String[]{"ID", "Title", "Amount", "Payment Mode", "Recurring", "Category"});
+            tableModel.setColumnIdentifiers(new String[]{"ID", "Title", "Amount", "Payment Mode", "Recurring", "Category", "Date"});
             
-            // Display expenses using for-each loop
-            for (Expense expense : expenseManager.getAll()) {
+            // Display expenses in the selected sort order
+            for (Expense expense : getSortedVisibleExpenses()) {
                 addExpenseToTable(expense);
             }
             
         } else { // Categories
             tableModel.setColumnIdentifiers(new String[]{"ID", "Name", "Monthly Limit", "Priority", "Active"});
             
-            // Display categories using for-each loop
-            for (Category category : categoryManager.getAll()) {
+            // Display categories in the selected sort order
+            for (Category category : getSortedVisibleCategories()) {
                 addCategoryToTable(category);
             }
         }
     }
     
+    /**
+     * Get the visible expenses in the selected sort order. Without a filter
+     * this is the expense manager's sorted view, which is kept sorted as
+     * expenses change; filtered expenses are sorted on the spot. Either way
+     * expenses that compare equal are ordered by ID.
+     * 
+     * @return The sorted visible expenses
+     */
+    private List<Expense> getSortedVisibleExpenses() {
+        if (!isExpenseFilterActive()) {
+            return expenseManager.getSortedView(expenseOrder);
+        }
+        List<Expense> expenses = getVisibleExpenses();
+        expenses.sort(expenseOrder.thenComparingInt(Expense::getId));
+        return expenses;
+    }
+    
+    /**
+     * Get the visible categories in the selected sort order.
+     * 
+     * @return The sorted visible categories
+     * @see #getSortedVisibleExpenses()
+     */
+    private List<Category> getSortedVisibleCategories() {
+        if (!isCategoryFilterActive()) {
+            return categoryManager.getSortedView(categoryOrder);
+        }
+        List<Category> categories = getVisibleCategories();
+        categories.sort(categoryOrder.thenComparingInt(Category::getId));
+        return categories;
+    }
+    
     /**
      * Add an expense to the table model.
      * 
      * @param expense The expense to add
      */
     private void addExpenseToTable(Expense expense) {
+        tableModel.addRow(toExpenseRow(expense));
+    }
+    
+    /**
+     * Build the table cells for an expense.
+     * 
+     * @param expense The expense to show
+     * @return The row of cells
+     */
+    private Object[] toExpenseRow(Expense expense) {
         // Get category name for the expense
-        String categoryName = "Unknown";
-        for (Category category : categoryManager.getAll()) {
-            if (category.getId() == expense.getCategoryId()) {
-                categoryName = category.getName();
-                break;
-            }
-        }
+        Category category = categoryManager.getById(expense.getCategoryId());
+        String categoryName = (category != null) ? category.getName() : "Unknown";
         
-        Object[] row = {
+        return new Object[] {
             expense.getId(),
             expense.getTitle(),
-            String.format("₹%.2f", expense.getAmount()),
+            Money.format(expense.getAmount(), expense.getCurrency()),
             expense.getModeAsString(),
             expense.isRecurring() ? "Yes" : "No",
-            categoryName
+            categoryName,
+            DATE_FORMAT.format(Instant.ofEpochMilli(expense.getSpentAt()).atZone(ZoneId.systemDefault()))
         };
-        
-        tableModel.addRow(row);
     }
     
     /**
@@ -801,35 +929,252 @@ public class MainApp extends JFrame {
      * @param category The category to add
      */
     private void addCategoryToTable(Category category) {
-        Object[] row = {
+        tableModel.addRow(toCategoryRow(category));
+    }
+    
+    /**
+     * Build the table cells for a category.
+     * 
+     * @param category The category to show
+     * @return The row of cells
+     */
+    private Object[] toCategoryRow(Category category) {
+        return new Object[] {
             category.getId(),
             category.getName(),
-            String.format("₹%.2f", category.getMonthlyLimit()),
+            Money.format(category.getMonthlyLimit(), category.getCurrency()),
             category.getPriorityAsString(),
             category.isActive() ? "Yes" : "No"
         };
+    }
+    
+    /**
+     * Apply a change of the expense collection to the table and summary.
+     * A single change only inserts, replaces or removes the affected row,
+     * found by binary search, and queues one summary refresh for the whole
+     * burst of changes; a batch, such as a reload, redraws the table once
+     * when it ends.
+     * 
+     * @param event The change
+     */
+    private void expensesChanged(DataChangeEvent<Expense> event) {
+        switch (event.getType()) {
+            case BATCH_BEGIN:
+                expenseBatchOpen = true;
+                return;
+            case BATCH_END:
+                expenseBatchOpen = false;
+                if ("Expenses".equals(selectedTable)) {
+                    displayData();
+                    updateSummary();
+                }
+                return;
+            default:
+                if (expenseBatchOpen || !"Expenses".equals(selectedTable)) {
+                    return;
+                }
+        }
         
-        tableModel.addRow(row);
+        Filter<Expense> filter = getExpenseFilter();
+        Comparator<Expense> rowOrder = expenseOrder.thenComparingInt(Expense::getId);
+        switch (event.getType()) {
+            case ADDED:
+            case UPDATED:
+            case REMOVED:
+                if (event.getType() != DataChangeEvent.Type.ADDED) {
+                    // The row shows the previous version of an updated expense
+                    Expense shown = (event.getPrevious() != null) ? event.getPrevious() : event.getItem();
+                    removeTableRow(shown.getId(), id -> rowOrder.compare(shown,
+                            (id == shown.getId()) ? shown : expenseManager.getById(id)));
+                }
+                if (event.getType() == DataChangeEvent.Type.REMOVED) {
+                    break;
+                }
+                Expense expense = event.getItem();
+                if (filter == null || filter.test(expense)) {
+                    int row = findInsertionRow(id -> rowOrder.compare(expense, expenseManager.getById(id)));
+                    tableModel.insertRow(row, toExpenseRow(expense));
+                }
+                break;
+            case CLEARED:
+                tableModel.setRowCount(0);
+                break;
+            default:
+                break;
+        }
+        scheduleSummaryUpdate();
+    }
+    
+    /**
+     * Apply a change of the category collection to the table and summary.
+     * 
+     * @param event The change
+     * @see #expensesChanged(DataChangeEvent)
+     */
+    private void categoriesChanged(DataChangeEvent<Category> event) {
+        switch (event.getType()) {
+            case BATCH_BEGIN:
+                categoryBatchOpen = true;
+                return;
+            case BATCH_END:
+                categoryBatchOpen = false;
+                if ("Categories".equals(selectedTable)) {
+                    displayData();
+                    updateSummary();
+                }
+                return;
+            default:
+                if (categoryBatchOpen || !"Categories".equals(selectedTable)) {
+                    return;
+                }
+        }
+        
+        Filter<Category> filter = getCategoryFilter();
+        Comparator<Category> rowOrder = categoryOrder.thenComparingInt(Category::getId);
+        switch (event.getType()) {
+            case ADDED:
+            case UPDATED:
+            case REMOVED:
+                if (event.getType() != DataChangeEvent.Type.ADDED) {
+                    Category shown = (event.getPrevious() != null) ? event.getPrevious() : event.getItem();
+                    removeTableRow(shown.getId(), id -> rowOrder.compare(shown,
+                            (id == shown.getId()) ? shown : categoryManager.getById(id)));
+                }
+                if (event.getType() == DataChangeEvent.Type.REMOVED) {
+                    break;
+                }
+                Category category = event.getItem();
+                if (filter == null || filter.test(category)) {
+                    int row = findInsertionRow(id -> rowOrder.compare(category, categoryManager.getById(id)));
+                    tableModel.insertRow(row, toCategoryRow(category));
+                }
+                break;
+            case CLEARED:
+                tableModel.setRowCount(0);
+                break;
+            default:
+                break;
+        }
+        scheduleSummaryUpdate();
+    }
+    
+    /**
+     * Warn the user when a change takes a category to a budget threshold.
+     * The warning is shown once the current change has been fully applied.
+     * 
+     * @param alert The threshold crossing
+     */
+    private void budgetAlertRaised(BudgetAlert alert) {
+        if (!alert.isReached()) {
+            return;
+        }
+        String message = String.format("%s has reached %d%% of its monthly limit.%nSpent this month: %s of %s",
+                alert.getCategory().getName(), alert.getThreshold(),
+                Money.format(alert.getSpent(), alert.getCurrency()), Money.format(alert.getLimit(), alert.getCurrency()));
+        SwingUtilities.invokeLater(() -> JOptionPane.showMessageDialog(this, 
+                message, 
+                "Budget Alert", JOptionPane.WARNING_MESSAGE));
+    }
+    
+    /**
+     * Remove the table row showing the item with the given ID, if there is one.
+     * The table is in display order, so the row is found by binary search;
+     * the whole table is only scanned if the search misses while no filter
+     * hides rows, which means the display order went out of date.
+     * 
+     * @param id The ID in the first column
+     * @param compareToRow Compares the item as shown with the item whose ID is given
+     */
+    private void removeTableRow(int id, IntUnaryOperator compareToRow) {
+        int row = findInsertionRow(compareToRow);
+        if (row < tableModel.getRowCount() && (int) tableModel.getValueAt(row, 0) == id) {
+            tableModel.removeRow(row);
+            return;
+        }
+        
+        boolean filtered = "Expenses".equals(selectedTable) ? isExpenseFilterActive() : isCategoryFilterActive();
+        if (filtered) {
+            return;
+        }
+        for (row = 0; row < tableModel.getRowCount(); row++) {
+            if ((int) tableModel.getValueAt(row, 0) == id) {
+                tableModel.removeRow(row);
+                return;
+            }
+        }
+    }
+    
+    /**
+     * Refresh the summary once the current burst of changes has been applied.
+     * Every change in the burst asks for a refresh, but only one runs.
+     */
+    private void scheduleSummaryUpdate() {
+        if (summaryUpdatePending) {
+            return;
+        }
+        summaryUpdatePending = true;
+        SwingUtilities.invokeLater(() -> {
+            summaryUpdatePending = false;
+            updateSummary();
+        });
+    }
+    
+    /**
+     * Binary search the table, which is in display order, for the row at which
+     * a new item belongs.
+     * 
+     * @param compareToRow Compares the new item with the item whose ID is given
+     * @return The row index to insert at
+     */
+    private int findInsertionRow(IntUnaryOperator compareToRow) {
+        int low = 0;
+        int high = tableModel.getRowCount();
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (compareToRow.applyAsInt((int) tableModel.getValueAt(middle, 0)) > 0) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
     }
     
     /**
      * Sort data based on the selected column.
+     * Only the display order changes; the managers keep a sorted view per
+     * comparator, so switching back to an earlier order does not sort again.
      */
     private void sortData() {
         System.out.println("Executing sortData() with column: " + selectedSortColumn);
         
+        updateSortOrder();
+        try {
+            // Refresh the display
+            displayData();
+            System.out.println("Data sorted successfully by: " + selectedSortColumn);
+        } catch (Exception ex) {
+            System.err.println("Error sorting data: " + ex.getMessage());
+            ex.printStackTrace();
+        }
+    }
+    
+    /**
+     * Choose the display order for the selected table from the selected sort column.
+     */
+    private void updateSortOrder() {
         if ("Expenses".equals(selectedTable)) {
             Comparator<Expense> comparator = null;
             
             switch (selectedSortColumn) {
                 case "ID":
-                    comparator = Comparator.comparing(Expense::getId);
+                    comparator = ExpenseManager.getIdComparator();
                     break;
                 case "Title":
                     comparator = ExpenseManager.getTitleComparator();
                     break;
                 case "Amount":
-                    comparator = ExpenseManager.getAmountComparator(true);
+                    comparator = expenseManager.getAmountComparator(true);
                     break;
                 case "Payment Mode":
                     comparator = ExpenseManager.getModeComparator();
@@ -837,35 +1182,23 @@ public class MainApp extends JFrame {
                 case "Recurring":
                     comparator = ExpenseManager.getRecurringComparator();
                     break;
+                case "Date":
+                    comparator = ExpenseManager.getDateComparator();
+                    break;
                 default:
                     System.out.println("Warning: Unknown sort column for Expenses: " + selectedSortColumn);
-                    comparator = Comparator.comparing(Expense::getId); // Default to ID
+                    comparator = ExpenseManager.getIdComparator(); // Default to ID
                     break;
             }
             
-            try {
-                List<Expense> sortedExpenses = expenseManager.sort(comparator);
-                
-                // Update the expense manager with the sorted list
-                expenseManager.clear();
-                for (Expense expense : sortedExpenses) {
-                    expenseManager.add(expense);
-                }
-                
-                // Refresh the display
-                displayData();
-                System.out.println("Expenses sorted successfully by: " + selectedSortColumn);
-            } catch (Exception ex) {
-                System.err.println("Error sorting expenses: " + ex.getMessage());
-                ex.printStackTrace();
-            }
+            expenseOrder = comparator;
             
         } else { // Categories
             Comparator<Category> comparator = null;
             
             switch (selectedSortColumn) {
                 case "ID":
-                    comparator = Comparator.comparing(Category::getId);
+                    comparator = CategoryManager.getIdComparator();
                     break;
                 case "Name":
                     comparator = CategoryManager.getNameComparator();
@@ -881,26 +1214,11 @@ public class MainApp extends JFrame {
                     break;
                 default:
                     System.out.println("Warning: Unknown sort column for Categories: " + selectedSortColumn);
-                    comparator = Comparator.comparing(Category::getId); // Default to ID
+                    comparator = CategoryManager.getIdComparator(); // Default to ID
                     break;
             }
             
-            try {
-                List<Category> sortedCategories = categoryManager.sort(comparator);
-                
-                // Update the category manager with the sorted list
-                categoryManager.clear();
-                for (Category category : sortedCategories) {
-                    categoryManager.add(category);
-                }
-                
-                // Refresh the display
-                displayData();
-                System.out.println("Categories sorted successfully by: " + selectedSortColumn);
-            } catch (Exception ex) {
-                System.err.println("Error sorting categories: " + ex.getMessage());
-                ex.printStackTrace();
-            }
+            categoryOrder = comparator;
         }
     }
     
@@ -915,59 +1233,126 @@ public class MainApp extends JFrame {
         JPanel cardsContainer = new JPanel(new FlowLayout(FlowLayout.LEFT, 20, 10));
         cardsContainer.setBackground(new Color(245, 245, 250));
         
+        // Totals are shown in the reporting currency
+        CurrencyRates.Converter converter = expenseManager.getReportingConverter();
+        String currency = converter.getTarget();
+        String symbol = Money.symbol(currency);
+        
         if ("Expenses".equals(selectedTable)) {
-            float totalAmount = expenseManager.calculateTotalAmount();
+            // Summarize only the filtered expenses when a filter is active, leaving
+            // out those in a currency without a rate as the running totals do
+            List<Expense> filteredExpenses = isExpenseFilterActive() ? getVisibleExpenses() : null;
+            List<Expense> visibleExpenses = (filteredExpenses != null)
+                    ? ExpenseManager.selectConvertible(filteredExpenses, converter) : null;
+            int unconvertedCount = (visibleExpenses != null)
+                    ? filteredExpenses.size() - visibleExpenses.size()
+                    : expenseManager.getUnconvertedCount();
+            long totalAmount = (visibleExpenses != null)
+                    ? ExpenseManager.calculateTotalAmount(visibleExpenses, converter)
+                    : expenseManager.calculateTotalAmount();
+            int expenseCount = (visibleExpenses != null) ? visibleExpenses.size() : expenseManager.size() - unconvertedCount;
             
             // Card 1: Total expenses count
             JPanel countCard = createSummaryCard("Total Expenses", 
-                    String.format("%d", expenseManager.size()), 
+                    String.format("%d", expenseCount), 
                     new Color(100, 150, 220));
             cardsContainer.add(countCard);
             
             // Card 2: Total amount
             JPanel amountCard = createSummaryCard("Total Amount", 
-                    String.format("₹%.2f", totalAmount), 
+                    Money.format(totalAmount, currency), 
                     new Color(76, 175, 80));
             cardsContainer.add(amountCard);
             
+            // Expenses that could not be converted are counted separately rather than at face value
+            if (unconvertedCount > 0) {
+                JPanel unconvertedCard = createSummaryCard("Not Converted", 
+                        String.format("%d", unconvertedCount), 
+                        new Color(158, 158, 158));
+                unconvertedCard.setToolTipText("Expenses in " + String.join(", ", expenseManager.getUnconvertedCurrencies())
+                        + " have no rate into " + currency + " and are left out of the totals");
+                cardsContainer.add(unconvertedCard);
+            }
+            
+            // Card 3: Largest expense, found without sorting
+            List<Expense> largest = (visibleExpenses != null)
+                    ? ExpenseManager.getLargestExpenses(visibleExpenses, converter, 1)
+                    : expenseManager.getLargestExpenses(1);
+            if (!largest.isEmpty()) {
+                JPanel largestCard = createSummaryCard("Largest Expense", 
+                        Money.format(largest.get(0).getAmount(), largest.get(0).getCurrency()), 
+                        new Color(233, 30, 99));
+                largestCard.setToolTipText(largest.get(0).getTitle());
+                cardsContainer.add(largestCard);
+            }
+            
+            // Recent spending, read from the daily buckets when unfiltered
+            LocalDate today = LocalDate.now();
+            LocalDate recentStart = today.minusDays(RECENT_SPENDING_DAYS - 1);
+            long recentAmount;
+            if (visibleExpenses != null) {
+                long since = recentStart.atStartOfDay(ZoneId.systemDefault()).toInstant().toEpochMilli();
+                long until = today.plusDays(1).atStartOfDay(ZoneId.systemDefault()).toInstant().toEpochMilli();
+                ConvertedAmounts amounts = new ConvertedAmounts(converter);
+                recentAmount = 0;
+                for (Expense expense : visibleExpenses) {
+                    if (expense.getSpentAt() >= since && expense.getSpentAt() < until) {
+                        recentAmount = Money.add(recentAmount, amounts.applyAsLong(expense));
+                    }
+                }
+            } else {
+                recentAmount = expenseManager.getTotalBetween(recentStart, today);
+            }
+            JPanel recentCard = createSummaryCard("Last " + RECENT_SPENDING_DAYS + " Days", 
+                    Money.format(recentAmount, currency), 
+                    new Color(63, 81, 181));
+            cardsContainer.add(recentCard);
+            
+            // Projected spending for the whole month, from the trend forecasts of all categories
+            if (visibleExpenses == null && expenseCount > 0) {
+                long forecastAmount = expenseManager.getMonthEndForecasts(SpendingForecaster.Model.TREND).sum();
+                JPanel forecastCard = createSummaryCard("Month-End Forecast", 
+                        Money.format(forecastAmount, currency), 
+                        new Color(96, 125, 139));
+                forecastCard.setToolTipText("Spent so far this month plus the forecast for the remaining days");
+                cardsContainer.add(forecastCard);
+            }
+            
             // Payment mode breakdown
-            Map<Character, Float> modeAmounts = expenseManager.calculateTotalByMode();
+            long[] modeAmounts = (visibleExpenses != null)
+                    ? ExpenseManager.calculateTotalByMode(visibleExpenses, converter)
+                    : expenseManager.calculateTotalByMode();
             
             // Cash
-            float cashAmount = modeAmounts.getOrDefault('C', 0f);
+            long cashAmount = modeAmounts[Expense.modeIndex('C')];
             if (cashAmount > 0) {
                 JPanel cashCard = createSummaryCard("Cash", 
-                        String.format("₹%.2f (%.1f%%)", cashAmount, (cashAmount / totalAmount) * 100),
+                        String.format("%s%s (%.1f%%)", symbol, Money.format(cashAmount), ((double) cashAmount / totalAmount) * 100),
                         new Color(255, 152, 0));
                 cardsContainer.add(cashCard);
             }
             
             // Digital
-            float digitalAmount = modeAmounts.getOrDefault('D', 0f);
+            long digitalAmount = modeAmounts[Expense.modeIndex('D')];
             if (digitalAmount > 0) {
                 JPanel digitalCard = createSummaryCard("Digital", 
-                        String.format("₹%.2f (%.1f%%)", digitalAmount, (digitalAmount / totalAmount) * 100),
+                        String.format("%s%s (%.1f%%)", symbol, Money.format(digitalAmount), ((double) digitalAmount / totalAmount) * 100),
                         new Color(123, 104, 238));
                 cardsContainer.add(digitalCard);
             }
             
             // Bank Transfer
-            float bankAmount = modeAmounts.getOrDefault('B', 0f);
+            long bankAmount = modeAmounts[Expense.modeIndex('B')];
             if (bankAmount > 0) {
                 JPanel bankCard = createSummaryCard("Bank Transfer", 
-                        String.format("₹%.2f (%.1f%%)", bankAmount, (bankAmount / totalAmount) * 100),
+                        String.format("%s%s (%.1f%%)", symbol, Money.format(bankAmount), ((double) bankAmount / totalAmount) * 100),
                         new Color(0, 150, 136));
                 cardsContainer.add(bankCard);
             }
             
         } else { // Categories
-            // Card 1: Total categories count
-            JPanel countCard = createSummaryCard("Total Categories", 
-                    String.format("%d", categoryManager.size()), 
-                    new Color(100, 150, 220));
-            cardsContainer.add(countCard);
-            
-            // Count categories by priority
+            // Count categories by priority and active status
+            int categoryCount;
             int highPriority = 0;
             int mediumPriority = 0;
             int lowPriority = 0;
@@ -975,22 +1360,47 @@ public class MainApp extends JFrame {
             int activeCount = 0;
             int inactiveCount = 0;
             
-            for (Category category : categoryManager.getAll()) {
-                // Count by priority
-                switch (category.getPriority()) {
-                    case 'H': highPriority++; break;
-                    case 'M': mediumPriority++; break;
-                    case 'L': lowPriority++; break;
-                }
-                
-                // Count by active status
-                if (category.isActive()) {
-                    activeCount++;
-                } else {
-                    inactiveCount++;
+            // Limits may be set in different currencies, so they are compared in the reporting currency
+            Comparator<Category> reportingLimitOrder = Comparator.comparingLong(expenseManager::toReportingLimit);
+            List<Category> highestLimit;
+            
+            if (isCategoryFilterActive()) {
+                // Summarize only the filtered categories
+                List<Category> visibleCategories = getVisibleCategories();
+                categoryCount = visibleCategories.size();
+                highestLimit = DataManager.topK(visibleCategories, reportingLimitOrder, 1);
+                for (Category category : visibleCategories) {
+                    // Count by priority
+                    switch (category.getPriority()) {
+                        case 'H': highPriority++; break;
+                        case 'M': mediumPriority++; break;
+                        case 'L': lowPriority++; break;
+                    }
+                    
+                    // Count by active status
+                    if (category.isActive()) {
+                        activeCount++;
+                    } else {
+                        inactiveCount++;
+                    }
                 }
+            } else {
+                // Read the counts from the category manager's indexes
+                categoryCount = categoryManager.size();
+                highestLimit = DataManager.topK(categoryManager.getSnapshot(), reportingLimitOrder, 1);
+                highPriority = categoryManager.countByPriority('H');
+                mediumPriority = categoryManager.countByPriority('M');
+                lowPriority = categoryManager.countByPriority('L');
+                activeCount = categoryManager.countByActiveStatus(true);
+                inactiveCount = categoryManager.countByActiveStatus(false);
             }
             
+            // Card 1: Total categories count
+            JPanel countCard = createSummaryCard("Total Categories", 
+                    String.format("%d", categoryCount), 
+                    new Color(100, 150, 220));
+            cardsContainer.add(countCard);
+            
             // Card 2: High Priority
             if (highPriority > 0) {
                 JPanel highCard = createSummaryCard("High Priority", 
@@ -1030,6 +1440,42 @@ public class MainApp extends JFrame {
                         new Color(158, 158, 158));
                 cardsContainer.add(inactiveCard);
             }
+            
+            // Card 7: Highest monthly limit
+            if (!highestLimit.isEmpty()) {
+                JPanel limitCard = createSummaryCard("Highest Limit", 
+                        Money.format(highestLimit.get(0).getMonthlyLimit(), highestLimit.get(0).getCurrency()), 
+                        new Color(121, 85, 72));
+                limitCard.setToolTipText(highestLimit.get(0).getName());
+                cardsContainer.add(limitCard);
+            }
+            
+            // Card 8: Categories over their limit this month, from the alert engine
+            int overBudget = budgetAlerts.countAtThreshold(100);
+            if (overBudget > 0) {
+                JPanel overBudgetCard = createSummaryCard("Over Budget", 
+                        String.format("%d", overBudget), 
+                        new Color(244, 67, 54));
+                cardsContainer.add(overBudgetCard);
+            }
+            
+            // Card 9: Categories forecast to end the month over their limit
+            IntLongMap forecasts = expenseManager.getMonthEndForecasts(SpendingForecaster.Model.TREND);
+            int forecastOverBudget = 0;
+            for (int i = 0; i < forecasts.size(); i++) {
+                Category category = categoryManager.getById(forecasts.keyAt(i));
+                long limit = (category != null) ? expenseManager.toReportingLimit(category) : 0;
+                if (limit > 0 && forecasts.valueAt(i) > limit) {
+                    forecastOverBudget++;
+                }
+            }
+            if (forecastOverBudget > 0) {
+                JPanel forecastCard = createSummaryCard("Forecast Over Budget", 
+                        String.format("%d", forecastOverBudget), 
+                        new Color(255, 112, 67));
+                forecastCard.setToolTipText("Categories projected to exceed their monthly limit by the end of the month");
+                cardsContainer.add(forecastCard);
+            }
         }
         
         // Add the cards container to the main summary panel
@@ -1042,7 +1488,7 @@ public class MainApp extends JFrame {
     
     /**
      * Create a styled card for the summary panel.
-     *
+     * 
      * @param title The card title
      * @param value The value to display
      * @param color The accent color for the card
@@ -1102,7 +1548,7 @@ public class MainApp extends JFrame {
     
     /**
      * Style a dialog to match the application's look and feel.
-     *
+     * 
      * @param dialog The dialog to style
      * @param title The dialog title
      */
@@ -1140,7 +1586,7 @@ public class MainApp extends JFrame {
     
     /**
      * Add drag capability to a dialog via its title label.
-     *
+     * 
      * @param dialog The dialog to make draggable
      * @param titleComponent The component (usually a label) to use as the drag handle
      */
@@ -1175,7 +1621,7 @@ public class MainApp extends JFrame {
     
     /**
      * Style a form label.
-     *
+     * 
      * @param label The label to style
      */
     private void styleFormLabel(JLabel label) {
@@ -1185,7 +1631,7 @@ public class MainApp extends JFrame {
     
     /**
      * Style a text field.
-     *
+     * 
      * @param textField The text field to style
      */
     private void styleTextField(JTextField textField) {
@@ -1195,6 +1641,37 @@ public class MainApp extends JFrame {
                 BorderFactory.createEmptyBorder(5, 5, 5, 5)));
     }
     
+    /**
+     * Create a dropdown of the currencies with exchange rates.
+     * 
+     * @param selected The currency to select, added to the list if it has no rate
+     * @return The dropdown
+     */
+    private JComboBox<String> createCurrencyComboBox(String selected) {
+        JComboBox<String> currencyComboBox = new JComboBox<>(currencyRates.getCurrencies().toArray(new String[0]));
+        if (!currencyRates.contains(selected)) {
+            currencyComboBox.addItem(selected);
+        }
+        currencyComboBox.setSelectedItem(selected);
+        currencyComboBox.setFont(new Font("Segoe UI", Font.PLAIN, 14));
+        return currencyComboBox;
+    }
+    
+    /**
+     * Lay out an amount field with its currency dropdown on one row.
+     * 
+     * @param amountField The amount field
+     * @param currencyComboBox The currency dropdown
+     * @return A panel holding both
+     */
+    private JPanel createAmountPanel(JTextField amountField, JComboBox<String> currencyComboBox) {
+        JPanel amountPanel = new JPanel(new BorderLayout(5, 0));
+        amountPanel.setBackground(new Color(245, 245, 250));
+        amountPanel.add(amountField, BorderLayout.CENTER);
+        amountPanel.add(currencyComboBox, BorderLayout.EAST);
+        return amountPanel;
+    }
+    
     /**
      * Show a dialog to add a new expense.
      */
@@ -1224,6 +1701,8 @@ public class MainApp extends JFrame {
         JTextField amountField = new JTextField(10);
         styleTextField(amountField);
         
+        JComboBox<String> currencyComboBox = createCurrencyComboBox(expenseManager.getReportingCurrency());
+        
         JComboBox<String> modeComboBox = new JComboBox<>(new String[]{"Cash", "Digital", "Bank Transfer"});
         modeComboBox.setFont(new Font("Segoe UI", Font.PLAIN, 14));
         modeComboBox.setPreferredSize(new Dimension(150, 32));
@@ -1236,7 +1715,7 @@ public class MainApp extends JFrame {
         categoryComboBox.setFont(new Font("Segoe UI", Font.PLAIN, 14));
         categoryComboBox.setPreferredSize(new Dimension(150, 32));
         
-        for (Category category : categoryManager.getAll()) {
+        for (Category category : categoryManager.getSnapshot()) {
             categoryComboBox.addItem(category.getName());
         }
         
@@ -1261,7 +1740,7 @@ public class MainApp extends JFrame {
         
         gbc.gridx = 1;
         gbc.weightx = 0.7;
-        formPanel.add(amountField, gbc);
+        formPanel.add(createAmountPanel(amountField, currencyComboBox), gbc);
         
         JLabel modeLabel = new JLabel("Payment Mode:");
         styleFormLabel(modeLabel);
@@ -1329,9 +1808,9 @@ public class MainApp extends JFrame {
                     throw new IllegalArgumentException("Title cannot be empty");
                 }
                 
-                float amount;
+                long amount;
                 try {
-                    amount = Float.parseFloat(amountField.getText().trim());
+                    amount = Money.parse(amountField.getText());
                     if (amount <= 0) {
                         throw new IllegalArgumentException("Amount must be positive");
                     }
@@ -1352,7 +1831,7 @@ public class MainApp extends JFrame {
                 // Get category ID
                 int categoryId = -1;
                 String categoryName = (String) categoryComboBox.getSelectedItem();
-                for (Category category : categoryManager.getAll()) {
+                for (Category category : categoryManager.getSnapshot()) {
                     if (category.getName().equals(categoryName)) {
                         categoryId = category.getId();
                         break;
@@ -1365,6 +1844,7 @@ public class MainApp extends JFrame {
                 
                 // Create and save the expense
                 Expense expense = new Expense(title, amount, mode, recurringCheckBox.isSelected(), categoryId);
+                expense.setCurrency((String) currencyComboBox.getSelectedItem());
                 boolean success = expenseManager.saveExpense(expense);
                 
                 if (success) {
@@ -1372,8 +1852,6 @@ public class MainApp extends JFrame {
                             "Expense saved successfully", 
                             "Success", JOptionPane.INFORMATION_MESSAGE);
                     dialog.dispose();
-                    displayData();
-                    updateSummary();
                 } else {
                     throw new IllegalArgumentException("Failed to save expense");
                 }
@@ -1404,6 +1882,7 @@ public class MainApp extends JFrame {
         // Create form fields
         JTextField nameField = new JTextField(20);
         JTextField limitField = new JTextField(10);
+        JComboBox<String> currencyComboBox = createCurrencyComboBox(expenseManager.getReportingCurrency());
         
         JComboBox<String> priorityComboBox = new JComboBox<>(new String[]{"High", "Medium", "Low"});
         JCheckBox activeCheckBox = new JCheckBox();
@@ -1413,7 +1892,7 @@ public class MainApp extends JFrame {
         dialog.add(new JLabel("Name:"));
         dialog.add(nameField);
         dialog.add(new JLabel("Monthly Limit:"));
-        dialog.add(limitField);
+        dialog.add(createAmountPanel(limitField, currencyComboBox));
         dialog.add(new JLabel("Priority:"));
         dialog.add(priorityComboBox);
         dialog.add(new JLabel("Active:"));
@@ -1436,9 +1915,9 @@ public class MainApp extends JFrame {
                     throw new IllegalArgumentException("Name cannot be empty");
                 }
                 
-                float limit;
+                long limit;
                 try {
-                    limit = Float.parseFloat(limitField.getText().trim());
+                    limit = Money.parse(limitField.getText());
                     if (limit <= 0) {
                         throw new IllegalArgumentException("Monthly limit must be positive");
                     }
@@ -1458,6 +1937,7 @@ public class MainApp extends JFrame {
                 
                 // Create and save the category
                 Category category = new Category(name, limit, priority, activeCheckBox.isSelected());
+                category.setCurrency((String) currencyComboBox.getSelectedItem());
                 boolean success = categoryManager.saveCategory(category);
                 
                 if (success) {
@@ -1465,8 +1945,6 @@ public class MainApp extends JFrame {
                             "Category saved successfully", 
                             "Success", JOptionPane.INFORMATION_MESSAGE);
                     dialog.dispose();
-                    displayData();
-                    updateSummary();
                 } else {
                     throw new IllegalArgumentException("Failed to save category");
                 }
@@ -1510,13 +1988,7 @@ public class MainApp extends JFrame {
         String expenseTitle = (String) tableModel.getValueAt(selectedRow, 1);
         
         // Find the expense object
-        Expense expenseToDelete = null;
-        for (Expense expense : expenseManager.getAll()) {
-            if (expense.getId() == expenseId) {
-                expenseToDelete = expense;
-                break;
-            }
-        }
+        Expense expenseToDelete = findExpenseById(expenseId);
         
         if (expenseToDelete == null) {
             JOptionPane.showMessageDialog(this, 
@@ -1539,9 +2011,6 @@ public class MainApp extends JFrame {
                 JOptionPane.showMessageDialog(this, 
                         "Expense deleted successfully", 
                         "Success", JOptionPane.INFORMATION_MESSAGE);
-                // Refresh the display
-                displayData();
-                updateSummary();
             } else {
                 JOptionPane.showMessageDialog(this, 
                         "Failed to delete expense", 
@@ -1576,13 +2045,7 @@ public class MainApp extends JFrame {
         String categoryName = (String) tableModel.getValueAt(selectedRow, 1);
         
         // Find the category object
-        Category categoryToDelete = null;
-        for (Category category : categoryManager.getAll()) {
-            if (category.getId() == categoryId) {
-                categoryToDelete = category;
-                break;
-            }
-        }
+        Category categoryToDelete = findCategoryById(categoryId);
         
         if (categoryToDelete == null) {
             JOptionPane.showMessageDialog(this, 
@@ -1593,13 +2056,7 @@ public class MainApp extends JFrame {
         
         // Check if the category has any expenses associated with it
         expenseManager.loadData(); // Make sure we have all expenses
-        boolean hasExpenses = false;
-        for (Expense expense : expenseManager.getAll()) {
-            if (expense.getCategoryId() == categoryId) {
-                hasExpenses = true;
-                break;
-            }
-        }
+        boolean hasExpenses = expenseManager.hasExpensesInCategory(categoryId);
         
         if (hasExpenses) {
             JOptionPane.showMessageDialog(this, 
@@ -1623,9 +2080,6 @@ public class MainApp extends JFrame {
                 JOptionPane.showMessageDialog(this, 
                         "Category deleted successfully", 
                         "Success", JOptionPane.INFORMATION_MESSAGE);
-                // Refresh the display
-                displayData();
-                updateSummary();
             } else {
                 JOptionPane.showMessageDialog(this, 
                         "Failed to delete category", 
@@ -1660,8 +2114,9 @@ public class MainApp extends JFrame {
             
             // Generate the report
             boolean success = ReportGenerator.generateExpenseReport(
-                    expenseManager.getAll(), 
-                    categoryManager.getAll(), 
+                    expenseManager.getSnapshot(), 
+                    categoryManager.getSnapshot(), 
+                    expenseManager.getReportingConverter(),
                     file.getAbsolutePath());
             
             if (success) {
@@ -1678,92 +2133,14 @@ public class MainApp extends JFrame {
     
     /**
      * Handle category filter checkbox changes.
-     * Ensures only one filter is active at a time and resets to all categories when a filter is unchecked.
+     * Any combination of filters can be checked; see {@link #getVisibleCategories()}.
      */
     private void handleCategoryFilterChange(JCheckBox changedCheckBox, char filterType) {
         if (!"Categories".equals(selectedTable)) return;
         
-        // If the filter is being checked, uncheck all other filters
-        if (changedCheckBox.isSelected()) {
-            uncheckAllCategoryFiltersExcept(changedCheckBox);
-            
-            // Apply the selected filter
-            switch (filterType) {
-                case 'H': // High priority
-                    loadCategoriesByPriority('H');
-                    break;
-                case 'M': // Medium priority
-                    loadCategoriesByPriority('M');
-                    break;
-                case 'L': // Low priority
-                    loadCategoriesByPriority('L');
-                    break;
-                case 'A': // Active
-                    loadCategoriesByActiveStatus(true);
-                    break;
-                case 'I': // Inactive
-                    loadCategoriesByActiveStatus(false);
-                    break;
-            }
-        } else {
-            // If the filter is being unchecked, load all categories
-            categoryManager.loadData();
-        }
-        
-        // Update display and sorting
-        displayData();
+        // Re-sort and redisplay the filtered data, then update its summary
         sortData();
-    }
-    
-    /**
-     * Uncheck all category filter checkboxes except the specified one.
-     */
-    private void uncheckAllCategoryFiltersExcept(JCheckBox exceptCheckBox) {
-        if (highPriorityCheckBox != exceptCheckBox) highPriorityCheckBox.setSelected(false);
-        if (mediumPriorityCheckBox != exceptCheckBox) mediumPriorityCheckBox.setSelected(false);
-        if (lowPriorityCheckBox != exceptCheckBox) lowPriorityCheckBox.setSelected(false);
-        if (activeCheckBox != exceptCheckBox) activeCheckBox.setSelected(false);
-        if (inactiveCheckBox != exceptCheckBox) inactiveCheckBox.setSelected(false);
-    }
-    
-    /**
-     * Load categories filtered by priority.
-     */
-    private void loadCategoriesByPriority(char priority) {
-        categoryManager.loadData(); // Load all categories first
-        
-        // Filter by priority
-        List<Category> filtered = categoryManager.getAll().stream()
-                .filter(category -> category.getPriority() == priority)
-                .toList();
-        
-        // Update the category manager with the filtered list
-        categoryManager.clear();
-        for (Category category : filtered) {
-            categoryManager.add(category);
-        }
-        
-        System.out.println("Loaded " + filtered.size() + " categories with priority: " + priority);
-    }
-    
-    /**
-     * Load categories filtered by active status.
-     */
-    private void loadCategoriesByActiveStatus(boolean active) {
-        categoryManager.loadData(); // Load all categories first
-        
-        // Filter by active status
-        List<Category> filtered = categoryManager.getAll().stream()
-                .filter(category -> category.isActive() == active)
-                .toList();
-        
-        // Update the category manager with the filtered list
-        categoryManager.clear();
-        for (Category category : filtered) {
-            categoryManager.add(category);
-        }
-        
-        System.out.println("Loaded " + filtered.size() + " categories with active status: " + active);
+        updateSummary();
     }
     
     /**
@@ -1807,9 +2184,11 @@ public class MainApp extends JFrame {
         JTextField titleField = new JTextField(expenseToEdit.getTitle(), 20);
         styleTextField(titleField);
         
-        JTextField amountField = new JTextField(String.valueOf(expenseToEdit.getAmount()), 10);
+        JTextField amountField = new JTextField(Money.format(expenseToEdit.getAmount()), 10);
         styleTextField(amountField);
         
+        JComboBox<String> currencyComboBox = createCurrencyComboBox(expenseToEdit.getCurrency());
+        
         JComboBox<String> modeComboBox = new JComboBox<>(new String[]{"Cash", "Digital", "Bank Transfer"});
         modeComboBox.setFont(new Font("Segoe UI", Font.PLAIN, 14));
         modeComboBox.setPreferredSize(new Dimension(150, 32));
@@ -1834,7 +2213,7 @@ public class MainApp extends JFrame {
         categoryComboBox.setPreferredSize(new Dimension(150, 32));
         
         String currentCategoryName = "Unknown";
-        for (Category category : categoryManager.getAll()) {
+        for (Category category : categoryManager.getSnapshot()) {
             categoryComboBox.addItem(category.getName());
             if (category.getId() == expenseToEdit.getCategoryId()) {
                 currentCategoryName = category.getName();
@@ -1863,7 +2242,7 @@ public class MainApp extends JFrame {
         
         gbc.gridx = 1;
         gbc.weightx = 0.7;
-        formPanel.add(amountField, gbc);
+        formPanel.add(createAmountPanel(amountField, currencyComboBox), gbc);
         
         JLabel modeLabel = new JLabel("Payment Mode:");
         styleFormLabel(modeLabel);
@@ -1931,9 +2310,9 @@ public class MainApp extends JFrame {
                     throw new IllegalArgumentException("Title cannot be empty");
                 }
                 
-                float amount;
+                long amount;
                 try {
-                    amount = Float.parseFloat(amountField.getText().trim());
+                    amount = Money.parse(amountField.getText());
                     if (amount <= 0) {
                         throw new IllegalArgumentException("Amount must be positive");
                     }
@@ -1954,7 +2333,7 @@ public class MainApp extends JFrame {
                 // Get category ID
                 int categoryId = -1;
                 String categoryName = (String) categoryComboBox.getSelectedItem();
-                for (Category category : categoryManager.getAll()) {
+                for (Category category : categoryManager.getSnapshot()) {
                     if (category.getName().equals(categoryName)) {
                         categoryId = category.getId();
                         break;
@@ -1965,22 +2344,22 @@ public class MainApp extends JFrame {
                     throw new IllegalArgumentException("Invalid category");
                 }
                 
-                // Update the expense
-                expenseToEdit.setTitle(title);
-                expenseToEdit.setAmount(amount);
-                expenseToEdit.setMode(mode);
-                expenseToEdit.setRecurring(recurringCheckBox.isSelected());
-                expenseToEdit.setCategoryId(categoryId);
+                // Update a copy of the expense so the managed instance stays unchanged until saved
+                Expense updatedExpense = new Expense(expenseToEdit);
+                updatedExpense.setTitle(title);
+                updatedExpense.setAmount(amount);
+                updatedExpense.setCurrency((String) currencyComboBox.getSelectedItem());
+                updatedExpense.setMode(mode);
+                updatedExpense.setRecurring(recurringCheckBox.isSelected());
+                updatedExpense.setCategoryId(categoryId);
                 
-                boolean success = expenseManager.updateExpense(expenseToEdit);
+                boolean success = expenseManager.updateExpense(updatedExpense);
                 
                 if (success) {
                     JOptionPane.showMessageDialog(dialog, 
                             "Expense updated successfully", 
                             "Success", JOptionPane.INFORMATION_MESSAGE);
                     dialog.dispose();
-                    displayData();
-                    updateSummary();
                 } else {
                     throw new IllegalArgumentException("Failed to update expense");
                 }
@@ -2005,12 +2384,7 @@ public class MainApp extends JFrame {
      * @return The Expense object or null if not found
      */
     private Expense findExpenseById(int id) {
-        for (Expense expense : expenseManager.getAll()) {
-            if (expense.getId() == id) {
-                return expense;
-            }
-        }
-        return null;
+        return expenseManager.getById(id);
     }
     
     /**
@@ -2020,12 +2394,7 @@ public class MainApp extends JFrame {
      * @return The Category object or null if not found
      */
     private Category findCategoryById(int id) {
-        for (Category category : categoryManager.getAll()) {
-            if (category.getId() == id) {
-                return category;
-            }
-        }
-        return null;
+        return categoryManager.getById(id);
     }
     
     /**
@@ -2069,9 +2438,11 @@ public class MainApp extends JFrame {
         JTextField nameField = new JTextField(categoryToEdit.getName(), 20);
         styleTextField(nameField);
         
-        JTextField limitField = new JTextField(String.valueOf(categoryToEdit.getMonthlyLimit()), 10);
+        JTextField limitField = new JTextField(Money.format(categoryToEdit.getMonthlyLimit()), 10);
         styleTextField(limitField);
         
+        JComboBox<String> currencyComboBox = createCurrencyComboBox(categoryToEdit.getCurrency());
+        
         JComboBox<String> priorityComboBox = new JComboBox<>(new String[]{"High", "Medium", "Low"});
         priorityComboBox.setFont(new Font("Segoe UI", Font.PLAIN, 14));
         priorityComboBox.setPreferredSize(new Dimension(150, 32));
@@ -2111,7 +2482,7 @@ public class MainApp extends JFrame {
         
         gbc.gridx = 1;
         gbc.weightx = 0.7;
-        formPanel.add(limitField, gbc);
+        formPanel.add(createAmountPanel(limitField, currencyComboBox), gbc);
         
         JLabel priorityLabel = new JLabel("Priority:");
         styleFormLabel(priorityLabel);
@@ -2168,9 +2539,9 @@ public class MainApp extends JFrame {
                     throw new IllegalArgumentException("Name cannot be empty");
                 }
                 
-                float limit;
+                long limit;
                 try {
-                    limit = Float.parseFloat(limitField.getText().trim());
+                    limit = Money.parse(limitField.getText());
                     if (limit <= 0) {
                         throw new IllegalArgumentException("Monthly limit must be positive");
                     }
@@ -2188,21 +2559,21 @@ public class MainApp extends JFrame {
                     default: priority = 'M'; break;
                 }
                 
-                // Update the category
-                categoryToEdit.setName(name);
-                categoryToEdit.setMonthlyLimit(limit);
-                categoryToEdit.setPriority(priority);
-                categoryToEdit.setActive(activeCheckBox.isSelected());
+                // Update a copy of the category so the managed instance stays unchanged until saved
+                Category updatedCategory = new Category(categoryToEdit);
+                updatedCategory.setName(name);
+                updatedCategory.setMonthlyLimit(limit);
+                updatedCategory.setCurrency((String) currencyComboBox.getSelectedItem());
+                updatedCategory.setPriority(priority);
+                updatedCategory.setActive(activeCheckBox.isSelected());
                 
-                boolean success = categoryManager.updateCategory(categoryToEdit);
+                boolean success = categoryManager.updateCategory(updatedCategory);
                 
                 if (success) {
                     JOptionPane.showMessageDialog(dialog, 
                             "Category updated successfully", 
                             "Success", JOptionPane.INFORMATION_MESSAGE);
                     dialog.dispose();
-                    displayData();
-                    updateSummary();
                 } else {
                     throw new IllegalArgumentException("Failed to update category");
                 }
@@ -2239,7 +2610,7 @@ public class MainApp extends JFrame {
             app.setVisible(true);
         });
     }
-
+    
     /**
      * Creates a custom application icon and saves it as a PNG file.
      * 
@@ -1,22 +1,36 @@
 package ui;
 
+import logic.AmountStats;
+import logic.ConvertedAmounts;
+import logic.CurrencyRates;
+import logic.ExpenseManager;
+import logic.GroupByEngine;
+import logic.GroupByEngine.Dimension;
 import model.Category;
 import model.Expense;
+import model.Money;
+import utils.IntLongMap;
 
 import java.io.BufferedWriter;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.text.SimpleDateFormat;
 import java.util.Date;
+import java.util.EnumSet;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
 
 /**
  * Class responsible for generating expense reports in various formats.
  */
 public class ReportGenerator {
     
+    // Number of expenses listed in the largest expenses section
+    private static final int LARGEST_EXPENSE_COUNT = 10;
+    
     /**
      * Generate a text report of expenses grouped by category.
      * 
@@ -26,6 +40,62 @@ public class ReportGenerator {
      * @return true if the report was generated successfully, false otherwise
      */
     public static boolean generateExpenseReport(List<Expense> expenses, List<Category> categories, String filePath) {
+        CurrencyRates.Converter converter = CurrencyRates.identity(Money.DEFAULT_CURRENCY).converterTo(Money.DEFAULT_CURRENCY);
+        return generateExpenseReport(expenses, categories, converter, filePath);
+    }
+    
+    /**
+     * Generate a text report of expenses grouped by category, with totals in
+     * one reporting currency. Expenses are listed in their own currencies;
+     * those in a currency without a rate are left out of the totals.
+     * 
+     * @param expenses The list of expenses
+     * @param categories The list of categories
+     * @param converter Converts amounts into the reporting currency
+     * @param filePath The path where the report will be saved
+     * @return true if the report was generated successfully, false otherwise
+     */
+    public static boolean generateExpenseReport(List<Expense> expenses, List<Category> categories,
+                                                CurrencyRates.Converter converter, String filePath) {
+        // Organize expenses by category, leaving out those that cannot be converted
+        IntLongMap categoryTotals = ExpenseManager.calculateTotalByCategory(
+                ExpenseManager.selectConvertible(expenses, converter), converter);
+        
+        return generateExpenseReport(expenses, categories, categoryTotals, converter, filePath);
+    }
+    
+    /**
+     * Generate a text report of expenses grouped by category, using precomputed
+     * category totals such as those returned by ExpenseDAO.getTotalSpendingByCategory().
+     * 
+     * @param expenses The list of expenses
+     * @param categories The list of categories
+     * @param categoryTotals The total amount spent per category ID, in minor units
+     * @param filePath The path where the report will be saved
+     * @return true if the report was generated successfully, false otherwise
+     */
+    public static boolean generateExpenseReport(List<Expense> expenses, List<Category> categories,
+                                                IntLongMap categoryTotals, String filePath) {
+        CurrencyRates.Converter converter = CurrencyRates.identity(Money.DEFAULT_CURRENCY).converterTo(Money.DEFAULT_CURRENCY);
+        return generateExpenseReport(expenses, categories, categoryTotals, converter, filePath);
+    }
+    
+    /**
+     * Generate a text report of expenses grouped by category, using precomputed
+     * category totals in the converter's currency. Expenses in a currency
+     * without a rate are counted in the header and left out of the breakdowns.
+     * 
+     * @param expenses The list of expenses
+     * @param categories The list of categories
+     * @param categoryTotals The total amount spent per category ID, in minor units of the reporting currency
+     * @param converter Converts amounts into the reporting currency
+     * @param filePath The path where the report will be saved
+     * @return true if the report was generated successfully, false otherwise
+     */
+    public static boolean generateExpenseReport(List<Expense> expenses, List<Category> categories,
+                                                IntLongMap categoryTotals, CurrencyRates.Converter converter,
+                                                String filePath) {
+        String symbol = Money.symbol(converter.getTarget());
         try (BufferedWriter writer = new BufferedWriter(new FileWriter(filePath))) {
             // Create a map of category IDs to category objects for easier lookup
             Map<Integer, Category> categoryMap = new HashMap<>();
@@ -47,23 +117,30 @@ public class ReportGenerator {
             writer.newLine();
             writer.write("Total Expenses: " + expenses.size());
             writer.newLine();
+            writer.write("Reporting Currency: " + converter.getTarget());
             writer.newLine();
             
-            // Organize expenses by category
-            Map<Integer, Float> categoryTotals = new HashMap<>();
-            
-            for (Expense expense : expenses) {
-                int categoryId = expense.getCategoryId();
-                float amount = expense.getAmount();
-                
-                categoryTotals.put(categoryId, categoryTotals.getOrDefault(categoryId, 0f) + amount);
+            // Expenses without a rate cannot be totalled in the reporting currency
+            ConvertedAmounts amounts = new ConvertedAmounts(converter);
+            List<Expense> convertible = ExpenseManager.selectConvertible(expenses, converter);
+            if (convertible.size() < expenses.size()) {
+                Set<String> unconverted = new TreeSet<>();
+                for (Expense expense : expenses) {
+                    if (!amounts.canConvert(expense)) {
+                        unconverted.add(expense.getCurrency());
+                    }
+                }
+                writer.write(String.format("Not Converted: %d expenses in %s, left out of the totals", 
+                        expenses.size() - convertible.size(), String.join(", ", unconverted)));
+                writer.newLine();
             }
+            writer.newLine();
             
             // Calculate total amount
-            float totalAmount = 0;
-            for (float amount : categoryTotals.values()) {
-                totalAmount += amount;
-            }
+            long totalAmount = categoryTotals.sum();
+            
+            // Aggregate every grouping in one pass for the breakdowns below
+            GroupByEngine.Cube cube = new GroupByEngine(categoryMap::get, amounts).cube(convertible);
             
             // Write category summaries
             writer.write("SPENDING BY CATEGORY");
@@ -71,22 +148,29 @@ public class ReportGenerator {
             writer.write("-------------------");
             writer.newLine();
             
-            for (Map.Entry<Integer, Float> entry : categoryTotals.entrySet()) {
-                int categoryId = entry.getKey();
-                float amount = entry.getValue();
+            for (int i = 0; i < categoryTotals.size(); i++) {
+                int categoryId = categoryTotals.keyAt(i);
+                long amount = categoryTotals.valueAt(i);
                 
                 Category category = categoryMap.get(categoryId);
                 String categoryName = (category != null) ? category.getName() : "Unknown Category";
-                float limit = (category != null) ? category.getMonthlyLimit() : 0;
+                long limit = (category != null) ? ExpenseManager.convertLimit(category, converter) : 0;
                 
-                writer.write(String.format("%-20s: ₹%.2f (%.1f%% of total)", 
-                        categoryName, amount, (amount / totalAmount) * 100));
+                writer.write(String.format("%-20s: %s%s (%.1f%% of total)", 
+                        categoryName, symbol, Money.format(amount), ((double) amount / totalAmount) * 100));
                 writer.newLine();
                 
+                AmountStats stats = cube.get(EnumSet.of(Dimension.CATEGORY), categoryId, ' ', false, ' ');
+                if (stats.getCount() > 0) {
+                    writer.write(String.format("  %d expenses, Average: %s%s, Largest: %s%s", 
+                            stats.getCount(), symbol, Money.format(stats.getAverage()), symbol, Money.format(stats.getMax())));
+                    writer.newLine();
+                }
+                
                 if (category != null && limit > 0) {
-                    float remainingBudget = limit - amount;
-                    writer.write(String.format("  Monthly Limit: ₹%.2f, Remaining: ₹%.2f (%.1f%%)", 
-                            limit, remainingBudget, (remainingBudget / limit) * 100));
+                    long remainingBudget = Money.subtract(limit, amount);
+                    writer.write(String.format("  Monthly Limit: %s%s, Remaining: %s%s (%.1f%%)", 
+                            symbol, Money.format(limit), symbol, Money.format(remainingBudget), ((double) remainingBudget / limit) * 100));
                     writer.newLine();
                     
                     if (amount > limit) {
@@ -98,13 +182,58 @@ public class ReportGenerator {
             
             writer.newLine();
             
+            // Write spending by category priority and payment mode
+            writer.write("SPENDING BY PRIORITY");
+            writer.newLine();
+            writer.write("--------------------");
+            writer.newLine();
+            
+            for (char priority : new char[] {'H', 'M', 'L'}) {
+                AmountStats stats = cube.get(EnumSet.of(Dimension.PRIORITY), 0, ' ', false, priority);
+                if (stats.getCount() == 0) {
+                    continue;
+                }
+                writer.write(String.format("%-20s: %s%s (%d expenses)", 
+                        Category.getPriorityAsString(priority), symbol, Money.format(stats.getSum()), stats.getCount()));
+                writer.newLine();
+                
+                for (char mode : Expense.MODE_CODES.toCharArray()) {
+                    AmountStats modeStats = cube.get(EnumSet.of(Dimension.PRIORITY, Dimension.MODE), 0, mode, false, priority);
+                    if (modeStats.getCount() > 0) {
+                        writer.write(String.format("  %-18s: %s%s", 
+                                Expense.getModeAsString(mode), symbol, Money.format(modeStats.getSum())));
+                        writer.newLine();
+                    }
+                }
+            }
+            
+            writer.newLine();
+            
+            // Write the largest expenses
+            writer.write("LARGEST EXPENSES");
+            writer.newLine();
+            writer.write("----------------");
+            writer.newLine();
+            
+            for (Expense expense : ExpenseManager.getLargestExpenses(convertible, converter, LARGEST_EXPENSE_COUNT)) {
+                Category category = categoryMap.get(expense.getCategoryId());
+                writer.write(String.format("  %-30s %s (%s)", 
+                        expense.getTitle(), 
+                        Money.format(expense.getAmount(), expense.getCurrency()), 
+                        (category != null) ? category.getName() : "Unknown Category"));
+                writer.newLine();
+            }
+            
+            writer.newLine();
+            
             // Write expense details
             writer.write("EXPENSE DETAILS");
             writer.newLine();
             writer.write("--------------");
             writer.newLine();
             
-            for (int categoryId : categoryTotals.keySet()) {
+            for (int i = 0; i < categoryTotals.size(); i++) {
+                int categoryId = categoryTotals.keyAt(i);
                 Category category = categoryMap.get(categoryId);
                 String categoryName = (category != null) ? category.getName() : "Unknown Category";
                 
@@ -113,9 +242,9 @@ public class ReportGenerator {
                 
                 for (Expense expense : expenses) {
                     if (expense.getCategoryId() == categoryId) {
-                        writer.write(String.format("  %-30s ₹%.2f (%s, %s)", 
+                        writer.write(String.format("  %-30s %s (%s, %s)", 
                                 expense.getTitle(), 
-                                expense.getAmount(), 
+                                Money.format(expense.getAmount(), expense.getCurrency()), 
                                 expense.getModeAsString(),
                                 expense.isRecurring() ? "Recurring" : "One-time"));
                         writer.newLine();
@@ -128,7 +257,7 @@ public class ReportGenerator {
             // Write summary
             writer.write("====================================================");
             writer.newLine();
-            writer.write(String.format("TOTAL SPENDING: ₹%.2f", totalAmount));
+            writer.write(String.format("TOTAL SPENDING: %s%s", symbol, Money.format(totalAmount)));
             writer.newLine();
             writer.write("====================================================");
             
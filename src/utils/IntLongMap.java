@@ -0,0 +1,200 @@
+package utils;
+
+import java.util.Arrays;
+
+/**
+ * Map from primitive int keys to primitive long values that never boxes.
+ * Entries are stored densely in insertion order, so they can be walked by
+ * position with {@link #keyAt(int)} and {@link #valueAt(int)}; lookups go
+ * through an open-addressing hash table of positions with linear probing.
+ * Entries cannot be removed individually. Additions are exact and throw
+ * ArithmeticException on overflow.
+ */
+public class IntLongMap {
+    // Marker for an unused slot in the hash table
+    private static final int EMPTY = -1;
+    
+    private int[] keys;
+    private long[] values;
+    private int size;
+    
+    // Open-addressing table holding positions into keys/values
+    private int[] table;
+    private int mask;
+    
+    /**
+     * Create an empty map with a small default capacity.
+     */
+    public IntLongMap() {
+        this(16);
+    }
+    
+    /**
+     * Create an empty map sized for the expected number of entries.
+     * 
+     * @param expectedSize The number of entries expected
+     */
+    public IntLongMap(int expectedSize) {
+        int capacity = Math.max(4, expectedSize);
+        this.keys = new int[capacity];
+        this.values = new long[capacity];
+        this.size = 0;
+        
+        int tableSize = Integer.highestOneBit(Math.max(8, capacity * 2 - 1)) << 1;
+        this.table = new int[tableSize];
+        Arrays.fill(table, EMPTY);
+        this.mask = tableSize - 1;
+    }
+    
+    /**
+     * Add a delta to the value of a key, inserting the key with value 0 first if absent.
+     * 
+     * @param key The key to update
+     * @param delta The amount to add
+     */
+    public void add(int key, long delta) {
+        int slot = findSlot(key);
+        int index = table[slot];
+        if (index == EMPTY) {
+            insert(slot, key, delta);
+        } else {
+            values[index] = Math.addExact(values[index], delta);
+        }
+    }
+    
+    /**
+     * Set the value of a key, inserting it if absent.
+     * 
+     * @param key The key to set
+     * @param value The new value
+     */
+    public void put(int key, long value) {
+        int slot = findSlot(key);
+        int index = table[slot];
+        if (index == EMPTY) {
+            insert(slot, key, value);
+        } else {
+            values[index] = value;
+        }
+    }
+    
+    /**
+     * Get the value of a key.
+     * 
+     * @param key The key to look up
+     * @param defaultValue The value to return if the key is absent
+     * @return The value of the key, or defaultValue if absent
+     */
+    public long get(int key, long defaultValue) {
+        int index = table[findSlot(key)];
+        return index == EMPTY ? defaultValue : values[index];
+    }
+    
+    /**
+     * Check whether a key is present.
+     * 
+     * @param key The key to look up
+     * @return true if the key is present, false otherwise
+     */
+    public boolean containsKey(int key) {
+        return table[findSlot(key)] != EMPTY;
+    }
+    
+    /**
+     * Get the number of entries.
+     * 
+     * @return The number of entries
+     */
+    public int size() {
+        return size;
+    }
+    
+    /**
+     * Get the key at a position in insertion order.
+     * 
+     * @param index The position, from 0 to size() - 1
+     * @return The key at that position
+     */
+    public int keyAt(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        }
+        return keys[index];
+    }
+    
+    /**
+     * Get the value at a position in insertion order.
+     * 
+     * @param index The position, from 0 to size() - 1
+     * @return The value at that position
+     */
+    public long valueAt(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        }
+        return values[index];
+    }
+    
+    /**
+     * Get the sum of all values.
+     * 
+     * @return The sum of all values
+     */
+    public long sum() {
+        long total = 0;
+        for (int i = 0; i < size; i++) {
+            total = Math.addExact(total, values[i]);
+        }
+        return total;
+    }
+    
+    /**
+     * Remove all entries, keeping the allocated capacity.
+     */
+    public void clear() {
+        Arrays.fill(table, EMPTY);
+        size = 0;
+    }
+    
+    private int findSlot(int key) {
+        int slot = mix(key) & mask;
+        while (table[slot] != EMPTY && keys[table[slot]] != key) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+    
+    private void insert(int slot, int key, long value) {
+        if (size == keys.length) {
+            keys = Arrays.copyOf(keys, size * 2);
+            values = Arrays.copyOf(values, size * 2);
+        }
+        keys[size] = key;
+        values[size] = value;
+        table[slot] = size;
+        size++;
+        
+        // Keep the load factor at or below one half
+        if (size * 2 > table.length) {
+            rehash(table.length * 2);
+        }
+    }
+    
+    private void rehash(int tableSize) {
+        table = new int[tableSize];
+        Arrays.fill(table, EMPTY);
+        mask = tableSize - 1;
+        for (int i = 0; i < size; i++) {
+            int slot = mix(keys[i]) & mask;
+            while (table[slot] != EMPTY) {
+                slot = (slot + 1) & mask;
+            }
+            table[slot] = i;
+        }
+    }
+    
+    private static int mix(int key) {
+        int h = key * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+}
@@ -0,0 +1,133 @@
+package utils;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bounded pool that lets repeated strings share one instance, so that
+ * thousands of rows titled "Rent" hold a single String between them.
+ * <p>
+ * The pool is a fixed-size, 2-way set-associative cache indexed by hash code:
+ * each string maps to a set of two slots, the most recently stored string
+ * first. A string not found in its set replaces the older of the two, so the
+ * pool never grows past its capacity and forgets rare strings first. Slots are
+ * read and written without locking; a race can at worst lose an entry, never
+ * return a string that is not equal to the one asked for.
+ * <p>
+ * Hits and misses are counted so the pool's effectiveness can be checked with
+ * {@link #getHitRate()}.
+ */
+public class StringPool {
+    
+    /**
+     * Pool shared by the DAOs for expense titles and category names. Its size
+     * can be set with -Dexpenseflow.stringPoolSize; the default holds 4096 strings.
+     */
+    public static final StringPool SHARED = new StringPool(Integer.getInteger("expenseflow.stringPoolSize", 4096));
+    
+    private final AtomicReferenceArray<String> slots;
+    private final int setMask;
+    
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    
+    /**
+     * Create an empty pool.
+     * 
+     * @param capacity The maximum number of strings held, rounded up to a power of two
+     */
+    public StringPool(int capacity) {
+        int slotCount = (capacity <= 2) ? 2 : Integer.highestOneBit(capacity - 1) << 1;
+        this.slots = new AtomicReferenceArray<>(slotCount);
+        this.setMask = (slotCount >>> 1) - 1;
+    }
+    
+    /**
+     * Get the pooled instance equal to a string, adding the string if it is not pooled.
+     * 
+     * @param value The string to look up, or null
+     * @return An equal string, shared with earlier callers when possible, or null if value is null
+     */
+    public String intern(String value) {
+        if (value == null) {
+            return null;
+        }
+        
+        int hash = value.hashCode();
+        int first = ((hash ^ (hash >>> 16)) & setMask) << 1;
+        
+        String recent = slots.get(first);
+        if (value.equals(recent)) {
+            hits.increment();
+            return recent;
+        }
+        String older = slots.get(first + 1);
+        if (value.equals(older)) {
+            // Promote the hit so the other entry is evicted first
+            slots.set(first + 1, recent);
+            slots.set(first, older);
+            hits.increment();
+            return older;
+        }
+        
+        misses.increment();
+        slots.set(first + 1, recent);
+        slots.set(first, value);
+        return value;
+    }
+    
+    /**
+     * Get the number of lookups that returned a pooled string.
+     * 
+     * @return The number of hits
+     */
+    public long getHits() {
+        return hits.sum();
+    }
+    
+    /**
+     * Get the number of lookups that had to add their string.
+     * 
+     * @return The number of misses
+     */
+    public long getMisses() {
+        return misses.sum();
+    }
+    
+    /**
+     * Get the fraction of lookups that returned a pooled string.
+     * 
+     * @return The hit rate between 0 and 1, or 0 if there have been no lookups
+     */
+    public double getHitRate() {
+        long hitCount = hits.sum();
+        long total = hitCount + misses.sum();
+        return (total == 0) ? 0 : (double) hitCount / total;
+    }
+    
+    /**
+     * Get the maximum number of strings the pool holds.
+     * 
+     * @return The capacity
+     */
+    public int getCapacity() {
+        return slots.length();
+    }
+    
+    /**
+     * Remove all strings from the pool and reset the statistics.
+     */
+    public void clear() {
+        for (int i = 0; i < slots.length(); i++) {
+            slots.set(i, null);
+        }
+        hits.reset();
+        misses.reset();
+    }
+    
+    @Override
+    public String toString() {
+        return String.format("StringPool[capacity=%d, hits=%d, misses=%d, hit rate=%.1f%%]",
+                getCapacity(), getHits(), getMisses(), getHitRate() * 100);
+    }
+}